@@ -0,0 +1,569 @@
+/*
+ * CellStore.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.dirkgassen.wator.simulator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Stores the cells of a world. The value of a cell is 0 for an empty cell, the negative age of a fish for a fish and a
+ * positive number that combines the hunger and the age of a shark for a shark (see {@link Simulator}).
+ *
+ * There is one subclass for each cell layout ({@link Simulator#CELL_LAYOUT_BYTE}, {@link Simulator#CELL_LAYOUT_SHORT}
+ * and {@link Simulator#CELL_LAYOUT_INT}), which differ in how many bits a cell value can have. All subclasses are final
+ * and only the ones actually used get loaded (which is why {@link #create(int, long, boolean)} calls a factory method
+ * of each subclass that returns a {@link CellStore} instead of calling the constructors directly), so usually there is
+ * just one implementation of {@link #get(long)} and {@link #set(long, int)} the compiler can inline.
+ *
+ * {@link OffHeapCellStore} stores cells of any layout outside of the Java heap (see {@link #create(int, long, boolean)}).
+ *
+ * Cells are numbered with a {@code long} so that a world can have more cells than an array. The stores on the Java
+ * heap are limited to {@link #MAX_HEAP_SIZE} cells; an {@link OffHeapCellStore} can hold any number of cells.
+ */
+abstract class CellStore {
+
+	/** Maximum number of cells of a store on the Java heap (the largest array most virtual machines can allocate) */
+	static final int MAX_HEAP_SIZE = Integer.MAX_VALUE - 8;
+
+	/** Stores cell values in a {@code byte} array (up to 7 bits without the sign) */
+	static final class ByteCellStore extends CellStore {
+
+		/** The cells */
+		private final byte[] cells;
+
+		@Override
+		int get(long no) {
+			return cells[(int) no];
+		}
+
+		@Override
+		void set(long no, int value) {
+			cells[(int) no] = (byte) value;
+		}
+
+		@Override
+		void copyTo(long start, int[] target, int offset, int count) {
+			final int first = (int) start;
+			for (int no = 0; no < count; no++) {
+				target[offset + no] = cells[first + no];
+			}
+		}
+
+		@Override
+		long getSize() {
+			return cells.length;
+		}
+
+		@Override
+		int getLayout() {
+			return Simulator.CELL_LAYOUT_BYTE;
+		}
+
+		@Override
+		CellStore newStore() {
+			return create(cells.length);
+		}
+
+		@Override
+		void copyFrom(CellStore source) {
+			System.arraycopy(((ByteCellStore) source).cells, 0, cells, 0, cells.length);
+		}
+
+		@Override
+		void copyFrom(CellStore source, long sourceStart, long start, int count) {
+			if (source instanceof OffHeapCellStore) {
+				((OffHeapCellStore) source).copyTo(sourceStart, this, (int) start, count);
+				return;
+			}
+			System.arraycopy(((ByteCellStore) source).cells, (int) sourceStart, cells, (int) start, count);
+		}
+
+		@Override
+		void clear() {
+			Arrays.fill(cells, (byte) 0);
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param size number of cells
+		 */
+		ByteCellStore(int size) {
+			cells = new byte[size];
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param size number of cells
+		 * @return new store
+		 */
+		static CellStore create(int size) {
+			return new ByteCellStore(size);
+		}
+	}
+
+	/** Stores cell values in a {@code short} array (up to 15 bits without the sign) */
+	static final class ShortCellStore extends CellStore {
+
+		/** The cells */
+		private final short[] cells;
+
+		@Override
+		int get(long no) {
+			return cells[(int) no];
+		}
+
+		@Override
+		void set(long no, int value) {
+			cells[(int) no] = (short) value;
+		}
+
+		@Override
+		void copyTo(long start, int[] target, int offset, int count) {
+			final int first = (int) start;
+			for (int no = 0; no < count; no++) {
+				target[offset + no] = cells[first + no];
+			}
+		}
+
+		@Override
+		long getSize() {
+			return cells.length;
+		}
+
+		@Override
+		int getLayout() {
+			return Simulator.CELL_LAYOUT_SHORT;
+		}
+
+		@Override
+		CellStore newStore() {
+			return create(cells.length);
+		}
+
+		@Override
+		void copyFrom(CellStore source) {
+			System.arraycopy(((ShortCellStore) source).cells, 0, cells, 0, cells.length);
+		}
+
+		@Override
+		void copyFrom(CellStore source, long sourceStart, long start, int count) {
+			if (source instanceof OffHeapCellStore) {
+				((OffHeapCellStore) source).copyTo(sourceStart, this, (int) start, count);
+				return;
+			}
+			System.arraycopy(((ShortCellStore) source).cells, (int) sourceStart, cells, (int) start, count);
+		}
+
+		@Override
+		void clear() {
+			Arrays.fill(cells, (short) 0);
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param size number of cells
+		 */
+		ShortCellStore(int size) {
+			cells = new short[size];
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param size number of cells
+		 * @return new store
+		 */
+		static CellStore create(int size) {
+			return new ShortCellStore(size);
+		}
+	}
+
+	/** Stores cell values in an {@code int} array (up to 31 bits without the sign) */
+	static final class IntCellStore extends CellStore {
+
+		/** The cells */
+		private final int[] cells;
+
+		@Override
+		int get(long no) {
+			return cells[(int) no];
+		}
+
+		@Override
+		void set(long no, int value) {
+			cells[(int) no] = value;
+		}
+
+		@Override
+		void copyTo(long start, int[] target, int offset, int count) {
+			final int first = (int) start;
+			for (int no = 0; no < count; no++) {
+				target[offset + no] = cells[first + no];
+			}
+		}
+
+		@Override
+		long getSize() {
+			return cells.length;
+		}
+
+		@Override
+		int getLayout() {
+			return Simulator.CELL_LAYOUT_INT;
+		}
+
+		@Override
+		CellStore newStore() {
+			return create(cells.length);
+		}
+
+		@Override
+		void copyFrom(CellStore source) {
+			System.arraycopy(((IntCellStore) source).cells, 0, cells, 0, cells.length);
+		}
+
+		@Override
+		void copyFrom(CellStore source, long sourceStart, long start, int count) {
+			if (source instanceof OffHeapCellStore) {
+				((OffHeapCellStore) source).copyTo(sourceStart, this, (int) start, count);
+				return;
+			}
+			System.arraycopy(((IntCellStore) source).cells, (int) sourceStart, cells, (int) start, count);
+		}
+
+		@Override
+		void clear() {
+			Arrays.fill(cells, 0);
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param size number of cells
+		 */
+		IntCellStore(int size) {
+			cells = new int[size];
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param size number of cells
+		 * @return new store
+		 */
+		static CellStore create(int size) {
+			return new IntCellStore(size);
+		}
+	}
+
+	/**
+	 * Stores cell values outside of the Java heap in direct {@link ByteBuffer}s. The cells are split into chunks of
+	 * {@link #CHUNK_SIZE} cells so that no single buffer gets too large to be allocated. Huge worlds stored this way
+	 * do not put strain on the garbage collector (the buffers are freed when the store is collected).
+	 */
+	static final class OffHeapCellStore extends CellStore {
+
+		/** Binary logarithm of {@link #CHUNK_SIZE} */
+		private static final int CHUNK_SHIFT = 20;
+
+		/** Number of cells in one chunk */
+		private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+		/** Mask to get the number of a cell within its chunk */
+		private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+		/** Zero bytes to clear the chunks with (see {@link #clear()}) */
+		private static final byte[] ZEROES = new byte[4096];
+
+		/** The chunks of cells */
+		private final ByteBuffer[] chunks;
+
+		/** Number of cells */
+		private final long size;
+
+		/** Layout of the cells */
+		private final int layout;
+
+		/** Binary logarithm of the number of bytes per cell */
+		private final int cellShift;
+
+		@Override
+		int get(long no) {
+			final ByteBuffer chunk = chunks[(int) (no >>> CHUNK_SHIFT)];
+			final int index = ((int) no & CHUNK_MASK) << cellShift;
+			switch (layout) {
+				case Simulator.CELL_LAYOUT_BYTE:
+					return chunk.get(index);
+				case Simulator.CELL_LAYOUT_SHORT:
+					return chunk.getShort(index);
+				default:
+					return chunk.getInt(index);
+			}
+		}
+
+		@Override
+		void set(long no, int value) {
+			final ByteBuffer chunk = chunks[(int) (no >>> CHUNK_SHIFT)];
+			final int index = ((int) no & CHUNK_MASK) << cellShift;
+			switch (layout) {
+				case Simulator.CELL_LAYOUT_BYTE:
+					chunk.put(index, (byte) value);
+					break;
+				case Simulator.CELL_LAYOUT_SHORT:
+					chunk.putShort(index, (short) value);
+					break;
+				default:
+					chunk.putInt(index, value);
+			}
+		}
+
+		@Override
+		void copyTo(long start, int[] target, int offset, int count) {
+			for (int no = 0; no < count; no++) {
+				target[offset + no] = get(start + no);
+			}
+		}
+
+		@Override
+		void clear() {
+			for (int chunkNo = 0; chunkNo < chunks.length; chunkNo++) {
+				final ByteBuffer chunk = chunks[chunkNo].duplicate();
+				chunk.clear();
+				while (chunk.hasRemaining()) {
+					chunk.put(ZEROES, 0, Math.min(ZEROES.length, chunk.remaining()));
+				}
+			}
+		}
+
+		/**
+		 * Copies the values of a range of cells into a store on the Java heap (with the same layout) in bulk.
+		 *
+		 * @param start       number of the first cell to copy
+		 * @param target      store to copy to ({@link ByteCellStore}, {@link ShortCellStore} or
+		 *                    {@link IntCellStore} matching the layout of this store)
+		 * @param targetStart number of the cell in {@code target} to copy the first cell to
+		 * @param count       number of cells to copy
+		 */
+		void copyTo(long start, CellStore target, int targetStart, int count) {
+			while (count > 0) {
+				// Copy up to the end of the current chunk
+				final int offset = (int) start & CHUNK_MASK;
+				final int cells = Math.min(count, CHUNK_SIZE - offset);
+				// Note: a duplicate has the default (big endian) byte order
+				final ByteBuffer chunk = chunks[(int) (start >>> CHUNK_SHIFT)].duplicate().order(ByteOrder.nativeOrder());
+				chunk.position(offset << cellShift);
+				switch (layout) {
+					case Simulator.CELL_LAYOUT_BYTE:
+						chunk.get(((ByteCellStore) target).cells, targetStart, cells);
+						break;
+					case Simulator.CELL_LAYOUT_SHORT:
+						chunk.asShortBuffer().get(((ShortCellStore) target).cells, targetStart, cells);
+						break;
+					default:
+						chunk.asIntBuffer().get(((IntCellStore) target).cells, targetStart, cells);
+				}
+				start += cells;
+				targetStart += cells;
+				count -= cells;
+			}
+		}
+		@Override
+		long getSize() {
+			return size;
+		}
+
+		@Override
+		int getLayout() {
+			return layout;
+		}
+
+		@Override
+		CellStore newStore() {
+			return create(layout, size);
+		}
+
+		@Override
+		void copyFrom(CellStore source) {
+			final ByteBuffer[] sourceChunks = ((OffHeapCellStore) source).chunks;
+			for (int chunkNo = 0; chunkNo < chunks.length; chunkNo++) {
+				final ByteBuffer sourceChunk = sourceChunks[chunkNo].duplicate();
+				sourceChunk.clear();
+				final ByteBuffer targetChunk = chunks[chunkNo].duplicate();
+				targetChunk.clear();
+				targetChunk.put(sourceChunk);
+			}
+		}
+
+		@Override
+		void copyFrom(CellStore source, long sourceStart, long start, int count) {
+			final ByteBuffer[] sourceChunks = ((OffHeapCellStore) source).chunks;
+			while (count > 0) {
+				// Copy up to the end of the current source or target chunk (whichever comes first)
+				final int sourceOffset = (int) sourceStart & CHUNK_MASK;
+				final int offset = (int) start & CHUNK_MASK;
+				final int cells = Math.min(count, CHUNK_SIZE - Math.max(sourceOffset, offset));
+				final ByteBuffer sourceChunk = sourceChunks[(int) (sourceStart >>> CHUNK_SHIFT)].duplicate();
+				sourceChunk.limit((sourceOffset + cells) << cellShift);
+				sourceChunk.position(sourceOffset << cellShift);
+				final ByteBuffer targetChunk = chunks[(int) (start >>> CHUNK_SHIFT)].duplicate();
+				targetChunk.position(offset << cellShift);
+				targetChunk.put(sourceChunk);
+				sourceStart += cells;
+				start += cells;
+				count -= cells;
+			}
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param layout layout of the cells
+		 * @param size   number of cells
+		 */
+		OffHeapCellStore(int layout, long size) {
+			this.layout = layout;
+			this.size = size;
+			this.cellShift = layout == Simulator.CELL_LAYOUT_BYTE ? 0 : layout == Simulator.CELL_LAYOUT_SHORT ? 1 : 2;
+			chunks = new ByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+			for (int chunkNo = 0; chunkNo < chunks.length; chunkNo++) {
+				final int cells = (int) Math.min(CHUNK_SIZE, size - ((long) chunkNo << CHUNK_SHIFT));
+				// Direct buffers are zeroed, i.e., all cells are empty
+				chunks[chunkNo] = ByteBuffer.allocateDirect(cells << cellShift).order(ByteOrder.nativeOrder());
+			}
+		}
+
+		/**
+		 * Creates a new store with all cells empty.
+		 *
+		 * @param layout layout of the cells
+		 * @param size   number of cells
+		 * @return new store
+		 */
+		static CellStore create(int layout, long size) {
+			return new OffHeapCellStore(layout, size);
+		}
+	}
+
+	/**
+	 * @param no number of the cell
+	 * @return value of the cell
+	 */
+	abstract int get(long no);
+
+	/**
+	 * Sets the value of a cell.
+	 *
+	 * @param no    number of the cell
+	 * @param value new value of the cell (must fit into the layout of this store)
+	 */
+	abstract void set(long no, int value);
+
+	/**
+	 * Copies the values of a range of cells into an array.
+	 *
+	 * @param start  number of the first cell to copy
+	 * @param target array to copy the values to
+	 * @param offset index in {@code target} to copy the value of the first cell to
+	 * @param count  number of cells to copy
+	 */
+	abstract void copyTo(long start, int[] target, int offset, int count);
+
+	/** @return number of cells in this store */
+	abstract long getSize();
+
+	/** @return cell layout of this store */
+	abstract int getLayout();
+
+	/** @return a new store with the same layout and size as this one and all cells empty */
+	abstract CellStore newStore();
+
+	/**
+	 * Copies all cells from another store into this store.
+	 *
+	 * @param source store to copy from (must have the same layout and size as this store)
+	 */
+	abstract void copyFrom(CellStore source);
+
+	/**
+	 * Copies a range of cells from another store into this store.
+	 *
+	 * @param source      store to copy from (must have the same layout as this store and be of the same class or,
+	 *                    if this store is on the Java heap, an {@link OffHeapCellStore})
+	 * @param sourceStart number of the first cell to copy in {@code source}
+	 * @param start       number of the cell in this store to copy the first cell to
+	 * @param count       number of cells to copy
+	 */
+	abstract void copyFrom(CellStore source, long sourceStart, long start, int count);
+
+	/** Empties all cells of this store. */
+	abstract void clear();
+
+	/**
+	 * Returns the number of bits a cell value of a layout can have (without the sign).
+	 *
+	 * @param layout {@link Simulator#CELL_LAYOUT_BYTE}, {@link Simulator#CELL_LAYOUT_SHORT} or
+	 *               {@link Simulator#CELL_LAYOUT_INT}
+	 * @return number of bits
+	 */
+	static int getValueBits(int layout) {
+		switch (layout) {
+			case Simulator.CELL_LAYOUT_BYTE:
+				return 7;
+			case Simulator.CELL_LAYOUT_SHORT:
+				return 15;
+			case Simulator.CELL_LAYOUT_INT:
+				return 31;
+			default:
+				throw new IllegalArgumentException("Unknown cell layout " + layout);
+		}
+	}
+
+	/**
+	 * Creates a new store with all cells empty.
+	 *
+	 * @param layout  {@link Simulator#CELL_LAYOUT_BYTE}, {@link Simulator#CELL_LAYOUT_SHORT} or
+	 *                {@link Simulator#CELL_LAYOUT_INT}
+	 * @param size    number of cells (at most {@link #MAX_HEAP_SIZE} unless {@code offHeap})
+	 * @param offHeap {@code true} to store the cells outside of the Java heap (see {@link OffHeapCellStore})
+	 * @return new store
+	 */
+	static CellStore create(int layout, long size, boolean offHeap) {
+		getValueBits(layout); // verifies the layout
+		if (offHeap) {
+			return OffHeapCellStore.create(layout, size);
+		}
+		if (size > MAX_HEAP_SIZE) {
+			throw new IllegalArgumentException("Can't store " + size + " cells on the Java heap (max " + MAX_HEAP_SIZE + ")");
+		}
+		switch (layout) {
+			case Simulator.CELL_LAYOUT_BYTE:
+				return ByteCellStore.create((int) size);
+			case Simulator.CELL_LAYOUT_SHORT:
+				return ShortCellStore.create((int) size);
+			case Simulator.CELL_LAYOUT_INT:
+				return IntCellStore.create((int) size);
+			default:
+				throw new IllegalArgumentException("Unknown cell layout " + layout);
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * ObserverWatchdog.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.dirkgassen.wator.simulator;
+
+import com.dirkgassen.wator.utils.RollingHistogram;
+
+/**
+ * Keeps track of how long the notifications of one observer take (in a {@link RollingHistogram} of microseconds)
+ * and decides when the observer has exceeded its time budget often enough to be notified less often (see
+ * {@link SimulatorRunnable#demoteDelivery(int)}) and when a demoted observer has been fast enough for long enough to
+ * get its registered delivery policy back (see {@link #recovered(long, long)}). Not thread safe: it must only be used by the thread notifying the
+ * observer.
+ */
+public final class ObserverWatchdog {
+
+	/** Number of notifications in a row that have to exceed the budget before the observer is demoted */
+	public static final int STRIKES = 5;
+
+	/** Shortest interval (in milliseconds) for an observer demoted to {@link SimulatorRunnable#DELIVER_SAMPLED} */
+	public static final int MIN_SAMPLED_INTERVAL = 100;
+
+	/**
+	 * Number of notifications in a row that have to stay within the budget of the registered delivery policy before
+	 * a demoted observer is promoted back to it the first time
+	 */
+	public static final int RECOVERY_CALLS = 50;
+
+	/** Largest number of notifications in a row needed for a promotion (see {@link #recoveryCalls}) */
+	public static final int MAX_RECOVERY_CALLS = RECOVERY_CALLS << 6;
+
+	/** How long the recent notifications of the observer took (in microseconds) */
+	private final RollingHistogram notificationTimes = new RollingHistogram();
+
+	/** Number of notifications in a row that have exceeded the budget */
+	private int strikes = 0;
+
+	/** Number of notifications in a row that have stayed within the budget of the registered delivery policy */
+	private int goodCalls = 0;
+
+	/**
+	 * Number of notifications in a row needed for a promotion. Doubles (up to {@link #MAX_RECOVERY_CALLS}) whenever
+	 * the observer has to be demoted again after a promotion, so that an observer that is only fast enough while
+	 * demoted does not go back and forth all the time.
+	 */
+	private int recoveryCalls = RECOVERY_CALLS;
+
+	/** Flag whether the observer has been promoted since its last demotion */
+	private boolean promoted = false;
+
+	/**
+	 * Records how long a notification of the observer took.
+	 *
+	 * @param duration duration of the notification (in microseconds)
+	 * @param budget   time budget of a notification (in microseconds)
+	 * @return {@code true} if the observer has exceeded its budget {@link #STRIKES} times in a row and should be
+	 *     demoted (the count starts over)
+	 */
+	public boolean notified(long duration, long budget) {
+		notificationTimes.add(duration);
+		if (duration <= budget) {
+			strikes = 0;
+			return false;
+		}
+		if (++strikes < STRIKES) {
+			return false;
+		}
+		strikes = 0;
+		goodCalls = 0;
+		if (promoted) {
+			recoveryCalls = Math.min(2 * recoveryCalls, MAX_RECOVERY_CALLS);
+			promoted = false;
+		}
+		return true;
+	}
+
+	/**
+	 * Records how a notification of a demoted observer compares to the budget of its registered delivery policy.
+	 * Must be called (after {@link #notified(long, long)}) for each notification while the observer is demoted.
+	 *
+	 * @param duration         duration of the notification (in microseconds)
+	 * @param registeredBudget time budget of a notification with the registered delivery policy (in microseconds)
+	 * @return {@code true} if enough notifications in a row have stayed within the budget and the observer should get
+	 *     its registered delivery policy back (the count starts over)
+	 */
+	public boolean recovered(long duration, long registeredBudget) {
+		if (duration > registeredBudget) {
+			goodCalls = 0;
+			return false;
+		}
+		if (++goodCalls < recoveryCalls) {
+			return false;
+		}
+		goodCalls = 0;
+		promoted = true;
+		return true;
+	}
+
+	/**
+	 * Returns the interval for an observer demoted to {@link SimulatorRunnable#DELIVER_SAMPLED}: long enough for the
+	 * observer to spend at most a quarter of its time in notifications (judging by the 90th percentile) and at least
+	 * twice the current interval.
+	 *
+	 * @param currentInterval current interval of the observer (in milliseconds; 0 if it is not sampled yet)
+	 * @return new interval (in milliseconds)
+	 */
+	public int getSampledInterval(int currentInterval) {
+		final long slowNotification = Math.min(notificationTimes.getPercentile(0.9f), Integer.MAX_VALUE / 4 * 1000L);
+		return (int) Math.max(Math.max(MIN_SAMPLED_INTERVAL, 2L * currentInterval), 4 * slowNotification / 1000L);
+	}
+
+	/** @return how long the recent notifications of the observer took (in microseconds) */
+	public RollingHistogram getNotificationTimes() {
+		return notificationTimes;
+	}
+
+}
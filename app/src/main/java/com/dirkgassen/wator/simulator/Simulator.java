@@ -17,51 +17,103 @@
 
 package com.dirkgassen.wator.simulator;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import com.dirkgassen.wator.utils.FastRandom;
 
 /**
  * Simulator for a Wa-Tor world. The simulator contains data structures for the world, the parameters with which fish
  * and shark move and reproduce and it contains methods to advance the simulation by one.
  *
- * This simulator stores the state of the world in an array of {@code short}. Each cell contains the information
- * about the state of the world cell:
+ * This simulator stores the state of the world in an array of {@code byte}, {@code short} or {@code int} (see
+ * {@link #getCellLayout()}). Each cell contains the information about the state of the world cell:
  * <ul>
  *     <li>If the value is zero then the cell is empty.</li>
- *     <li>If the value is positive then the cell contains a shark. The upper half of the value is the shark hunger and
- *         the lower half is the maturity of the shark (time since last reproduction in ticks).</li>
+ *     <li>If the value is positive then the cell contains a shark. The upper bits of the value are the shark hunger
+ *         and the lower bits are the maturity of the shark (time since last reproduction in ticks). The maturity gets
+ *         just enough bits to store the breed time of the shark.</li>
  *     <li>If the value is negative then the cell contains a fish. The absolute value is the maturity of the fish
  *          (time since last reproduction in ticks).</li>
  * </ul>
  *
+ * The cells are numbered row by row with a {@code long} (see {@link WorldInspector#getCurrentPosition()}) so that a
+ * world can have more cells than an {@code int} can count; such a huge world must be stored outside of the Java heap
+ * (see {@link WorldParameters#setOffHeapStorage(boolean)}).
+ *
  * The time in the world is measured in ticks. To progress the world to the next tick call {@link #tick()} or
  * {@link #tick(int)}.
  *
+ * The simulator has two engines to calculate a tick (see {@link #setEngine(int)}). The {@link #ENGINE_DENSE} engine
+ * visits every cell of the world and is the better choice for crowded worlds. The {@link #ENGINE_SPARSE} engine keeps
+ * a list of the cells that contain fish or shark and only visits those. Its cost per tick depends on the number of
+ * animals rather than on the size of the world, which makes it the better choice for mostly empty worlds.
+ *
+ * By default a tick copies the current world into a second buffer, calculates the next world in that buffer and then
+ * swaps the buffers. With {@link #setInPlaceUpdate(boolean)} the simulator instead updates a single buffer in place,
+ * which saves the copy and the memory of the second buffer.
+ *
  * To access the current world a {@link WorldInspector} can be requested via {@link #getWorldToPaint()}. A world
- * inspectore stores a snapshot of the world at the time it was requested. The world can progress while the inspector
- * is in use but the inspector won't be affected.
+ * inspector refers to a snapshot of the world after the most recent tick. The world can progress while the inspector
+ * is in use but the inspector won't be affected. After each tick (and after each change through
+ * {@link #setFish(int, int, short)} or {@link #setShark(int, int, short, short)}) the simulator publishes a new
+ * snapshot. Requesting an inspector neither takes the monitor of the simulator nor copies the world, so painting
+ * never holds up a tick and vice versa. A snapshot consists of immutable tiles of {@link #DIRTY_TILE_SIZE} x
+ * {@link #DIRTY_TILE_SIZE} cells: a new snapshot only copies the tiles that changed and shares all other tiles with
+ * the previous snapshot. Holding on to many inspectors (for example to keep a history of the world) therefore only
+ * costs the memory of the tiles that changed in between. The simulator records which tiles of {@link #DIRTY_TILE_SIZE} x
+ * {@link #DIRTY_TILE_SIZE} cells change in a tick, so that a consumer of world inspectors can find out with
+ * {@link WorldInspector#isTileDirty(int, int, long)} which parts of the world changed since the last world it
+ * consumed and only process those.
  *
  * Note that to avoid excessive object creation (which also puts strain on the garbage collector) {@link WorldInspector#release()}
  * when the world inspector is no longer being used.
  */
 // Note that this class can tick the world with multiple threads. The idea behind it is to separate access to the data
-// instead of synchronizing the threads. The world is processed in multiple chunks. The chunks are divided into two
-// sets such that each chunk in each set does not affect any other chunk in the same set.
+// instead of synchronizing the threads. The world is divided into a grid of rectangular tiles. Each tile gets one of
+// four colours depending on whether its column and its row in the grid are even or odd. The tiles of one colour are
+// calculated at the same time (one phase), the four colours one after the other.
 //
 // Imagine this:
-// For two threads divide the world into four chunks, e.g.:
-//   A: cells 0 to 99,
-//   B: cells 100 to 199,
-//   C: cells 200 to 299,
-//   and D: cells 300 to 399.
-// The first set would contain chunks A and C while the second set would contain B and D. Now chunks A and C can
-// be calculated simultaniously since none of the cells affected would be anywhere near chunk C. The same is true
-// for chunks B and D. Therefore, we can let two threads calculate chunks A and B, then wait until both are done and
-// then let two threads calculate chunks B and D.
+// For four threads divide the world into 4 x 4 tiles:
+//   A B A B
+//   C D C D
+//   A B A B
+//   C D C D
+// An animal in a tile can only affect the cells in its tile and the cells directly next to its tile. Two tiles of
+// the same colour are always separated by a tile of another colour (also where the world wraps around, since the
+// number of tile columns and rows is even). As long as each tile is at least two cells wide and high, no cell can be
+// reached from two tiles of the same colour. Therefore, we can let four threads calculate the four A tiles, then wait
+// until all of them are done, then let the threads calculate the four B tiles and so on. If the world is too narrow
+// (or too low) to split it into an even number of tiles the grid has only one column (or row) of tiles, which
+// reduces the number of colours.
 //
 // To minimize memory allocation we use WorldCalculatorState objects for each thread and a calculatorThread array.
-// The calculatorThread array contains CalculatorThread thread objects that in their "run" loop block until they receive
-// a world chunk to calculate. Details see in the CalculatorThread class documentation.
+// The calculatorThread array contains CalculatorThread thread objects that in their "run" loop wait until a phase is
+// scheduled. All threads (including the thread calling tick) then claim the tiles of the phase one by one from a shared
+// counter until there are no tiles left. The grid has a few tiles per thread so that a thread that finishes its
+// tiles early picks up tiles that would otherwise wait for a slower thread. Details see in the CalculatorThread class
+// documentation.
+//
+// Phases are scheduled by incrementing a volatile phase counter and the end of a phase is signalled by an atomic
+// counter of busy threads reaching zero. A thread that waits for either of them first spins for a while (only with
+// BARRIER_SPINNING) and then parks (LockSupport.park) after announcing that it does so. Whoever changes one of the
+// counters unparks the threads that announced parking; no lock is involved. For small worlds a phase takes less time
+// than parking and unparking a thread, which is when spinning pays off.
+//
+// The sparse engine works differently: activeCells contains the cell numbers of all fish and shark in currentWorld.
+// A tick visits the entries of that list in a random order and appends every cell that is occupied after the animal
+// moved (the animal's new cell and, if it reproduced, its old cell) to a new list. A cell is marked as processed
+// exactly when it is appended so that a shark eating a fish that has already moved does not add the cell twice. At the
+// end of the tick the new list becomes activeCells. Since only the cells in the previous and the current list can
+// differ between currentWorld and nextWorld the sparse engine only copies those cells instead of the whole world.
 final public class Simulator {
 
 	/**
@@ -73,6 +125,10 @@ final public class Simulator {
 	 * {@link #moveToNext()}, which moves the current position to the next cell in the world. If there are no more
 	 * cells in the current row the current position is moved to the first cell in the next row and if there are no
 	 * more rows the inspector resets to the first cell in the first row.
+	 *
+	 * An inspector requested with {@link Simulator#getWorldToPaint(int, int, int, int)} only covers a region of the
+	 * world: {@link #moveToNext()} only walks through the cells of the region, the visitors only visit the fish and
+	 * shark in the region and only the cells of the region may be accessed otherwise.
 	 */
 	public class WorldInspector {
 
@@ -85,17 +141,87 @@ final public class Simulator {
 		/** Indicates that {@link #moveToNext()} moved to the first cell in the first row */
 		public static final int RESET = 2;
 
+		/** Type of an empty cell (see {@link #copyCellTypes(int, int, int, int, byte[], int, int)}) */
+		public static final byte CELL_EMPTY = 0;
+
+		/** Type of a cell with a fish (see {@link #copyCellTypes(int, int, int, int, byte[], int, int)}) */
+		public static final byte CELL_FISH = 1;
+
+		/** Type of a cell with a shark (see {@link #copyCellTypes(int, int, int, int, byte[], int, int)}) */
+		public static final byte CELL_SHARK = 2;
+
 		/** Number of fish in this world */
-		private int fishCount;
+		private long fishCount;
 
 		/** Number of shark in this world */
-		private int sharkCount;
+		private long sharkCount;
+
+		/** Snapshot this inspector refers to */
+		private WorldSnapshot snapshot;
+
+		/** Tiles of the snapshot (see {@link WorldSnapshot#tiles}) */
+		private SnapshotTile[] tiles;
 
-		/** Refers to the world */
-		private short[] world;
+		/** Version of this world (see {@link #getVersion()}) */
+		private long version;
+
+		/** Number of ticks calculated for this world (see {@link #getTickCount()}) */
+		private long tickCount;
+
+		/** Version of the world when each dirty tile changed last (see {@link Simulator#tileVersions}) */
+		private long[] tileVersions;
 
 		/** Stores the current position in the world */
-		private int currentNo;
+		private long currentNo;
+
+		/** Horizontal coordinate (column) of the current position */
+		private int currentX;
+
+		/** Horizontal coordinate (column) of the left edge of the region of this inspector */
+		private int regionX;
+
+		/** Vertical coordinate (row) of the top edge of the region of this inspector */
+		private int regionY;
+
+		/** Width of the region of this inspector */
+		private int regionWidth;
+
+		/** Height of the region of this inspector */
+		private int regionHeight;
+
+		/** Column of the current position within the region */
+		private int regionColumn;
+
+		/** Row of the current position within the region */
+		private int regionRow;
+
+		/** Vertical coordinate (row) of the current position */
+		private int currentY;
+
+		/** Values of the cells of a row of a region (see {@link #readRow(int, int, int)}); created when first needed */
+		private int[] rowCells;
+
+		/**
+		 * Returns the value of a cell of the snapshot.
+		 *
+		 * @param x horizontal coordinate (column) of the cell
+		 * @param y vertical coordinate (row) of the cell
+		 * @return value of the cell
+		 */
+		private int getCell(int x, int y) {
+			return tiles[(x >> DIRTY_TILE_SHIFT) + (y >> DIRTY_TILE_SHIFT) * dirtyTileColumns].cells
+					.get((x & DIRTY_TILE_MASK) | ((y & DIRTY_TILE_MASK) << DIRTY_TILE_SHIFT));
+		}
+
+		/**
+		 * Returns the value of a cell of the snapshot.
+		 *
+		 * @param no number of the cell
+		 * @return value of the cell
+		 */
+		private int getCell(long no) {
+			return getCell((int) (no % worldWidth), (int) (no / worldWidth));
+		}
 
 		/**
 		 * Set the current position of this inspector to a particular location
@@ -104,13 +230,18 @@ final public class Simulator {
 		 * @param y vertical coordinate (row) of the new current position
 		 */
 		final public void moveTo(int x, int y) {
-			currentNo = x + y * worldWidth;
+			currentNo = x + (long) y * worldWidth;
+			currentX = x;
+			currentY = y;
+			regionColumn = x >= regionX ? x - regionX : x - regionX + worldWidth;
+			regionRow = y >= regionY ? y - regionY : y - regionY + worldHeight;
 		}
 
 		/**
 		 * Moves the current position to the next cell. If there are no more cells in the current row the current
 		 * position is set to the first cell in the next row. If there are no more rows the current position is reset
-		 * to the first cell in the first row
+		 * to the first cell in the first row. For an inspector of a region the rows are the rows of the region (which
+		 * wrap around the edges of the world).
 		 * @return <ul>
 		 *     <li>{@link #NEXT_CELL}</li> if the current position was set the next cell in a row
 		 *     <li>{@link #NEXT_ROW}</li> if the current position was moved to the first cell in the next row
@@ -118,54 +249,68 @@ final public class Simulator {
 		 * </ul>
 		 */
 		final public int moveToNext() {
-			if (currentNo == world.length - 1) {
-				currentNo = 0;
-				return RESET;
+			if (++regionColumn < regionWidth) {
+				if (++currentX < worldWidth) {
+					currentNo++;
+				} else {
+					currentX = 0;
+					currentNo = (long) currentY * worldWidth;
+				}
+				return NEXT_CELL;
+			}
+			regionColumn = 0;
+			currentX = regionX;
+			if (++regionRow < regionHeight) {
+				if (++currentY == worldHeight) {
+					currentY = 0;
+				}
+				currentNo = currentX + (long) currentY * worldWidth;
+				return NEXT_ROW;
 			}
-			currentNo++;
-			return currentNo % worldWidth == 0 ? NEXT_ROW : NEXT_CELL;
+			reset();
+			return RESET;
 		}
 
 		/**
 		 * Returns the current position in the world. All cells are numbered sequentially starting with zero
 		 * @return current position the world
 		 */
-		final public int getCurrentPosition() {
+		final public long getCurrentPosition() {
 			return currentNo;
 		}
 
 		/** @return horizontal coordinate (row) of the current position */
-		final public short getCurrentX() {
-			return (short) (currentNo % worldWidth);
+		final public int getCurrentX() {
+			return currentX;
 		}
 
 		/** @return vertical coordinate (row) of the current position */
-		final public short getCurrentY() {
-			return (short) (currentNo / worldWidth);
+		final public int getCurrentY() {
+			return currentY;
 		}
 
 		/** @return {@code true} if there is a fish at the current position */
 		final public boolean isFish() {
-			return world[currentNo] < 0;
+			return getCell(currentX, currentY) < 0;
 		}
 
 		/** @return {@code true} if there is a shark at the current position */
 		final public boolean isShark() {
-			return world[currentNo] > 0;
+			return getCell(currentX, currentY) > 0;
 		}
 
 		/** @return {@code true} if the cell at the current position is empty */
 		final public boolean isEmpty() {
-			return world[currentNo] == 0;
+			return getCell(currentX, currentY) == 0;
 		}
 
 		/** @return {@code true} if there is a fish at the current position */
-		final public int getFishCount() {
+		final public long getFishCount() {
 			return fishCount;
 		}
 
 		/** @return {@code true} if there is a shark at the current position */
-		final public int getSharkCount() {
+		final public long getSharkCount() {
 			return sharkCount;
 		}
 
@@ -174,10 +319,10 @@ final public class Simulator {
 		 * (or 0 if there is no fish at the current location)
 		 */
 		final public short getFishAge() {
-			if (world[currentNo] >= 0) {
+			if (getCell(currentX, currentY) >= 0) {
 				return 0;
 			}
-			return (short) -world[currentNo];
+			return (short) -getCell(currentX, currentY);
 		}
 
 		/**
@@ -185,10 +330,10 @@ final public class Simulator {
 		 * (or 0 if there is no shark at the current location)
 		 */
 		final public short getSharkAge() {
-			if (world[currentNo] <= 0) {
+			if (getCell(currentX, currentY) <= 0) {
 				return 0;
 			}
-			return (short) (world[currentNo] & 255);
+			return (short) (getCell(currentX, currentY) & sharkAgeMask);
 		}
 
 		/**
@@ -196,10 +341,10 @@ final public class Simulator {
 		 * (or 0 if there is no shark at the current location)
 		 */
 		final public short getSharkHunger() {
-			if (world[currentNo] <= 0) {
+			if (getCell(currentX, currentY) <= 0) {
 				return 0;
 			}
-			return (short) (world[currentNo] >> 8);
+			return (short) (getCell(currentX, currentY) >> sharkHungerShift);
 		}
 
 		/**
@@ -208,11 +353,12 @@ final public class Simulator {
 		 * @return age (maturity) of the fish at the specified location
 		 * (or 0 if there is no fish at the current location)
 		 */
-		final public short getFishAge(int no) {
-			if (world[no] >= 0) {
+		final public short getFishAge(long no) {
+			final int cell = getCell(no);
+			if (cell >= 0) {
 				return 0;
 			}
-			return (short) -world[no];
+			return (short) -cell;
 		}
 
 		/**
@@ -221,11 +367,12 @@ final public class Simulator {
 		 * @return age (maturity) of the shark at the specified location
 		 * (or 0 if there is no shark at the current location)
 		 */
-		final public short getSharkAge(int no) {
-			if (world[no] <= 0) {
+		final public short getSharkAge(long no) {
+			final int cell = getCell(no);
+			if (cell <= 0) {
 				return 0;
 			}
-			return (short) (world[no] & 255);
+			return (short) (cell & sharkAgeMask);
 		}
 
 		/**
@@ -234,11 +381,12 @@ final public class Simulator {
 		 * @return hunger of the shark at the specified location
 		 * (or 0 if there is no shark at the current location)
 		 */
-		final public short getSharkHunger(int no) {
-			if (world[no] <= 0) {
+		final public short getSharkHunger(long no) {
+			final int cell = getCell(no);
+			if (cell <= 0) {
 				return 0;
 			}
-			return (short) (world[no] >> 8);
+			return (short) (cell >> sharkHungerShift);
 		}
 
 		/**
@@ -248,7 +396,7 @@ final public class Simulator {
 		 * (or 0 if there is no fish at the current location)
 		 */
 		final public short getFishAge(int x, int y) {
-			return getFishAge(x + y * worldWidth);
+			return getFishAge(x + (long) y * worldWidth);
 		}
 
 		/**
@@ -258,7 +406,7 @@ final public class Simulator {
 		 * (or 0 if there is no shark at the current location)
 		 */
 		final public short getSharkAge(int x, int y) {
-			return getSharkAge(x + y * worldWidth);
+			return getSharkAge(x + (long) y * worldWidth);
 		}
 
 		/**
@@ -268,24 +416,315 @@ final public class Simulator {
 		 * (or 0 if there is no shark at the current location)
 		 */
 		final public short getSharkHunger(int x, int y) {
-			return getSharkHunger(x + y * worldWidth);
+			return getSharkHunger(x + (long) y * worldWidth);
+		}
+
+		/**
+		 * Verifies that a region lies within the world and within the region of this inspector (without wrapping
+		 * around the edges of the world) and makes sure that {@link #rowCells} exists.
+		 *
+		 * @param x      horizontal coordinate (column) of the left edge of the region
+		 * @param y      vertical coordinate (row) of the top edge of the region
+		 * @param width  width of the region
+		 * @param height height of the region
+		 */
+		private void checkRegion(int x, int y, int width, int height) {
+			if (x < 0 || width < 0 || x + width > worldWidth) {
+				throw new IllegalArgumentException("Columns " + x + " to " + (x + width - 1) + " are out of bounds (width = " + worldWidth + ")");
+			}
+			if (y < 0 || height < 0 || y + height > worldHeight) {
+				throw new IllegalArgumentException("Rows " + y + " to " + (y + height - 1) + " are out of bounds (height = " + worldHeight + ")");
+			}
+			if (regionWidth < worldWidth && (x >= regionX ? x - regionX : x - regionX + worldWidth) + width > regionWidth) {
+				throw new IllegalArgumentException("Columns " + x + " to " + (x + width - 1) + " are outside of the region (columns " + regionX + " to " + ((regionX + regionWidth - 1) % worldWidth) + ")");
+			}
+			if (regionHeight < worldHeight && (y >= regionY ? y - regionY : y - regionY + worldHeight) + height > regionHeight) {
+				throw new IllegalArgumentException("Rows " + y + " to " + (y + height - 1) + " are outside of the region (rows " + regionY + " to " + ((regionY + regionHeight - 1) % worldHeight) + ")");
+			}
+			if (rowCells == null) {
+				rowCells = new int[worldWidth];
+			}
+		}
+
+		/**
+		 * Reads the values of the cells of a part of a row into {@link #rowCells}, a whole tile segment at a time.
+		 *
+		 * @param x     horizontal coordinate (column) of the first cell
+		 * @param y     vertical coordinate (row) of the row
+		 * @param width number of cells to read
+		 */
+		private void readRow(int x, int y, int width) {
+			final int tileRowStart = (y >> DIRTY_TILE_SHIFT) * dirtyTileColumns;
+			final int tileCellRowStart = (y & DIRTY_TILE_MASK) << DIRTY_TILE_SHIFT;
+			int cellNo = 0;
+			while (cellNo < width) {
+				final int cellX = x + cellNo;
+				final int count = Math.min(width - cellNo, DIRTY_TILE_SIZE - (cellX & DIRTY_TILE_MASK));
+				tiles[tileRowStart + (cellX >> DIRTY_TILE_SHIFT)].cells.copyTo(tileCellRowStart | (cellX & DIRTY_TILE_MASK), rowCells, cellNo, count);
+				cellNo += count;
+			}
+		}
+
+		/**
+		 * Copies the types of the cells of a rectangular region ({@link #CELL_EMPTY}, {@link #CELL_FISH} or
+		 * {@link #CELL_SHARK}) into an array. Like all bulk copies the region must not wrap around the edges of the
+		 * world and must lie within the region of this inspector. The cell at {@code x + column}, {@code y + row}
+		 * goes to {@code target[offset + row * stride + column]}.
+		 *
+		 * @param x      horizontal coordinate (column) of the left edge of the region
+		 * @param y      vertical coordinate (row) of the top edge of the region
+		 * @param width  width of the region
+		 * @param height height of the region
+		 * @param target array to copy the types to
+		 * @param offset index in {@code target} for the top left cell of the region
+		 * @param stride difference of the indices in {@code target} of two rows
+		 */
+		final public void copyCellTypes(int x, int y, int width, int height, byte[] target, int offset, int stride) {
+			checkRegion(x, y, width, height);
+			final int[] cells = rowCells;
+			for (int row = 0; row < height; row++, offset += stride) {
+				readRow(x, y + row, width);
+				for (int column = 0; column < width; column++) {
+					final int cell = cells[column];
+					target[offset + column] = cell < 0 ? CELL_FISH : cell > 0 ? CELL_SHARK : CELL_EMPTY;
+				}
+			}
+		}
+
+		/**
+		 * Copies the ages of the fish in a rectangular region into an array (0 for cells without a fish). The cell at
+		 * {@code x + column}, {@code y + row} goes to {@code target[offset + row * stride + column]}.
+		 *
+		 * @param x      horizontal coordinate (column) of the left edge of the region
+		 * @param y      vertical coordinate (row) of the top edge of the region
+		 * @param width  width of the region
+		 * @param height height of the region
+		 * @param target array to copy the ages to
+		 * @param offset index in {@code target} for the top left cell of the region
+		 * @param stride difference of the indices in {@code target} of two rows
+		 */
+		final public void copyFishAges(int x, int y, int width, int height, short[] target, int offset, int stride) {
+			checkRegion(x, y, width, height);
+			final int[] cells = rowCells;
+			for (int row = 0; row < height; row++, offset += stride) {
+				readRow(x, y + row, width);
+				for (int column = 0; column < width; column++) {
+					final int cell = cells[column];
+					target[offset + column] = (short) (cell < 0 ? -cell : 0);
+				}
+			}
+		}
+
+		/**
+		 * Copies the ages of the shark in a rectangular region into an array (0 for cells without a shark). The cell
+		 * at {@code x + column}, {@code y + row} goes to {@code target[offset + row * stride + column]}.
+		 *
+		 * @param x      horizontal coordinate (column) of the left edge of the region
+		 * @param y      vertical coordinate (row) of the top edge of the region
+		 * @param width  width of the region
+		 * @param height height of the region
+		 * @param target array to copy the ages to
+		 * @param offset index in {@code target} for the top left cell of the region
+		 * @param stride difference of the indices in {@code target} of two rows
+		 */
+		final public void copySharkAges(int x, int y, int width, int height, short[] target, int offset, int stride) {
+			checkRegion(x, y, width, height);
+			final int[] cells = rowCells;
+			final int ageMask = sharkAgeMask;
+			for (int row = 0; row < height; row++, offset += stride) {
+				readRow(x, y + row, width);
+				for (int column = 0; column < width; column++) {
+					final int cell = cells[column];
+					target[offset + column] = (short) (cell > 0 ? cell & ageMask : 0);
+				}
+			}
+		}
+
+		/**
+		 * Copies the hunger of the shark in a rectangular region into an array (0 for cells without a shark). The
+		 * cell at {@code x + column}, {@code y + row} goes to {@code target[offset + row * stride + column]}.
+		 *
+		 * @param x      horizontal coordinate (column) of the left edge of the region
+		 * @param y      vertical coordinate (row) of the top edge of the region
+		 * @param width  width of the region
+		 * @param height height of the region
+		 * @param target array to copy the hunger to
+		 * @param offset index in {@code target} for the top left cell of the region
+		 * @param stride difference of the indices in {@code target} of two rows
+		 */
+		final public void copySharkHungers(int x, int y, int width, int height, short[] target, int offset, int stride) {
+			checkRegion(x, y, width, height);
+			final int[] cells = rowCells;
+			final int hungerShift = sharkHungerShift;
+			for (int row = 0; row < height; row++, offset += stride) {
+				readRow(x, y + row, width);
+				for (int column = 0; column < width; column++) {
+					final int cell = cells[column];
+					target[offset + column] = (short) (cell > 0 ? cell >> hungerShift : 0);
+				}
+			}
+		}
+
+		/**
+		 * Calls a visitor for each fish in the world (or region). The fish are visited tile by tile (see
+		 * {@link Simulator#DIRTY_TILE_SIZE}) and row by row within a tile. This does not change the current position.
+		 *
+		 * @param visitor visitor to call
+		 */
+		final public void forEachFish(FishVisitor visitor) {
+			final boolean wholeWorld = regionWidth == worldWidth && regionHeight == worldHeight;
+			for (int tileNo = 0; tileNo < tiles.length; tileNo++) {
+				if (tiles[tileNo] == null) {
+					// Not in the region
+					continue;
+				}
+				final CellStore cells = tiles[tileNo].cells;
+				final int startX = (tileNo % dirtyTileColumns) << DIRTY_TILE_SHIFT;
+				final int startY = (tileNo / dirtyTileColumns) << DIRTY_TILE_SHIFT;
+				final int columns = Math.min(DIRTY_TILE_SIZE, worldWidth - startX);
+				final int rows = Math.min(DIRTY_TILE_SIZE, worldHeight - startY);
+				for (int row = 0; row < rows; row++) {
+					final int y = startY + row;
+					for (int column = 0; column < columns; column++) {
+						final int cell = cells.get((row << DIRTY_TILE_SHIFT) | column);
+						if (cell < 0) {
+							final int x = startX + column;
+							if (!wholeWorld && !isInRegion(x, y)) {
+								continue;
+							}
+							visitor.visitFish(x + (long) y * worldWidth, x, y, (short) -cell);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Calls a visitor for each shark in the world (or region). The shark are visited tile by tile (see
+		 * {@link Simulator#DIRTY_TILE_SIZE}) and row by row within a tile. This does not change the current position.
+		 *
+		 * @param visitor visitor to call
+		 */
+		final public void forEachShark(SharkVisitor visitor) {
+			final boolean wholeWorld = regionWidth == worldWidth && regionHeight == worldHeight;
+			for (int tileNo = 0; tileNo < tiles.length; tileNo++) {
+				if (tiles[tileNo] == null) {
+					// Not in the region
+					continue;
+				}
+				final CellStore cells = tiles[tileNo].cells;
+				final int startX = (tileNo % dirtyTileColumns) << DIRTY_TILE_SHIFT;
+				final int startY = (tileNo / dirtyTileColumns) << DIRTY_TILE_SHIFT;
+				final int columns = Math.min(DIRTY_TILE_SIZE, worldWidth - startX);
+				final int rows = Math.min(DIRTY_TILE_SIZE, worldHeight - startY);
+				for (int row = 0; row < rows; row++) {
+					final int y = startY + row;
+					for (int column = 0; column < columns; column++) {
+						final int cell = cells.get((row << DIRTY_TILE_SHIFT) | column);
+						if (cell > 0) {
+							final int x = startX + column;
+							if (!wholeWorld && !isInRegion(x, y)) {
+								continue;
+							}
+							visitor.visitShark(x + (long) y * worldWidth, x, y, (short) (cell & sharkAgeMask), (short) (cell >> sharkHungerShift));
+						}
+					}
+				}
+			}
 		}
 
 		/** Resets the current position to the first cell in the first row. */
 		final public void reset() {
-			currentNo = 0;
+			currentX = regionX;
+			currentY = regionY;
+			currentNo = regionX + (long) regionY * worldWidth;
+			regionColumn = regionRow = 0;
+		}
+
+		/** @return horizontal coordinate (column) of the left edge of the region of this inspector */
+		final public int getRegionX() {
+			return regionX;
+		}
+
+		/** @return vertical coordinate (row) of the top edge of the region of this inspector */
+		final public int getRegionY() {
+			return regionY;
+		}
+
+		/** @return width of the region of this inspector */
+		final public int getRegionWidth() {
+			return regionWidth;
+		}
+
+		/** @return height of the region of this inspector */
+		final public int getRegionHeight() {
+			return regionHeight;
+		}
+
+		/**
+		 * @param x horizontal coordinate (column)
+		 * @param y vertical coordinate (row)
+		 * @return {@code true} if the cell is in the region of this inspector
+		 */
+		final public boolean isInRegion(int x, int y) {
+			final int column = x >= regionX ? x - regionX : x - regionX + worldWidth;
+			final int row = y >= regionY ? y - regionY : y - regionY + worldHeight;
+			return column < regionWidth && row < regionHeight;
 		}
 
 		/** @return width of the world */
-		final public short getWorldWidth() {
+		final public int getWorldWidth() {
 			return worldWidth;
 		}
 
 		/** @return height of the world */
-		final public short getWorldHeight() {
+		final public int getWorldHeight() {
 			return worldHeight;
 		}
 
+		/**
+		 * Returns the version of this world. Versions increase with each tick and each fish or shark put into the
+		 * world. A newer simulator always has greater versions than an older one, so a version can be compared with
+		 * that of a world of another simulator. Store the version of a world after consuming it and pass it to
+		 * {@link #isTileDirty(int, int, long)} the next time to find out which parts of the world have changed since.
+		 *
+		 * @return version of this world
+		 */
+		final public long getVersion() {
+			return version;
+		}
+
+		/** @return number of ticks calculated when this snapshot of the world was taken */
+		final public long getTickCount() {
+			return tickCount;
+		}
+
+		/** @return number of columns of dirty tiles (see {@link Simulator#DIRTY_TILE_SIZE}) */
+		final public int getDirtyTileColumns() {
+			return dirtyTileColumns;
+		}
+
+		/** @return number of rows of dirty tiles (see {@link Simulator#DIRTY_TILE_SIZE}) */
+		final public int getDirtyTileRows() {
+			return dirtyTileRows;
+		}
+
+		/**
+		 * Returns whether a cell of a dirty tile might have changed since an older version of the world. The dirty tile
+		 * in column {@code tileX} and row {@code tileY} covers the cells from {@code tileX * DIRTY_TILE_SIZE} to
+		 * {@code (tileX + 1) * DIRTY_TILE_SIZE - 1} (but at most to the edge of the world) horizontally and likewise
+		 * vertically. A tile is dirty when a fish or shark was calculated or put into one of its cells, so a tile that
+		 * is not dirty certainly has not changed.
+		 *
+		 * @param tileX        column of the dirty tile
+		 * @param tileY        row of the dirty tile
+		 * @param sinceVersion version of the older world (see {@link #getVersion()}); 0 to treat all tiles as dirty
+		 * @return {@code true} if the tile might have changed since {@code sinceVersion}
+		 */
+		final public boolean isTileDirty(int tileX, int tileY, long sinceVersion) {
+			return tileVersions[tileX + tileY * dirtyTileColumns] > sinceVersion;
+		}
+
 		/** @return number of ticks until a fish breeds (reproduces) */
 		final public short getFishBreedTime() {
 			return fishBreedTime;
@@ -302,35 +741,40 @@ final public class Simulator {
 		}
 
 		/**
-		 * Initializes this inspector with the given world
-		 * @param newWorld new world to set this inspector to
+		 * Initializes this inspector with the given snapshot. The caller must hold a reference to the snapshot (see
+		 * {@link WorldSnapshot#references}), which this inspector gives up in {@link #release()}.
+		 * @param newSnapshot snapshot to set this inspector to
+		 * @param x           horizontal coordinate (column) of the left edge of the region of this inspector
+		 * @param y           vertical coordinate (row) of the top edge of the region of this inspector
+		 * @param width       width of the region of this inspector
+		 * @param height      height of the region of this inspector
 		 */
-		private void setWorldToPaint(short[] newWorld) {
-			if (world == null || world.length != newWorld.length) {
-				world = new short[newWorld.length];
-			}
-			System.arraycopy(newWorld, 0, world, 0, newWorld.length);
-			fishCount = sharkCount = 0;
-			for (short worldCell : world) {
-				if (worldCell < 0) {
-					fishCount++;
-				} else if (worldCell > 0) {
-					sharkCount++;
-				}
-			}
-			this.currentNo = 0;
+		private void setSnapshot(WorldSnapshot newSnapshot, int x, int y, int width, int height) {
+			regionX = x;
+			regionY = y;
+			regionWidth = width;
+			regionHeight = height;
+			snapshot = newSnapshot;
+			tiles = newSnapshot.tiles;
+			fishCount = newSnapshot.fishCount;
+			sharkCount = newSnapshot.sharkCount;
+			tileVersions = newSnapshot.tileVersions;
+			version = newSnapshot.version;
+			tickCount = newSnapshot.tickCount;
+			reset();
 		}
 
 		/**
 		 * Releases this inspector. This method must be called whenever the inspector is no longer being used.
 		 */
 		public void release() {
-			synchronized (Simulator.this) {
-				for (int no = 0; no < worldInspectors.length; no++) {
-					if (worldInspectors[no] == null) {
-						worldInspectors[no] = this;
-						return;
-					}
+			// The simulator recycles the snapshot (and its tiles) the next time it publishes a snapshot
+			snapshot.references.decrementAndGet();
+			snapshot = null;
+			tiles = null;
+			for (int no = 0; no < worldInspectors.length(); no++) {
+				if (worldInspectors.compareAndSet(no, null, this)) {
+					break;
 				}
 			}
 		}
@@ -338,221 +782,1064 @@ final public class Simulator {
 	}
 
 	/**
-	 * Stores information that can be used when calculating the next world state.
+	 * A tile of {@link #DIRTY_TILE_SIZE} x {@link #DIRTY_TILE_SIZE} cells of a {@link WorldSnapshot}. The cells of a tile
+	 * never change while the tile belongs to a snapshot; a tile can belong to several snapshots.
 	 *
-	 * In the future this class may be used in threads that do calculations in parallel.
+	 * Tiles are always stored on the Java heap, even for a world with {@link #isOffHeapStorage()}: a tile is far too
+	 * small for a direct buffer of its own (each of which costs a native allocation and a cleaner) and tiles are
+	 * recycled (see {@link #freeSnapshotTiles}) rather than collected.
 	 */
-	final class WorldCalculatorState {
-		/** Start of the chunk of the world to be calculated */
-		private int start;
+	private final class SnapshotTile {
+
+		/** The cells of the tile (row by row, each row {@link #DIRTY_TILE_SIZE} cells long) */
+		final CellStore cells = CellStore.create(cellLayout, DIRTY_TILE_SIZE * DIRTY_TILE_SIZE, false);
+
+		/** Number of snapshots this tile belongs to. Guarded by the monitor of the simulator. */
+		int references;
+	}
+
+	/**
+	 * A snapshot of the world that is published to {@link WorldInspector}s (see {@link #publishSnapshot(boolean)}). The
+	 * snapshot consists of {@link SnapshotTile}s, which it shares with other snapshots as long as the tiles have not
+	 * changed.
+	 */
+	private final class WorldSnapshot {
+
+		/**
+		 * Number of inspectors referring to this snapshot; {@link #SNAPSHOT_UPDATING} is added while the simulator
+		 * recycles the snapshot or brings it up to date. An inspector may only use the snapshot if the number is
+		 * positive after incrementing it.
+		 */
+		final AtomicInteger references = new AtomicInteger();
 
 		/**
-		 * End of the chunk of the world to be calculated. This field stores the index of the cell after the last one
-		 * to be calculated.
+		 * The tiles of the world (in the order of the dirty tiles, see {@link #dirtyTileColumns}); {@code null} for
+		 * the tiles no inspector is interested in (see {@link #tileInterestTimes}) and while the snapshot is not in use
 		 */
-		private int end;
+		private final SnapshotTile[] tiles = new SnapshotTile[dirtyTiles.length];
 
-		/** A random number generator */
-		public final Random random;
+		/** Number of fish in this snapshot */
+		private long fishCount;
 
-		/** An array that contains the indices of the neighbor cells of a current cell */
-		public final int neighbours[];
+		/** Number of shark in this snapshot */
+		private long sharkCount;
 
-		/** An array that can store all indices of the neighbor cells that contain fish */
-		public final int fishNeighbourPos[];
+		/** Version of the world in this snapshot (see {@link Simulator#version}); 0 while the snapshot is not in use */
+		private long version;
 
-		/** An array that can store all indices of the neighbor cells that contain shark */
-		public final int emptyNeighbourPos[];
+		/** Number of ticks calculated when this snapshot was taken (see {@link Simulator#tickCount}) */
+		private long tickCount;
+
+		/** Version of the world when each dirty tile changed last (see {@link Simulator#tileVersions}) */
+		private final long[] tileVersions = new long[dirtyTiles.length];
 
 		/**
-		 * Creates a new initialized object
-		 * @param allowDiagonally allow for diagonal movement ({@code true}) or only for horizontal and vertical
-		 *                        movement (@code false)?
+		 * Sets this snapshot to {@link #currentWorld}. Only the tiles inspectors have recently been interested in
+		 * (see {@link #tileInterestTimes}) are part of the snapshot. The tiles that did not change since
+		 * {@code previous} are taken over from {@code previous}; only the others are copied into new tiles. Must be
+		 * called while holding the monitor of the simulator and while no tick updates the world in place.
+		 *
+		 * @param previous most recent snapshot (or {@code null} if there is none)
 		 */
-		WorldCalculatorState(boolean allowDiagonally) {
-			random = new Random();
-			neighbours = new int[allowDiagonally ? 8 : 4];
-			fishNeighbourPos = new int[neighbours.length];
-			emptyNeighbourPos = new int[neighbours.length];
+		private void update(WorldSnapshot previous) {
+			final int now = getInterestTime();
+			for (int tileY = 0; tileY < dirtyTileRows; tileY++) {
+				final int startY = tileY << DIRTY_TILE_SHIFT;
+				final int rows = Math.min(DIRTY_TILE_SIZE, worldHeight - startY);
+				for (int tileX = 0; tileX < dirtyTileColumns; tileX++) {
+					final int tileNo = tileX + tileY * dirtyTileColumns;
+					SnapshotTile tile;
+					if (now - tileInterestTimes[tileNo] > TILE_INTEREST_TIMEOUT) {
+						tiles[tileNo] = null;
+						continue;
+					} else if (previous != null && previous.tiles[tileNo] != null
+							&& Simulator.this.tileVersions[tileNo] <= previous.version) {
+						tile = previous.tiles[tileNo];
+					} else {
+						tile = obtainSnapshotTile();
+						final int startX = tileX << DIRTY_TILE_SHIFT;
+						final int columns = Math.min(DIRTY_TILE_SIZE, worldWidth - startX);
+						for (int row = 0; row < rows; row++) {
+							tile.cells.copyFrom(currentWorld, startX + (long) (startY + row) * worldWidth, row << DIRTY_TILE_SHIFT, columns);
+						}
+					}
+					tile.references++;
+					tiles[tileNo] = tile;
+				}
+			}
+			System.arraycopy(Simulator.this.tileVersions, 0, tileVersions, 0, tileVersions.length);
+			fishCount = Simulator.this.fishCount;
+			sharkCount = Simulator.this.sharkCount;
+			version = Simulator.this.version;
+			tickCount = Simulator.this.tickCount;
 		}
 
 		/**
-		 * Sets the chunk bounds.
-		 * @param start first cell to work on
-		 * @param end cell after the last cell to work on
+		 * Gives up the tiles of this snapshot; tiles that belong to no other snapshot go back to
+		 * {@link #freeSnapshotTiles}. Must be called while holding the monitor of the simulator.
 		 */
-		public void setChunk(int start, int end) {
-			this.start = start;
-			this.end = end;
+		private void recycle() {
+			if (version == 0) {
+				return;
+			}
+			for (int tileNo = 0; tileNo < tiles.length; tileNo++) {
+				if (tiles[tileNo] != null && --tiles[tileNo].references == 0) {
+					freeSnapshotTiles.add(tiles[tileNo]);
+				}
+				tiles[tileNo] = null;
+			}
+			version = 0;
 		}
 	}
 
-	/**
-	 * Internal counter to nicely identify the calculator threads
-	 */
-	static private int calculatorThreadCounter = 0;
+	/** Receives the fish of a world (see {@link WorldInspector#forEachFish(FishVisitor)}) */
+	public interface FishVisitor {
+
+		/**
+		 * Called for a fish.
+		 *
+		 * @param no  number of the cell of the fish
+		 * @param x   horizontal coordinate (column) of the fish
+		 * @param y   vertical coordinate (row) of the fish
+		 * @param age age (maturity) of the fish
+		 */
+		void visitFish(long no, int x, int y, short age);
+	}
+
+	/** Receives the shark of a world (see {@link WorldInspector#forEachShark(SharkVisitor)}) */
+	public interface SharkVisitor {
+
+		/**
+		 * Called for a shark.
+		 *
+		 * @param no     number of the cell of the shark
+		 * @param x      horizontal coordinate (column) of the shark
+		 * @param y      vertical coordinate (row) of the shark
+		 * @param age    age (maturity) of the shark
+		 * @param hunger hunger of the shark
+		 */
+		void visitShark(long no, int x, int y, short age, short hunger);
+	}
 
 	/**
-	 * Special {@link Thread} that calculates chunks of the next world. Each of these threads has a
-	 * {@link WorldCalculatorState} that defines the range of the chunk this particular thread should work on.
-	 *
-	 * To make a thread work on a chunk call {@link #startCalculatingWorld(int, int)}. To wait for the calculation
-	 * to be complete call {@link #waitForWorkDone()}.
-	 *
-	 * The class has one of the states: {@link #STATE_STARTING}, {@link #STATE_WAITING_FOR_WORK},
-	 * {@link #STATE_WORKING} or {@link #STATE_DEAD}.
-	 *
-	 * The {@link #run()} loop is a never ending loop that blocks at the beginning (transitioning from
-	 * {@link #STATE_STARTING} to {@link #STATE_WAITING_FOR_WORK}. Calling {@link #startCalculatingWorld(int, int)}
-	 * changes the internal {@link WorldCalculatorState} to the chunk to calculate and then resumes the {@link #run()}
-	 * loop, which makes the thread transition to {@link #STATE_WORKING}. Once the chunk is calculated the state changes
-	 * to {@link #STATE_WAITING_FOR_WORK} again. The {@link #run()} loop exits when an exception happens (including
-	 * {@link InterruptedException}).
+	 * Statistics of a tick: the number of fish and shark after the tick and the number of events (births, fish eaten,
+	 * shark starved, moves) during the tick. Request the statistics of the most recent tick with
+	 * {@link Simulator#getTickStatistics(TickStatistics)}.
 	 */
-	class CalculatorThread extends Thread {
+	public static final class TickStatistics {
 
-		/** The thread is in this state if it just started up but isn't waiting for work yet */
-		final public static int STATE_STARTING = 0;
+		/** Number of ticks calculated when the statistics were taken */
+		private long tickCount;
 
-		/** The thread is blocked and waiting to work on the next chunk */
-		final public static int STATE_WAITING_FOR_WORK = 1;
+		/** Number of fish after the tick */
+		private long fishCount;
 
-		/** The thread is working on a chunk of the world */
-		final public static int STATE_WORKING = 2;
+		/** Number of shark after the tick */
+		private long sharkCount;
 
-		/** For some reason the thread has excited (aka is dead). The thread will never work again. */
-		final public static int STATE_DEAD = 3;
+		/** Number of fish born during the tick */
+		private long fishBirths;
 
-		/** Defines the next chunk/current chunk to work on */
-		final WorldCalculatorState worldCalculatorState;
+		/** Number of shark born during the tick */
+		private long sharkBirths;
+
+		/** Number of fish eaten during the tick */
+		private long fishEaten;
+
+		/** Number of shark starved during the tick */
+		private long sharkStarved;
+
+		/** Number of fish and shark that moved (or moved to eat a fish) during the tick */
+		private long moves;
+
+		/** Number of fish and shark that could not move during the tick */
+		private long blockedMoves;
+
+		/**
+		 * Number of ticks right before this one whose statistics were dropped because the observer fell too far
+		 * behind (see {@link SimulatorRunnable#DELIVER_EVERY_TICK})
+		 */
+		private int droppedTicks;
+
+		/** @return number of ticks calculated when the statistics were taken (0 before the first tick) */
+		public long getTickCount() {
+			return tickCount;
+		}
+
+		/** @return number of fish after the tick */
+		public long getFishCount() {
+			return fishCount;
+		}
+
+		/** @return number of shark after the tick */
+		public long getSharkCount() {
+			return sharkCount;
+		}
+
+		/** @return number of fish born during the tick */
+		public long getFishBirths() {
+			return fishBirths;
+		}
+
+		/** @return number of shark born during the tick */
+		public long getSharkBirths() {
+			return sharkBirths;
+		}
+
+		/** @return number of fish eaten during the tick */
+		public long getFishEaten() {
+			return fishEaten;
+		}
+
+		/** @return number of shark starved during the tick */
+		public long getSharkStarved() {
+			return sharkStarved;
+		}
+
+		/** @return number of fish and shark that moved (or moved to eat a fish) during the tick */
+		public long getMoves() {
+			return moves;
+		}
 
-		/** State of this thread */
-		private int state = STATE_STARTING;
+		/** @return number of fish and shark that could not move during the tick */
+		public long getBlockedMoves() {
+			return blockedMoves;
+		}
 
-		/** Mutex to organize access to {@link #state}. */
-		final private Object stateMutex = new Object();
+		/**
+		 * @return number of ticks right before this one whose statistics were not delivered because the observer fell
+		 *         too far behind (only for observers that receive every tick, see
+		 *         {@link SimulatorRunnable#DELIVER_EVERY_TICK}; 0 otherwise)
+		 */
+		public int getDroppedTicks() {
+			return droppedTicks;
+		}
 
 		/**
-		 * Schedule to work on a chunk.
+		 * Sets the number of ticks before this one whose statistics were dropped (see {@link #getDroppedTicks()}).
 		 *
-		 * @param start first cell to work on
-		 * @param end cell after the last cell to work on
-		 * @return {@code true} if the work has been scheduled; {@code false} if this thread is {@link #STATE_DEAD}
-		 * @throws InterruptedException if the thread got interrupted while waiting
-		 */
-		public boolean startCalculatingWorld(int start, int end) throws InterruptedException {
-			synchronized (stateMutex) {
-				if (state == STATE_DEAD) {
-					return false;
-				}
-				while (state != STATE_WAITING_FOR_WORK) {
-					stateMutex.wait();
-				}
-				worldCalculatorState.setChunk(start, end);
-				state = STATE_WORKING;
-				stateMutex.notifyAll();
-				return true;
-			}
+		 * @param droppedTicks number of dropped ticks
+		 */
+		void setDroppedTicks(int droppedTicks) {
+			this.droppedTicks = droppedTicks;
 		}
 
 		/**
-		 * Waits until the thread is no longer working. This method also waits if the thread is currently in the
-		 * state {@link #STATE_STARTING} (which is treaded by this method like {@link #STATE_WORKING}.
+		 * Adds the events of other statistics to these statistics.
 		 *
-		 * @return {@code true} if the thread is waiting for more work; {@code false} if the thread is
-		 * {@link #STATE_DEAD}
-		 * @throws InterruptedException if the thread got interrupted while waiting
-		 */
-		public boolean waitForWorkDone() throws InterruptedException {
-			synchronized (stateMutex) {
-				if (state == STATE_DEAD) {
-					return false;
-				}
-				while (state == STATE_STARTING || state == STATE_WORKING) {
-					stateMutex.wait();
-				}
-			}
-			return true;
+		 * @param other statistics to add
+		 */
+		private void addEvents(TickStatistics other) {
+			fishBirths += other.fishBirths;
+			sharkBirths += other.sharkBirths;
+			fishEaten += other.fishEaten;
+			sharkStarved += other.sharkStarved;
+			moves += other.moves;
+			blockedMoves += other.blockedMoves;
 		}
 
-		/** Main loop of this thread. This thread loops forever (or better until the thread is interrupted). */
-		@Override
-		public void run() {
-			try {
-				while (true) {
-					synchronized (stateMutex) {
-						state = STATE_WAITING_FOR_WORK;
-						stateMutex.notifyAll();
-						while (state != STATE_WORKING) {
-							stateMutex.wait();
-						}
-					}
-					calculateNextWorld(worldCalculatorState);
-				}
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-				// Nothing to do here
-			} finally {
-				synchronized (stateMutex) {
-					state = STATE_DEAD;
-					stateMutex.notifyAll();
-				}
-			}
+		/** Resets the events of these statistics to zero. */
+		private void clearEvents() {
+			fishBirths = sharkBirths = fishEaten = sharkStarved = moves = blockedMoves = 0;
 		}
 
 		/**
-		 * Creates a new calculator thread.
+		 * Copies other statistics into these statistics.
 		 *
-		 * @param allowDiagonally should fish/shark be allowed to move diagonally?
+		 * @param other statistics to copy
 		 */
-		public CalculatorThread(boolean allowDiagonally) {
-			super("Wa - Tor World Tick Thread" + calculatorThreadCounter);
-			calculatorThreadCounter++;
-			worldCalculatorState = new WorldCalculatorState(allowDiagonally);
+		private void copyFrom(TickStatistics other) {
+			tickCount = other.tickCount;
+			fishCount = other.fishCount;
+			sharkCount = other.sharkCount;
+			fishBirths = other.fishBirths;
+			sharkBirths = other.sharkBirths;
+			fishEaten = other.fishEaten;
+			sharkStarved = other.sharkStarved;
+			moves = other.moves;
+			blockedMoves = other.blockedMoves;
+			droppedTicks = other.droppedTicks;
 		}
 	}
 
-	/** Maximum possible width of a world */
-	public static final short MAX_WORLD_WIDTH = Short.MAX_VALUE;
+	/**
+	 * The cells that changed between two versions of the world (see {@link WorldInspector#getVersion()}) in a compact
+	 * binary form. A delta is delivered to each {@link WorldDeltaObserver} after a tick; applying it to a copy of the
+	 * world with a version of at least {@link #getFromVersion()} brings the copy to {@link #getVersion()}.
+	 *
+	 * The changes are stored in the order of increasing cell numbers. Each change consists of the difference to the
+	 * number of the previous changed cell (to -1 for the first change) as an unsigned variable length number (seven
+	 * bits per byte, least significant bits first, the high bit set in all but the last byte) followed by the new
+	 * value of the cell in one, two or four bytes (big endian) depending on the cell layout (see
+	 * {@link #getCellLayout()}). The value is 0 for an empty cell, the negative age of a fish for a fish and
+	 * {@code (hunger << getSharkHungerShift()) | age} for a shark.
+	 *
+	 * The changes can either be read with {@link #nextChange()} and the getters for the current change or processed
+	 * as raw data with {@link #getData()}.
+	 *
+	 * Deltas are pooled: an observer that wants to use a delta after {@link WorldDeltaObserver#worldChanged(WorldDelta)}
+	 * returns must call {@link #retain()} and later {@link #release()}.
+	 */
+	final public class WorldDelta {
 
-	/** Maximum possible height of a world */
-	public static final short MAX_WORLD_HEIGHT = Short.MAX_VALUE;
+		/** Stores the changes */
+		private ByteBuffer data = ByteBuffer.allocate(MIN_WORLD_DELTA_CAPACITY);
 
-	/** Maximum possible breed time for a fish */
-	public static final short MAX_FISH_BREED_TIME = Short.MAX_VALUE;
+		/** Number of changes in {@link #data} */
+		private int changeCount;
 
-	/** Maximum possible breed time for a shark */
-	public static final short MAX_SHARK_BREED_TIME = Short.MAX_VALUE >> 9;
+		/** Version of the world the changes are based on */
+		private long fromVersion;
 
-	/** Maximum possible starve time for a shark */
-	public static final short MAX_SHARK_STARVE_TIME = Short.MAX_VALUE >> 9;
+		/** Version of the world after applying the changes */
+		private long version;
 
-	/** Current state of the world */
-	private short[] currentWorld;
+		/** Number of ticks calculated when the delta was taken */
+		private long tickCount;
 
-	/** Stores the state of the world while calculating the next state */
-	private short[] nextWorld;
+		/** Number of users of this delta; the delta returns to the pool when it drops to 0. Guarded by the monitor of the simulator. */
+		private int references;
 
-	/** Stores a flag whether a cell in {@link #nextWorld} has been processed during world calculation */
-	private final boolean[] cellProcessed;
+		/** Position of the next change to read in {@link #data} */
+		private int readPosition;
 
-	/** World calculators that can be used during world calculation */
-	private WorldCalculatorState mainThreadWorldCalculatorState = new WorldCalculatorState(true /* allow diagonally */);
+		/** Number of the cell of the current change; -1 before the first change */
+		private long currentNo;
 
-	/** The additional threads that perform world calculations besides the thread that calls {@link #tick(int)} */
-	private CalculatorThread calculatorThreads[];
+		/** Value of the cell of the current change */
+		private int currentValue;
 
-	/**
-	 * Sets up the array of threads for world calculation.
-	 *
-	 * @param threads number of threads to use to calculate the next world
-	 */
-	private void setupCalculatorThreads(int threads) {
+		/** @return number of changed cells */
+		final public int getChangeCount() {
+			return changeCount;
+		}
+
+		/** @return version of the world the changes are based on (see {@link WorldInspector#getVersion()}) */
+		final public long getFromVersion() {
+			return fromVersion;
+		}
+
+		/** @return version of the world after applying the changes (see {@link WorldInspector#getVersion()}) */
+		final public long getVersion() {
+			return version;
+		}
+
+		/** @return number of ticks calculated when the delta was taken */
+		final public long getTickCount() {
+			return tickCount;
+		}
+
+		/**
+		 * @return cell layout ({@link #CELL_LAYOUT_BYTE}, {@link #CELL_LAYOUT_SHORT} or {@link #CELL_LAYOUT_INT}),
+		 * which defines the number of bytes of a cell value
+		 */
+		final public int getCellLayout() {
+			return cellLayout;
+		}
+
+		/** @return number of bits the hunger of a shark is shifted to the left in a cell value */
+		final public int getSharkHungerShift() {
+			return sharkHungerShift;
+		}
+
+		/** @return width of the world */
+		final public int getWorldWidth() {
+			return worldWidth;
+		}
+
+		/** @return height of the world */
+		final public int getWorldHeight() {
+			return worldHeight;
+		}
+
+		/** @return read-only buffer with the changes (from position 0 to the limit) */
+		final public ByteBuffer getData() {
+			final ByteBuffer result = data.asReadOnlyBuffer();
+			result.flip();
+			return result;
+		}
+
+		/**
+		 * Moves to the next change.
+		 *
+		 * @return {@code true} if there was another change; {@code false} if all changes have been read
+		 */
+		final public boolean nextChange() {
+			if (readPosition >= data.position()) {
+				return false;
+			}
+			long gap = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = data.get(readPosition++);
+				gap |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+			currentNo += gap;
+			switch (cellLayout) {
+				case CELL_LAYOUT_BYTE:
+					currentValue = data.get(readPosition);
+					readPosition += 1;
+					break;
+				case CELL_LAYOUT_SHORT:
+					currentValue = data.getShort(readPosition);
+					readPosition += 2;
+					break;
+				default:
+					currentValue = data.getInt(readPosition);
+					readPosition += 4;
+			}
+			return true;
+		}
+
+		/** Resets reading the changes so that the next call to {@link #nextChange()} moves to the first change. */
+		final public void rewind() {
+			readPosition = 0;
+			currentNo = -1;
+		}
+
+		/** @return number of the cell of the current change */
+		final public long getCellNo() {
+			return currentNo;
+		}
+
+		/** @return new value of the cell of the current change */
+		final public int getCellValue() {
+			return currentValue;
+		}
+
+		/** @return {@code true} if the cell of the current change is now empty */
+		final public boolean isEmpty() {
+			return currentValue == 0;
+		}
+
+		/** @return {@code true} if there is now a fish in the cell of the current change */
+		final public boolean isFish() {
+			return currentValue < 0;
+		}
+
+		/** @return {@code true} if there is now a shark in the cell of the current change */
+		final public boolean isShark() {
+			return currentValue > 0;
+		}
+
+		/** @return age (maturity) of the fish in the cell of the current change (or 0 if there is no fish) */
+		final public short getFishAge() {
+			return currentValue >= 0 ? 0 : (short) -currentValue;
+		}
+
+		/** @return age (maturity) of the shark in the cell of the current change (or 0 if there is no shark) */
+		final public short getSharkAge() {
+			return currentValue <= 0 ? 0 : (short) (currentValue & sharkAgeMask);
+		}
+
+		/** @return hunger of the shark in the cell of the current change (or 0 if there is no shark) */
+		final public short getSharkHunger() {
+			return currentValue <= 0 ? 0 : (short) (currentValue >> sharkHungerShift);
+		}
+
+		/** Keeps this delta from being reused until {@link #release()} is called. */
+		public void retain() {
+			synchronized (Simulator.this) {
+				references++;
+			}
+		}
+
+		/** Releases this delta. Must be called once for each call to {@link #retain()}. */
+		public void release() {
+			synchronized (Simulator.this) {
+				if (--references == 0) {
+					for (int no = 0; no < worldDeltas.length; no++) {
+						if (worldDeltas[no] == null) {
+							worldDeltas[no] = this;
+							return;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Appends a change. The cell numbers of the changes must increase.
+		 *
+		 * @param gap   difference between the number of the cell and the number of the previous changed cell
+		 * @param value new value of the cell
+		 */
+		private void addChange(long gap, int value) {
+			if (data.remaining() < MAX_WORLD_DELTA_CHANGE_SIZE) {
+				final ByteBuffer newData = ByteBuffer.allocate(data.capacity() * 2);
+				data.flip();
+				newData.put(data);
+				data = newData;
+			}
+			while (gap > 0x7F) {
+				data.put((byte) (gap | 0x80));
+				gap >>>= 7;
+			}
+			data.put((byte) gap);
+			switch (cellLayout) {
+				case CELL_LAYOUT_BYTE:
+					data.put((byte) value);
+					break;
+				case CELL_LAYOUT_SHORT:
+					data.putShort((short) value);
+					break;
+				default:
+					data.putInt(value);
+			}
+			changeCount++;
+		}
+
+		/**
+		 * Initializes this delta with no changes. Must be called while holding the monitor of the simulator.
+		 *
+		 * @param fromVersion version of the world the changes are based on
+		 */
+		private void clear(long fromVersion) {
+			data.clear();
+			changeCount = 0;
+			this.fromVersion = fromVersion;
+			this.version = Simulator.this.version;
+			this.tickCount = Simulator.this.tickCount;
+			this.references = 1;
+			rewind();
+		}
+
+	}
+
+	/**
+	 * Stores information that can be used when calculating the next world state.
+	 *
+	 * In the future this class may be used in threads that do calculations in parallel.
+	 */
+	final class WorldCalculatorState {
+		/** Horizontal coordinate (column) of the left edge of the tile of the world to be calculated */
+		private int tileX;
+
+		/** Vertical coordinate (row) of the top edge of the tile of the world to be calculated */
+		private int tileY;
+
+		/** Width of the tile of the world to be calculated */
+		private int tileWidth;
+
+		/** Height of the tile of the world to be calculated */
+		private int tileHeight;
+
+		/** Phase (colour of the tiles) to be calculated (see {@link #calculatePhase(WorldCalculatorState)}) */
+		private int phase;
+
+		/** Events counted by this calculator during the current tick (see {@link #mergeTickStatistics()}) */
+		final TickStatistics events = new TickStatistics();
+
+		/** A random number generator (only used by the thread that uses this calculator state) */
+		public final FastRandom random;
+
+		/** An array that contains the indices of the neighbor cells of a current cell */
+		public final long neighbours[];
+
+		/** An array that can store all indices of the neighbor cells that contain fish */
+		public final long fishNeighbourPos[];
+
+		/** An array that can store all indices of the neighbor cells that contain shark */
+		public final long emptyNeighbourPos[];
+
+		/**
+		 * Creates a new initialized object
+		 * @param allowDiagonally allow for diagonal movement ({@code true}) or only for horizontal and vertical
+		 *                        movement (@code false)?
+		 */
+		WorldCalculatorState(boolean allowDiagonally) {
+			random = new FastRandom();
+			neighbours = new long[allowDiagonally ? 8 : 4];
+			fishNeighbourPos = new long[neighbours.length];
+			emptyNeighbourPos = new long[neighbours.length];
+		}
+
+		/**
+		 * Sets the tile bounds.
+		 * @param x      horizontal coordinate (column) of the left edge of the tile
+		 * @param y      vertical coordinate (row) of the top edge of the tile
+		 * @param width  width of the tile
+		 * @param height height of the tile
+		 */
+		public void setTile(int x, int y, int width, int height) {
+			this.tileX = x;
+			this.tileY = y;
+			this.tileWidth = width;
+			this.tileHeight = height;
+		}
+
+		/**
+		 * Sets the phase to calculate.
+		 * @param phase phase (colour of the tiles) to calculate
+		 */
+		public void setPhase(int phase) {
+			this.phase = phase;
+		}
+	}
+
+	/**
+	 * Internal counter to nicely identify the calculator threads
+	 */
+	static private int calculatorThreadCounter = 0;
+
+	/**
+	 * Special {@link Thread} that calculates tiles of the next world. Each of these threads has a
+	 * {@link WorldCalculatorState} that it uses to calculate the tiles of a phase.
+	 *
+	 * The {@link #run()} loop is a never ending loop that waits until {@link #scheduledPhaseCount} changes (see
+	 * {@link #scheduleCalculatorThreads(int)} and {@link #awaitScheduledPhase(CalculatorThread)}). The thread then claims tiles of
+	 * the scheduled phase from {@link #nextPhaseTileNo} until all tiles of the phase are taken (see
+	 * {@link #calculatePhase(WorldCalculatorState)}), decrements {@link #busyCalculatorThreads} and waits again. The
+	 * {@link #run()} loop exits when the thread is retired (see {@link #retire()}).
+	 */
+	class CalculatorThread extends Thread {
+
+		/** Defines the phase to work on */
+		final WorldCalculatorState worldCalculatorState;
+
+		/** Value of {@link #scheduledPhaseCount} when this thread took the last phase */
+		private int handledPhaseCount;
+
+		/** Flag whether this thread has been replaced and should exit instead of working on the next phase */
+		private volatile boolean retired = false;
+
+		/**
+		 * Flag whether this thread parks (or is about to park) until the next phase is scheduled (see
+		 * {@link #awaitScheduledPhase(CalculatorThread)})
+		 */
+		private volatile boolean parked = false;
+
+		/** Makes this thread exit. Must be called while no phase is being calculated. */
+		public void retire() {
+			retired = true;
+			interrupt();
+		}
+
+		/** Main loop of this thread. This thread loops forever (or better until the thread is retired). */
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					awaitScheduledPhase(this);
+					if (retired) {
+						// This thread has been replaced: the phase is meant for the new threads
+						return;
+					}
+					handledPhaseCount = scheduledPhaseCount;
+					worldCalculatorState.setPhase(scheduledPhase);
+					try {
+						calculatePhase(worldCalculatorState);
+					} finally {
+						if (busyCalculatorThreads.decrementAndGet() == 0) {
+							final Thread tickThread = parkedTickThread;
+							if (tickThread != null) {
+								LockSupport.unpark(tickThread);
+							}
+						}
+					}
+				}
+			} catch (InterruptedException e) {
+				// Nothing to do here: this thread has been retired
+			}
+		}
+
+		/**
+		 * Creates a new calculator thread. Must be called while no phase is being calculated.
+		 *
+		 * @param allowDiagonally should fish/shark be allowed to move diagonally?
+		 */
+		public CalculatorThread(boolean allowDiagonally) {
+			super("Wa - Tor World Tick Thread" + calculatorThreadCounter);
+			calculatorThreadCounter++;
+			worldCalculatorState = new WorldCalculatorState(allowDiagonally);
+			handledPhaseCount = scheduledPhaseCount;
+		}
+	}
+
+	/** Maximum possible width of a world (see {@link WorldParameters#verify()}) */
+	public static final int MAX_WORLD_WIDTH = 1 << 17;
+
+	/** Maximum possible height of a world (see {@link WorldParameters#verify()}) */
+	public static final int MAX_WORLD_HEIGHT = 1 << 17;
+
+	/** Maximum possible breed time for a fish */
+	public static final short MAX_FISH_BREED_TIME = Short.MAX_VALUE;
+
+	/** Maximum possible breed time for a shark (a shark can get one tick older than its breed time) */
+	public static final short MAX_SHARK_BREED_TIME = Short.MAX_VALUE - 1;
+
+	/** Maximum possible starve time for a shark */
+	public static final short MAX_SHARK_STARVE_TIME = Short.MAX_VALUE;
+
+	/** Cell layout that stores each cell in a {@code byte} (see {@link #getCellLayout()}) */
+	public static final int CELL_LAYOUT_BYTE = 0;
+
+	/** Cell layout that stores each cell in a {@code short} (see {@link #getCellLayout()}) */
+	public static final int CELL_LAYOUT_SHORT = 1;
+
+	/** Cell layout that stores each cell in an {@code int} (see {@link #getCellLayout()}) */
+	public static final int CELL_LAYOUT_INT = 2;
+
+	/** Engine that visits every cell of the world in each tick (see {@link #setEngine(int)}) */
+	public static final int ENGINE_DENSE = 0;
+
+	/** Engine that only visits the cells that contain fish or shark in each tick (see {@link #setEngine(int)}) */
+	public static final int ENGINE_SPARSE = 1;
+
+	/**
+	 * Barrier that parks a thread waiting for a phase to be scheduled or to be done right away (see
+	 * {@link #setBarrier(int)})
+	 */
+	public static final int BARRIER_BLOCKING = 0;
+
+	/**
+	 * Barrier that lets a thread waiting for a phase to be scheduled or to be done spin for a while before it parks
+	 * (see {@link #setBarrier(int)})
+	 */
+	public static final int BARRIER_SPINNING = 1;
+
+	/** Number of times a thread checks the phase counters with {@link #BARRIER_SPINNING} before it parks */
+	private static final int BARRIER_SPIN_COUNT = 20000;
+
+	/** Number of spins after which a spinning thread yields the processor */
+	private static final int BARRIER_SPINS_PER_YIELD = 256;
+
+	/** Binary logarithm of {@link #VISIT_BLOCK_SIZE} */
+	private static final int VISIT_BLOCK_SHIFT = 4;
+
+	/**
+	 * Maximum number of neighbouring cells in a row that are visited right after each other (in a random order) when
+	 * calculating a tile (see {@link #calculateNextWorld(WorldCalculatorState)})
+	 */
+	private static final int VISIT_BLOCK_SIZE = 1 << VISIT_BLOCK_SHIFT;
+
+	/** Binary logarithm of {@link #DIRTY_TILE_SIZE} */
+	private static final int DIRTY_TILE_SHIFT = 4;
+
+	/**
+	 * Width and height (in cells) of the tiles for which the simulator records whether they changed (see
+	 * {@link WorldInspector#isTileDirty(int, int, long)}). The tiles at the right and bottom edge of the world may be
+	 * smaller.
+	 */
+	public static final int DIRTY_TILE_SIZE = 1 << DIRTY_TILE_SHIFT;
+
+	/** Mask to get the position of a cell within its dirty tile */
+	private static final int DIRTY_TILE_MASK = DIRTY_TILE_SIZE - 1;
+
+	/**
+	 * Source of the versions of all simulators (see {@link #version}). Since all simulators draw from the same counter
+	 * the versions of a new simulator are greater than those of any simulator created before it.
+	 */
+	private static final AtomicLong VERSIONS = new AtomicLong();
+
+	/**
+	 * Added to the {@link WorldSnapshot#references} of a snapshot while it is recycled or brought up to date; makes the number
+	 * negative whatever the number of inspectors that try to refer to it at the same time.
+	 */
+	private static final int SNAPSHOT_UPDATING = Integer.MIN_VALUE / 2;
+
+	/**
+	 * Time (in milliseconds) after which the simulator stops putting a tile into the snapshots it publishes if no
+	 * inspector covering the tile has been requested since (see {@link #tileInterestTimes})
+	 */
+	private static final int TILE_INTEREST_TIMEOUT = 2000;
+
+	/** Initial capacity (in bytes) of the data of a {@link WorldDelta} */
+	private static final int MIN_WORLD_DELTA_CAPACITY = 1024;
+
+	/** Maximum number of bytes of one change in a {@link WorldDelta} (five bytes for the gap and four for the value) */
+	private static final int MAX_WORLD_DELTA_CHANGE_SIZE = 9;
+
+	/** Initial capacity of the lists of occupied cells of the {@link #ENGINE_SPARSE} engine */
+	private static final int MIN_ACTIVE_CELLS_CAPACITY = 64;
+
+	/**
+	 * Maximum number of fish and shark the {@link #ENGINE_SPARSE} engine handles: its lists of occupied cells are
+	 * arrays and a tick can at most double the number of fish and shark
+	 */
+	private static final long MAX_SPARSE_POPULATION = CellStore.MAX_HEAP_SIZE / 2;
+
+	/**
+	 * Horizontal direction of the eight neighbours of a cell: left, top left, top, top right, right, bottom right,
+	 * bottom and bottom left
+	 */
+	private static final int[] NEIGHBOUR_DX = new int[] { -1, -1, 0, 1, 1, 1, 0, -1 };
+
+	/** Vertical direction of the eight neighbours of a cell (in the same order as {@link #NEIGHBOUR_DX}) */
+	private static final int[] NEIGHBOUR_DY = new int[] { 0, -1, -1, -1, 0, 1, 1, 1 };
+
+	/** Horizontal direction of the four orthogonal neighbours of a cell: left, top, right and bottom */
+	private static final int[] ORTHOGONAL_NEIGHBOUR_DX = new int[] { -1, 0, 1, 0 };
+
+	/** Vertical direction of the four orthogonal neighbours of a cell (in the same order as {@link #ORTHOGONAL_NEIGHBOUR_DX}) */
+	private static final int[] ORTHOGONAL_NEIGHBOUR_DY = new int[] { 0, -1, 0, 1 };
+
+	/** Current state of the world */
+	private CellStore currentWorld;
+
+	/**
+	 * Stores the state of the world while calculating the next state. When updating in place (see
+	 * {@link #setInPlaceUpdate(boolean)}) this refers to the same array as {@link #currentWorld}.
+	 */
+	private CellStore nextWorld;
+
+	/** Flag whether ticks update {@link #currentWorld} in place instead of calculating into a second buffer */
+	private boolean inPlaceUpdate = false;
+
+	/** Update mode to use starting with the next tick (see {@link #setInPlaceUpdate(boolean)}) */
+	private boolean requestedInPlaceUpdate = false;
+
+	/**
+	 * Flag whether a tick is currently updating {@link #currentWorld} in place. While this flag is set no snapshot
+	 * must be taken and the world must not be modified. Whoever waits for this flag to be reset must wait on the
+	 * monitor of this simulator.
+	 */
+	private boolean worldUpdateInProgress = false;
+
+	/**
+	 * Flag whether the dense engine is currently calculating a tick, in either update mode. While this flag is set
+	 * the world must not be modified: in place the calculators would see a half modified world and otherwise the swap
+	 * at the end of the tick would discard the modification (while the counts would keep it). Whoever waits for this
+	 * flag to be reset must wait on the monitor of this simulator.
+	 */
+	private boolean tickInProgress = false;
+
+	/**
+	 * Stores for each cell in {@link #nextWorld} the mark of the tick in which the cell has been processed. A cell has
+	 * been processed during the current world calculation if its entry is equal to {@link #processedMark}, which is
+	 * the case when a fish or shark moved (or was born) into the cell and must not move again. This way the array
+	 * does not need to be cleared before each tick (see {@link #advanceProcessedMark()}).
+	 *
+	 * The marks are stored like the cells ({@link #CELL_LAYOUT_BYTE}, outside of the Java heap for a world with
+	 * {@link #isOffHeapStorage()}): for the largest world they take as much memory as one copy of the world.
+	 */
+	private final CellStore cellProcessed;
+
+	/** Value in {@link #cellProcessed} that marks a cell as processed during the current tick */
+	private byte processedMark = 0;
+
+	/** Number of columns of dirty tiles (see {@link #DIRTY_TILE_SIZE}) */
+	private final int dirtyTileColumns;
+
+	/** Number of rows of dirty tiles (see {@link #DIRTY_TILE_SIZE}) */
+	private final int dirtyTileRows;
+
+	/**
+	 * Marks the dirty tiles whose cells have been written during the current tick. The calculators set entries
+	 * without synchronization (all of them only ever write {@code true}); at the end of the tick the marks are
+	 * turned into versions in {@link #tileVersions} and cleared (see {@link #stampDirtyTiles()}).
+	 */
+	private final boolean[] dirtyTiles;
+
+	/**
+	 * Stores for each dirty tile the {@link #version} of the world when the tile changed last. Guarded by the monitor
+	 * of this simulator.
+	 */
+	private final long[] tileVersions;
+
+	/**
+	 * Version of {@link #currentWorld}. A new version is drawn from {@link #VERSIONS} after each tick and each change
+	 * through {@link #setFish(int, int, short)} or {@link #setShark(int, int, short, short)}. Guarded by the monitor
+	 * of this simulator.
+	 */
+	private long version;
+
+	/**
+	 * Number of tiles of each colour per thread the tile grid aims for. Having more tiles than threads allows a thread
+	 * that is done early to take over tiles of a slower thread.
+	 */
+	private static final int TILES_PER_THREAD = 4;
+
+	/** Number of threads the tile grid of a seeded simulator is set up for (whatever the actual number of threads) */
+	private static final int SEEDED_GRID_THREADS = 8;
+
+	/** The additional threads that perform world calculations besides the thread that calls {@link #tick(int)} */
+	private CalculatorThread calculatorThreads[];
+
+	/**
+	 * World calculator used by the thread that calls {@link #tick(int)}. When ticking with multiple threads it has
+	 * the calculator number after the last {@link #calculatorThreads}.
+	 */
+	final private WorldCalculatorState mainThreadWorldCalculatorState = new WorldCalculatorState(true /* allow diagonally */);
+
+	/**
+	 * The thread that calls {@link #tick(int)} while it parks (or is about to park) until
+	 * {@link #busyCalculatorThreads} drops to zero (see {@link #waitForCalculatorThreads()}); {@code null} otherwise
+	 */
+	private volatile Thread parkedTickThread;
+
+	/** Number of phases scheduled so far. The {@link #calculatorThreads} wait for this number to change. */
+	private volatile int scheduledPhaseCount = 0;
+
+	/** Most recently scheduled phase. Written before (and published by) {@link #scheduledPhaseCount}. */
+	private int scheduledPhase;
+
+	/** Number of {@link #calculatorThreads} that have not finished the most recently scheduled phase yet */
+	final private AtomicInteger busyCalculatorThreads = new AtomicInteger();
+
+	/** Barrier used to wait for phases ({@link #BARRIER_BLOCKING} or {@link #BARRIER_SPINNING}) */
+	private int barrier = BARRIER_BLOCKING;
+
+	/** Number of times a thread waiting for a phase checks the phase counters before it blocks */
+	private volatile int barrierSpinCount = 0;
+
+	/** Number of the next tile of the current phase that has not been claimed by any thread yet */
+	final private AtomicInteger nextPhaseTileNo = new AtomicInteger();
+
+	/** Number of tile columns of the tile grid used for multithreaded ticks */
+	private int tileColumns = 1;
+
+	/** Number of tile rows of the tile grid used for multithreaded ticks */
+	private int tileRows = 1;
+
+	/**
+	 * Horizontal coordinates of the left edges of the tile columns. The last element is the width of the world (i.e.,
+	 * the right edge of the last tile column).
+	 */
+	private int[] tileColumnStarts;
+
+	/**
+	 * Vertical coordinates of the top edges of the tile rows. The last element is the height of the world (i.e., the
+	 * bottom edge of the last tile row).
+	 */
+	private int[] tileRowStarts;
+
+	/** Number of threads the tile grid has been set up for (or 0 if it has not been set up yet) */
+	private int tileGridThreads = 0;
+
+	/** Number of threads that work on a phase (the tile grid may not have enough tiles for all threads) */
+	private int tileThreadCount = 1;
+
+	/** Flag whether this simulator is seeded (see {@link WorldParameters#setSeed(long)}) */
+	final private boolean seeded;
+
+	/** Seed of this simulator (only used if {@link #seeded}) */
+	final private long seed;
+
+	/** Number of ticks calculated so far */
+	private long tickCount = 0;
+
+	/** Number of fish in {@link #currentWorld} (after the most recent tick). Guarded by the monitor of this simulator. */
+	private long fishCount;
+
+	/** Number of shark in {@link #currentWorld} (after the most recent tick). Guarded by the monitor of this simulator. */
+	private long sharkCount;
+
+	/** Statistics of the most recent tick. Guarded by the monitor of this simulator. */
+	final private TickStatistics lastTickStatistics = new TickStatistics();
+
+	/** Engine used to calculate the current tick ({@link #ENGINE_DENSE} or {@link #ENGINE_SPARSE}) */
+	private int engine = ENGINE_DENSE;
+
+	/** Engine to use starting with the next tick (see {@link #setEngine(int)}) */
+	private int requestedEngine = ENGINE_DENSE;
+
+	/**
+	 * Cell numbers of all fish and shark in {@link #currentWorld}. Only maintained when the engine is
+	 * {@link #ENGINE_SPARSE}.
+	 */
+	private long[] activeCells;
+
+	/** Number of valid entries in {@link #activeCells} */
+	private int activeCellCount;
+
+	/**
+	 * Cell numbers of all fish and shark before the most recent tick of the {@link #ENGINE_SPARSE} engine. These cells
+	 * (together with the cells in {@link #activeCells}) are the only cells in which {@link #nextWorld} can differ
+	 * from {@link #currentWorld}. During a tick this array is reused to collect the new {@link #activeCells}.
+	 */
+	private long[] previousActiveCells;
+
+	/** Number of valid entries in {@link #previousActiveCells} */
+	private int previousActiveCellCount;
+
+	/**
+	 * Flag whether {@link #nextWorld} is unrelated to {@link #currentWorld} and needs to be fully copied before the
+	 * next tick of the {@link #ENGINE_SPARSE} engine.
+	 */
+	private boolean sparseWorldsOutOfSync = true;
+
+	/**
+	 * Sets up the tile grid for a multithreaded tick. Tile columns and rows are at least two cells wide (high) and
+	 * there is either one column (row) or an even number of them (see the comment at the beginning of the class).
+	 * The grid should have {@link #TILES_PER_THREAD} tiles of each colour for each thread. If possible the grid consists of full width
+	 * stripes (which keep the tiles contiguous in memory); otherwise the grid with the fewest tiles is used (and of
+	 * those the one with the most square tiles). If the
+	 * world is too small to have enough tiles for all threads the grid gets as many tiles as possible and
+	 * {@link #tileThreadCount} is reduced accordingly. A seeded simulator always uses the grid for
+	 * {@link #SEEDED_GRID_THREADS} threads so that the outcome of a tick does not depend on the number of threads.
+	 *
+	 * @param threads number of threads to use to calculate the next world
+	 */
+	private void setupTiles(int threads) {
+		if (threads == tileGridThreads) {
+			return;
+		}
+		tileGridThreads = threads;
+
+		final int maxColumns = worldWidth >= 4 ? (worldWidth / 2) & ~1 : 1;
+		final int maxRows = worldHeight >= 4 ? (worldHeight / 2) & ~1 : 1;
+		final int gridThreads = seeded ? SEEDED_GRID_THREADS : threads;
+		final int targetTilesPerPhase = gridThreads * TILES_PER_THREAD;
+		int columns = maxColumns;
+		int rows = maxRows;
+		if (gridThreads <= 1) {
+			columns = rows = 1;
+		} else {
+			int bestTileCount = Integer.MAX_VALUE;
+			float bestSkew = Float.MAX_VALUE;
+			for (int candidateColumns = 1; candidateColumns <= maxColumns; candidateColumns = candidateColumns == 1 ? 2 : candidateColumns + 2) {
+				final int columnsPerPhase = candidateColumns == 1 ? 1 : candidateColumns / 2;
+				final int rowsPerPhase = (targetTilesPerPhase + columnsPerPhase - 1) / columnsPerPhase;
+				final int candidateRows = rowsPerPhase == 1 ? 1 : 2 * rowsPerPhase;
+				if (candidateRows > maxRows) {
+					continue;
+				}
+				if (candidateColumns == 1) {
+					// Full width stripes
+					columns = candidateColumns;
+					rows = candidateRows;
+					break;
+				}
+				final int tileCount = candidateColumns * candidateRows;
+				final float aspect = ((float) worldWidth / candidateColumns) / ((float) worldHeight / candidateRows);
+				final float skew = aspect < 1f ? 1f / aspect : aspect;
+				if (tileCount < bestTileCount || tileCount == bestTileCount && skew < bestSkew) {
+					bestTileCount = tileCount;
+					bestSkew = skew;
+					columns = candidateColumns;
+					rows = candidateRows;
+				}
+			}
+		}
+
+		tileColumns = columns;
+		tileRows = rows;
+		tileColumnStarts = new int[columns + 1];
+		for (int columnNo = 0; columnNo <= columns; columnNo++) {
+			tileColumnStarts[columnNo] = (int) ((long) columnNo * worldWidth / columns);
+		}
+		tileRowStarts = new int[rows + 1];
+		for (int rowNo = 0; rowNo <= rows; rowNo++) {
+			tileRowStarts[rowNo] = (int) ((long) rowNo * worldHeight / rows);
+		}
+		final int tilesPerPhase = (columns == 1 ? 1 : columns / 2) * (rows == 1 ? 1 : rows / 2);
+		tileThreadCount = Math.min(threads, tilesPerPhase);
+	}
+
+	/**
+	 * Sets up the array of threads for world calculation.
+	 *
+	 * @param threads number of threads to use to calculate the next world
+	 */
+	private void setupCalculatorThreads(int threads) {
 		if (calculatorThreads == null || calculatorThreads.length != (threads-1)) {
 			if (calculatorThreads != null) {
-				for (Thread t : calculatorThreads) {
+				for (CalculatorThread t : calculatorThreads) {
 					if (t != null) {
-						t.interrupt();
+						t.retire();
 					}
 				}
 			}
@@ -565,28 +1852,155 @@ final public class Simulator {
 		}
 	}
 
+	/**
+	 * Schedules a phase to all {@link #calculatorThreads}.
+	 *
+	 * @param phase phase (colour of the tiles) to calculate
+	 */
+	private void scheduleCalculatorThreads(int phase) {
+		busyCalculatorThreads.set(calculatorThreads.length);
+		scheduledPhase = phase;
+		scheduledPhaseCount++;
+		for (CalculatorThread thread : calculatorThreads) {
+			if (thread.parked) {
+				LockSupport.unpark(thread);
+			}
+		}
+	}
+
+	/**
+	 * Waits until {@link #scheduledPhaseCount} differs from the count of the last phase a calculator thread took. With
+	 * {@link #BARRIER_SPINNING} the thread spins for a while before it parks.
+	 *
+	 * @param thread calculator thread that waits (must be the calling thread)
+	 * @throws InterruptedException if the thread got interrupted while waiting
+	 */
+	private void awaitScheduledPhase(CalculatorThread thread) throws InterruptedException {
+		final int handledPhaseCount = thread.handledPhaseCount;
+		for (int spins = barrierSpinCount; spins > 0; spins--) {
+			if (scheduledPhaseCount != handledPhaseCount) {
+				return;
+			}
+			if (spins % BARRIER_SPINS_PER_YIELD == 0) {
+				Thread.yield();
+			}
+		}
+		// Announcing parking before checking the counter again: scheduleCalculatorThreads(int) changes the counter
+		// before it looks for parked threads, so either this thread sees the new phase or it gets unparked
+		thread.parked = true;
+		try {
+			while (scheduledPhaseCount == handledPhaseCount) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				LockSupport.park(this);
+			}
+		} finally {
+			thread.parked = false;
+		}
+	}
+
+	/**
+	 * Waits until all {@link #calculatorThreads} are done with the most recently scheduled phase. With
+	 * {@link #BARRIER_SPINNING} the calling thread spins for a while before it parks.
+	 *
+	 * @throws InterruptedException if the thread got interrupted while waiting
+	 */
+	private void waitForCalculatorThreads() throws InterruptedException {
+		for (int spins = barrierSpinCount; spins > 0; spins--) {
+			if (busyCalculatorThreads.get() == 0) {
+				return;
+			}
+			if (spins % BARRIER_SPINS_PER_YIELD == 0) {
+				Thread.yield();
+			}
+		}
+		// Announcing parking before checking the counter again (see awaitScheduledPhase(CalculatorThread))
+		parkedTickThread = Thread.currentThread();
+		try {
+			while (busyCalculatorThreads.get() > 0) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				LockSupport.park(this);
+			}
+		} finally {
+			parkedTickThread = null;
+		}
+	}
+
+	/**
+	 * Returns the number of tile columns (or rows) of the tile grid that have a given parity.
+	 *
+	 * @param gridSize number of tile columns (or rows) of the tile grid
+	 * @param parity   0 for the even columns (rows); 1 for the odd ones
+	 * @return number of tile columns (or rows) of that parity
+	 */
+	private static int getPhaseGridSize(int gridSize, int parity) {
+		return (gridSize + 1 - parity) >> 1;
+	}
+
 	/**
 	 * Cache of allocated {@link WorldInspector} objects. Whenever a world inspector is requested one from this
-	 * array is returned (after being initialized appropriately) and the index in this array that containde a reference
+	 * array is returned (after being initialized appropriately) and the index in this array that contained a reference
 	 * to it is set to {@code null}. When {@link WorldInspector#release()} is called that inspector is returned into
-	 * this array.
-	 */
-	final private WorldInspector worldInspectors[] = new WorldInspector[] {
-			new WorldInspector(),
-			null,
-			null,
-			null,
-			null,
-			null,
-			null,
-			null
-	};
+	 * this array (if there is room). Inspectors are small: the worlds they refer to are the {@link #snapshots}.
+	 */
+	final private AtomicReferenceArray<WorldInspector> worldInspectors = new AtomicReferenceArray<WorldInspector>(8);
+
+	/**
+	 * All snapshots of the world for {@link WorldInspector}s, in use or not (see {@link #publishSnapshot(boolean)}). Guarded
+	 * by the monitor of this simulator.
+	 */
+	final private ArrayList<WorldSnapshot> snapshots = new ArrayList<WorldSnapshot>();
+
+	/** Tiles that belong to no snapshot and can be reused. Guarded by the monitor of this simulator. */
+	final private ArrayList<SnapshotTile> freeSnapshotTiles = new ArrayList<SnapshotTile>();
+
+	/** The snapshot with the most recent world; {@code null} until the first inspector has been requested */
+	final private AtomicReference<WorldSnapshot> publishedSnapshot = new AtomicReference<WorldSnapshot>();
+
+	/**
+	 * Flag whether the simulator publishes snapshots. Snapshots are only published once an inspector has been
+	 * requested so that a simulator nobody looks at does not copy the world after each tick.
+	 */
+	private volatile boolean snapshotsRequested = false;
+
+	/**
+	 * Stores for each dirty tile when (see {@link #getInterestTime()}) an inspector covering the tile has been
+	 * requested last. Published snapshots only contain the tiles requested within the last
+	 * {@link #TILE_INTEREST_TIMEOUT} milliseconds, so copying and memory follow the regions viewers actually look at.
+	 * Written without synchronization by the threads requesting inspectors; a thread that finds a tile missing in the
+	 * published snapshot publishes a new one while holding the monitor of this simulator.
+	 */
+	private final int[] tileInterestTimes;
+
+	/**
+	 * Pool of {@link WorldDelta} objects that are not in use (unused entries are {@code null}). Guarded by the monitor
+	 * of this simulator.
+	 */
+	final private WorldDelta worldDeltas[] = new WorldDelta[4];
+
+	/** Observers of the changes of each tick. Replaced (not modified) when an observer is added or removed. */
+	private volatile WorldDeltaObserver[] worldDeltaObservers = new WorldDeltaObserver[0];
+
+	/**
+	 * Copy of the world as of {@link #worldDeltaVersion}, which the world is compared with to find the changes of a
+	 * tick; {@code null} if there are no {@link #worldDeltaObservers}. Guarded by the monitor of this simulator.
+	 */
+	private CellStore worldDeltaBase;
+
+	/** Version of {@link #worldDeltaBase} */
+	private long worldDeltaVersion;
+
+	/** Delta collected at the end of the most recent tick that has not been delivered to the observers yet */
+	private WorldDelta pendingWorldDelta;
 
 	/** Width of the world */
-	private final short worldWidth;
+	private final int worldWidth;
 
 	/** Height of the world */
-	private final short worldHeight;
+	private final int worldHeight;
 
 	/** Ticks until a fish breeds (reprdocues) */
 	private final short fishBreedTime;
@@ -597,6 +2011,42 @@ final public class Simulator {
 	/** Ticks until a shark must eat before it starves */
 	private final short sharkStarveTime;
 
+	/** Layout of the cells of the world ({@link #CELL_LAYOUT_BYTE}, {@link #CELL_LAYOUT_SHORT} or {@link #CELL_LAYOUT_INT}) */
+	private final int cellLayout;
+
+	/** Number of bits the hunger of a shark is shifted to the left in a cell value (the bits used for its age) */
+	private final int sharkHungerShift;
+
+	/** Mask to extract the age of a shark from a cell value */
+	private final int sharkAgeMask;
+
+	/**
+	 * Offsets of the eight neighbour cells (in the order of {@link #NEIGHBOUR_DX}) of a cell that is not at the edge
+	 * of the world
+	 */
+	private final int[] neighbourOffsets;
+
+	/**
+	 * Offsets of the four orthogonal neighbour cells (in the order of {@link #ORTHOGONAL_NEIGHBOUR_DX}) of a cell
+	 * that is not at the edge of the world
+	 */
+	private final int[] orthogonalNeighbourOffsets;
+
+	/** Offsets of the rows of the eight neighbour cells (in the order of {@link #NEIGHBOUR_DY}) */
+	private final int[] neighbourRowOffsets;
+
+	/** Offsets of the rows of the four orthogonal neighbour cells (in the order of {@link #ORTHOGONAL_NEIGHBOUR_DY}) */
+	private final int[] orthogonalNeighbourRowOffsets;
+
+	/** Number of bits to shift a cell number to get its row if the width is a power of two; -1 otherwise */
+	private final int widthShift;
+
+	/**
+	 * Mask to apply to a cell number to wrap it around the world if both the width and the height are a power of two;
+	 * 0 otherwise
+	 */
+	private final long worldMask;
+
 	/** @return width of the world */
 	final public int getWorldWidth() {
 		return worldWidth;
@@ -617,202 +2067,718 @@ final public class Simulator {
 		worldParameters.verify();
 		this.worldWidth = worldParameters.getWidth();
 		this.worldHeight = worldParameters.getHeight();
-		int worldSize = worldWidth * worldHeight;
+		long worldSize = (long) worldWidth * worldHeight;
 		this.fishBreedTime = worldParameters.getFishBreedTime();
 		this.sharkBreedTime = worldParameters.getSharkBreedTime();
 		this.sharkStarveTime = worldParameters.getSharkStarveTime();
 
-		this.currentWorld = new short[worldSize];
-		this.nextWorld = new short[worldSize];
-		this.cellProcessed = new boolean[worldSize];
-
-		Random random = new Random();
+		this.neighbourOffsets = new int[NEIGHBOUR_DX.length];
+		this.neighbourRowOffsets = new int[NEIGHBOUR_DY.length];
+		for (int neighbourNo = 0; neighbourNo < NEIGHBOUR_DX.length; neighbourNo++) {
+			neighbourRowOffsets[neighbourNo] = NEIGHBOUR_DY[neighbourNo] * worldWidth;
+			neighbourOffsets[neighbourNo] = NEIGHBOUR_DX[neighbourNo] + neighbourRowOffsets[neighbourNo];
+		}
+		this.orthogonalNeighbourOffsets = new int[ORTHOGONAL_NEIGHBOUR_DX.length];
+		this.orthogonalNeighbourRowOffsets = new int[ORTHOGONAL_NEIGHBOUR_DY.length];
+		for (int neighbourNo = 0; neighbourNo < ORTHOGONAL_NEIGHBOUR_DX.length; neighbourNo++) {
+			orthogonalNeighbourRowOffsets[neighbourNo] = ORTHOGONAL_NEIGHBOUR_DY[neighbourNo] * worldWidth;
+			orthogonalNeighbourOffsets[neighbourNo] = ORTHOGONAL_NEIGHBOUR_DX[neighbourNo] + orthogonalNeighbourRowOffsets[neighbourNo];
+		}
+		boolean powerOfTwoWidth = (worldWidth & (worldWidth - 1)) == 0;
+		boolean powerOfTwoHeight = (worldHeight & (worldHeight - 1)) == 0;
+		this.widthShift = powerOfTwoWidth ? Integer.numberOfTrailingZeros(worldWidth) : -1;
+		this.worldMask = powerOfTwoWidth && powerOfTwoHeight ? worldSize - 1 : 0;
+
+		this.cellLayout = getCellLayout(worldParameters);
+		final int ageBits = 32 - Integer.numberOfLeadingZeros(sharkBreedTime + 1);
+		this.sharkHungerShift = ageBits;
+		this.sharkAgeMask = (1 << ageBits) - 1;
+		this.currentWorld = CellStore.create(cellLayout, worldSize, worldParameters.isOffHeapStorage());
+		this.nextWorld = currentWorld.newStore();
+		this.cellProcessed = CellStore.create(CELL_LAYOUT_BYTE, worldSize, worldParameters.isOffHeapStorage());
+		this.dirtyTileColumns = (worldWidth + DIRTY_TILE_MASK) >> DIRTY_TILE_SHIFT;
+		this.dirtyTileRows = (worldHeight + DIRTY_TILE_MASK) >> DIRTY_TILE_SHIFT;
+		this.dirtyTiles = new boolean[dirtyTileColumns * dirtyTileRows];
+		this.tileVersions = new long[dirtyTiles.length];
+		this.tileInterestTimes = new int[dirtyTiles.length];
+		Arrays.fill(tileInterestTimes, getInterestTime() - TILE_INTEREST_TIMEOUT - 1);
+		this.version = VERSIONS.incrementAndGet();
+		Arrays.fill(tileVersions, version);
+
+		this.seeded = worldParameters.isSeeded();
+		this.seed = worldParameters.getSeed();
+
+		Random random = seeded ? new Random(seed) : new Random();
+		this.fishCount = worldParameters.getInitialFishCount();
+		this.sharkCount = worldParameters.getInitialSharkCount();
+		this.lastTickStatistics.fishCount = fishCount;
+		this.lastTickStatistics.sharkCount = sharkCount;
 		int count = worldParameters.getInitialFishCount();
 		while (count-- > 0) {
-			int cellNo;
+			long cellNo;
 			do {
-				cellNo = random.nextInt(worldSize);
-			} while (currentWorld[cellNo] != 0);
+				cellNo = nextCellNo(random, worldSize);
+			} while (currentWorld.get(cellNo) != 0);
 			// Note: age is 1-based!
-			currentWorld[cellNo] = (short) (-random.nextInt(fishBreedTime) - 1);
+			currentWorld.set(cellNo, -random.nextInt(fishBreedTime) - 1);
 		}
 		count = worldParameters.getInitialSharkCount();
 		while (count-- > 0) {
-			int cellNo;
+			long cellNo;
 			do {
-				cellNo = random.nextInt(worldSize);
-			} while (currentWorld[cellNo] != 0);
+				cellNo = nextCellNo(random, worldSize);
+			} while (currentWorld.get(cellNo) != 0);
 			// Note: age and hunger are 1-based!
-			currentWorld[cellNo] = (short) (((random.nextInt(sharkStarveTime) + 1) << 8) | (random.nextInt(sharkBreedTime) + 1));
+			currentWorld.set(cellNo, ((random.nextInt(sharkStarveTime) + 1) << sharkHungerShift) | (random.nextInt(sharkBreedTime) + 1));
+		}
+	}
+
+	/**
+	 * Draws a random cell number. Worlds with fewer cells than {@link Integer#MAX_VALUE} draw an {@code int} so that
+	 * a seeded world is populated the same way whether or not it could have more cells.
+	 *
+	 * @param random    random number generator to draw from
+	 * @param cellCount number of cells of the world
+	 * @return cell number from 0 to {@code cellCount - 1}
+	 */
+	private static long nextCellNo(Random random, long cellCount) {
+		if (cellCount <= Integer.MAX_VALUE) {
+			return random.nextInt((int) cellCount);
+		}
+		return (random.nextLong() >>> 1) % cellCount;
+	}
+
+	/**
+	 * Puts a fish into the world at the specified location. The fish will have an age (maturity) of 1.
+	 *
+	 * @param x horizontal coordinate (column) of the location of the new fish
+	 * @param y vertical coordinate (row) of the location of the new fish
+	 */
+	final public void setFish(int x, int y) {
+		setFish(x, y, (short) 1);
+	}
+
+	/**
+	 * Puts a shark into the world at the specified location. The shark will have an age (maturity) of 1 and a hunger of
+	 * 1.
+	 *
+	 * @param x horizontal coordinate (column) of the location of the new shark
+	 * @param y vertical coordinate (row) of the location of the new shark
+	 */
+	final public void setShark(int x, int y) {
+		setShark(x, y, (short) 1, (short) 1);
+	}
+
+	/**
+	 * Puts a fish into the world at the specified location with a specific age (maturity).
+	 *
+	 * @param x        horizontal coordinate (column) of the location of the new fish
+	 * @param y        vertical coordinate (row) of the location of the new fish
+	 * @param breedAge age (maturity) of the new fish
+	 */
+	synchronized final public void setFish(int x, int y, short breedAge) {
+		if (x < 0 || x >= worldWidth) {
+			throw new IllegalArgumentException("X coordinate " + x + " is out of bounds (width = " + worldWidth + ")");
+		}
+		if (y < 0 || y >= worldHeight) {
+			throw new IllegalArgumentException("Y coordinate " + y + " is out of bounds (height = " + worldHeight + ")");
+		}
+		if (breedAge <= 0) {
+			throw new IllegalArgumentException("Fish cannot have negative or zero reproduction age");
+		}
+		if (breedAge > fishBreedTime) {
+			throw new IllegalArgumentException("Fish reproduction age " + breedAge + " too old (max = " + fishBreedTime + ")");
+		}
+		waitForTick();
+		long no = x + (long) y * worldWidth;
+		final int previousCell = currentWorld.get(no);
+		if (engine == ENGINE_SPARSE && previousCell == 0) {
+			addActiveCell(no);
+		}
+		if (previousCell >= 0) {
+			fishCount++;
+			if (previousCell > 0) {
+				sharkCount--;
+			}
+		}
+		currentWorld.set(no, -breedAge);
+		version = VERSIONS.incrementAndGet();
+		tileVersions[(x >> DIRTY_TILE_SHIFT) + (y >> DIRTY_TILE_SHIFT) * dirtyTileColumns] = version;
+		if (snapshotsRequested) {
+			publishSnapshot(false);
+		}
+	}
+
+	/**
+	 * Puts a shark into the world at the specified location with a specific age (maturity) and hunger.
+	 *
+	 * @param x             horizontal coordinate (column) of the location of the new shark
+	 * @param y             vertical coordinate (row) of the location of the new shark
+	 * @param breedAge      age (maturity) of the new shark
+	 * @param currentHunger age hunger of the new shark
+	 */
+	synchronized final public void setShark(int x, int y, short breedAge, short currentHunger) {
+		if (x < 0 || x >= worldWidth) {
+			throw new IllegalArgumentException("X coordinate " + x + " is out of bounds (width = " + worldWidth + ")");
+		}
+		if (y < 0 || y >= worldHeight) {
+			throw new IllegalArgumentException("Y coordinate " + y + " is out of bounds (height = " + worldHeight + ")");
+		}
+		if (breedAge <= 0) {
+			throw new IllegalArgumentException("Shark cannot have negative or zero breed age");
+		}
+		if (currentHunger <= 0) {
+			throw new IllegalArgumentException("Shark cannot have negative or zero hunger");
+		}
+		if (breedAge > sharkBreedTime + 1) {
+			throw new IllegalArgumentException("Shark breed time " + breedAge + " too old (max = " + sharkBreedTime + ")");
+		}
+		if (currentHunger > sharkStarveTime) {
+			throw new IllegalArgumentException("Shark hunger " + currentHunger + " too high (max = " + sharkStarveTime + ")");
+		}
+		waitForTick();
+		long no = x + (long) y * worldWidth;
+		final int previousCell = currentWorld.get(no);
+		if (engine == ENGINE_SPARSE && previousCell == 0) {
+			addActiveCell(no);
+		}
+		if (previousCell <= 0) {
+			sharkCount++;
+			if (previousCell < 0) {
+				fishCount--;
+			}
+		}
+		currentWorld.set(no, (currentHunger << sharkHungerShift) | breedAge);
+		version = VERSIONS.incrementAndGet();
+		tileVersions[(x >> DIRTY_TILE_SHIFT) + (y >> DIRTY_TILE_SHIFT) * dirtyTileColumns] = version;
+		if (snapshotsRequested) {
+			publishSnapshot(false);
+		}
+	}
+
+	/**
+	 * Chooses the smallest cell layout that can store all fish and shark of a world.
+	 *
+	 * @param worldParameters parameters of the world
+	 * @return {@link #CELL_LAYOUT_BYTE}, {@link #CELL_LAYOUT_SHORT} or {@link #CELL_LAYOUT_INT}
+	 */
+	static int getCellLayout(WorldParameters worldParameters) {
+		final int fishBreedTime = worldParameters.getFishBreedTime();
+		final int sharkBits = 32 - Integer.numberOfLeadingZeros(worldParameters.getSharkBreedTime() + 1)
+				+ 32 - Integer.numberOfLeadingZeros(worldParameters.getSharkStarveTime());
+		if (fishBreedTime <= Byte.MAX_VALUE && sharkBits <= CellStore.getValueBits(CELL_LAYOUT_BYTE)) {
+			return CELL_LAYOUT_BYTE;
+		}
+		if (sharkBits <= CellStore.getValueBits(CELL_LAYOUT_SHORT)) {
+			return CELL_LAYOUT_SHORT;
+		}
+		return CELL_LAYOUT_INT;
+	}
+
+	/**
+	 * Returns the layout of the cells of the world. The layout is chosen when the simulator is created: the smallest
+	 * layout that can store the ages and hungers allowed by the breed and starve times is used.
+	 *
+	 * @return {@link #CELL_LAYOUT_BYTE}, {@link #CELL_LAYOUT_SHORT} or {@link #CELL_LAYOUT_INT}
+	 */
+	final public int getCellLayout() {
+		return cellLayout;
+	}
+
+	/** @return number of fish in the world after the most recent tick (without taking a snapshot) */
+	final synchronized public long getFishCount() {
+		return fishCount;
+	}
+
+	/** @return number of shark in the world after the most recent tick (without taking a snapshot) */
+	final synchronized public long getSharkCount() {
+		return sharkCount;
+	}
+
+	/**
+	 * Returns the statistics of the most recent tick: the number of fish and shark after the tick and the number of
+	 * births, fish eaten, shark starved and moves during the tick. The events are counted by each calculating thread
+	 * separately and summed up once at the end of the tick. Note that the number of fish and shark may have changed
+	 * since the tick through {@link #setFish(int, int, short)} or {@link #setShark(int, int, short, short)}.
+	 *
+	 * @param statistics object to store the statistics in (a new one is created if {@code null})
+	 * @return {@code statistics} (or the newly created object)
+	 */
+	final synchronized public TickStatistics getTickStatistics(TickStatistics statistics) {
+		if (statistics == null) {
+			statistics = new TickStatistics();
+		}
+		statistics.copyFrom(lastTickStatistics);
+		return statistics;
+	}
+
+	/** @return number of empty cells in the world after the most recent tick (without taking a snapshot) */
+	final synchronized public long getEmptyCount() {
+		return (long) worldWidth * worldHeight - fishCount - sharkCount;
+	}
+
+	/**
+	 * @return {@code true} if the cells of the world are stored outside of the Java heap (see
+	 * {@link WorldParameters#setOffHeapStorage(boolean)}); {@code false} otherwise
+	 */
+	final public boolean isOffHeapStorage() {
+		return currentWorld instanceof CellStore.OffHeapCellStore;
+	}
+
+	/** @return engine used to calculate the next tick ({@link #ENGINE_DENSE} or {@link #ENGINE_SPARSE}) */
+	final synchronized public int getEngine() {
+		return requestedEngine;
+	}
+
+	/**
+	 * Selects the engine used to calculate the next tick. {@link #ENGINE_DENSE} visits every cell of the world and
+	 * can use multiple threads. {@link #ENGINE_SPARSE} only visits the cells that contain fish or shark and always
+	 * uses a single thread. The new engine is used starting with the next tick; switching to {@link #ENGINE_SPARSE}
+	 * scans the world once to find all fish and shark. A world with more than {@link #MAX_SPARSE_POPULATION} fish and
+	 * shark is calculated with {@link #ENGINE_DENSE} whatever engine has been selected.
+	 *
+	 * @param newEngine {@link #ENGINE_DENSE} or {@link #ENGINE_SPARSE}
+	 */
+	final synchronized public void setEngine(int newEngine) {
+		if (newEngine != ENGINE_DENSE && newEngine != ENGINE_SPARSE) {
+			throw new IllegalArgumentException("Unknown engine " + newEngine);
+		}
+		requestedEngine = newEngine;
+	}
+
+	/** @return barrier used to wait for phases of multithreaded ticks ({@link #BARRIER_BLOCKING} or {@link #BARRIER_SPINNING}) */
+	final synchronized public int getBarrier() {
+		return barrier;
+	}
+
+	/**
+	 * Selects how threads wait for each other during multithreaded ticks. With {@link #BARRIER_BLOCKING} a thread
+	 * waiting for a phase to be scheduled or to be done parks right away. With {@link #BARRIER_SPINNING} it keeps
+	 * checking for a while before it parks, which is faster for small worlds where a phase takes less time than
+	 * unparking a thread, but burns processor time while waiting. The new barrier is used starting with the
+	 * next phase.
+	 *
+	 * @param newBarrier {@link #BARRIER_BLOCKING} or {@link #BARRIER_SPINNING}
+	 */
+	final synchronized public void setBarrier(int newBarrier) {
+		if (newBarrier != BARRIER_BLOCKING && newBarrier != BARRIER_SPINNING) {
+			throw new IllegalArgumentException("Unknown barrier " + newBarrier);
 		}
+		barrier = newBarrier;
+		barrierSpinCount = newBarrier == BARRIER_SPINNING ? BARRIER_SPIN_COUNT : 0;
+	}
+
+	/** @return {@code true} if ticks update the world in place; {@code false} if they use a second buffer */
+	final synchronized public boolean isInPlaceUpdate() {
+		return requestedInPlaceUpdate;
 	}
 
 	/**
-	 * Puts a fish into the world at the specified location. The fish will have an age (maturity) of 1.
+	 * Selects whether ticks update the world in place or calculate the next world in a second buffer. Updating in
+	 * place avoids copying the whole world at the beginning of each tick and needs only one buffer. On the other hand
+	 * snapshots cannot be taken while a tick is calculated (requesting one waits until the tick is done). The new mode
+	 * is used starting with the next tick.
 	 *
-	 * @param x horizontal coordinate (column) of the location of the new fish
-	 * @param y vertical coordinate (row) of the location of the new fish
+	 * @param newInPlaceUpdate {@code true} to update the world in place; {@code false} to use a second buffer
 	 */
-	final public void setFish(int x, int y) {
-		setFish(x, y, (short) 1);
+	final synchronized public void setInPlaceUpdate(boolean newInPlaceUpdate) {
+		requestedInPlaceUpdate = newInPlaceUpdate;
 	}
 
 	/**
-	 * Puts a shark into the world at the specified location. The shark will have an age (maturity) of 1 and a hunger of
-	 * 1.
-	 *
-	 * @param x horizontal coordinate (column) of the location of the new shark
-	 * @param y vertical coordinate (row) of the location of the new shark
+	 * Switches to the {@link #requestedInPlaceUpdate} mode. Must be called while holding the monitor of this simulator
+	 * and while no tick is being calculated.
 	 */
-	final public void setShark(int x, int y) {
-		setShark(x, y, (short) 1, (short) 1);
+	private void switchUpdateMode() {
+		inPlaceUpdate = requestedInPlaceUpdate;
+		if (inPlaceUpdate) {
+			nextWorld = currentWorld;
+		} else {
+			nextWorld = currentWorld.newStore();
+			sparseWorldsOutOfSync = true;
+		}
 	}
 
 	/**
-	 * Puts a fish into the world at the specified location with a specific age (maturity).
-	 *
-	 * @param x        horizontal coordinate (column) of the location of the new fish
-	 * @param y        vertical coordinate (row) of the location of the new fish
-	 * @param breedAge age (maturity) of the new fish
+	 * Blocks until no tick is updating the world in place. Must be called while holding the monitor of this
+	 * simulator. Since a tick always finishes this wait is not interruptible; the interrupted state of the thread is
+	 * restored after the wait.
 	 */
-	synchronized final public void setFish(int x, int y, short breedAge) {
-		if (x < 0 || x >= worldWidth) {
-			throw new IllegalArgumentException("X coordinate " + x + " is out of bounds (width = " + worldWidth + ")");
-		}
-		if (y < 0 || y >= worldHeight) {
-			throw new IllegalArgumentException("Y coordinate " + y + " is out of bounds (height = " + worldHeight + ")");
-		}
-		if (breedAge <= 0) {
-			throw new IllegalArgumentException("Fish cannot have negative or zero reproduction age");
+	private void waitForWorldUpdate() {
+		boolean interrupted = false;
+		while (worldUpdateInProgress) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
 		}
-		if (breedAge > fishBreedTime) {
-			throw new IllegalArgumentException("Fish reproduction age " + breedAge + " too old (max = " + fishBreedTime + ")");
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
-		currentWorld[x + y * worldWidth] = (short) -breedAge;
 	}
 
 	/**
-	 * Puts a shark into the world at the specified location with a specific age (maturity) and hunger.
-	 *
-	 * @param x             horizontal coordinate (column) of the location of the new shark
-	 * @param y             vertical coordinate (row) of the location of the new shark
-	 * @param breedAge      age (maturity) of the new shark
-	 * @param currentHunger age hunger of the new shark
+	 * Blocks until no tick is being calculated. Must be called while holding the monitor of this simulator. Like
+	 * {@link #waitForWorldUpdate()} this wait is not interruptible; the interrupted state of the thread is restored
+	 * after the wait.
 	 */
-	synchronized final public void setShark(int x, int y, short breedAge, short currentHunger) {
-		if (x < 0 || x >= worldWidth) {
-			throw new IllegalArgumentException("X coordinate " + x + " is out of bounds (width = " + worldWidth + ")");
+	private void waitForTick() {
+		boolean interrupted = false;
+		while (tickInProgress) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
 		}
-		if (y < 0 || y >= worldHeight) {
-			throw new IllegalArgumentException("Y coordinate " + y + " is out of bounds (height = " + worldHeight + ")");
+		if (interrupted) {
+			Thread.currentThread().interrupt();
 		}
-		if (breedAge <= 0) {
-			throw new IllegalArgumentException("Shark cannot have negative or zero breed age");
+	}
+
+	/**
+	 * Switches to the {@link #requestedEngine} (or to {@link #ENGINE_DENSE} if there are too many fish and shark for
+	 * {@link #ENGINE_SPARSE}). Must be called while holding the monitor of this simulator and while no tick is being
+	 * calculated.
+	 */
+	private void switchEngine() {
+		engine = fishCount + sharkCount > MAX_SPARSE_POPULATION ? ENGINE_DENSE : requestedEngine;
+		if (engine == ENGINE_SPARSE) {
+			activeCellCount = 0;
+			for (long no = 0; no < currentWorld.getSize(); no++) {
+				if (currentWorld.get(no) != 0) {
+					addActiveCell(no);
+				}
+			}
+			previousActiveCellCount = 0;
+			sparseWorldsOutOfSync = true;
+		} else {
+			activeCells = previousActiveCells = null;
+			activeCellCount = previousActiveCellCount = 0;
 		}
-		if (currentHunger <= 0) {
-			throw new IllegalArgumentException("Shark cannot have negative or zero hunger");
+	}
+
+	/**
+	 * Appends a cell to {@link #activeCells}, growing the array if necessary.
+	 *
+	 * @param no cell number to append
+	 */
+	private void addActiveCell(long no) {
+		if (activeCells == null) {
+			activeCells = new long[(int) Math.min(MIN_ACTIVE_CELLS_CAPACITY, currentWorld.getSize())];
+		} else if (activeCellCount == activeCells.length) {
+			long[] newActiveCells = new long[(int) Math.min(Math.min(activeCells.length * 2L, CellStore.MAX_HEAP_SIZE), currentWorld.getSize())];
+			System.arraycopy(activeCells, 0, newActiveCells, 0, activeCellCount);
+			activeCells = newActiveCells;
 		}
-		if (breedAge > sharkBreedTime + 1) {
-			throw new IllegalArgumentException("Shark breed time " + breedAge + " too old (max = " + sharkBreedTime + ")");
+		activeCells[activeCellCount++] = no;
+	}
+
+	/**
+	 * Appends a cell to {@link #previousActiveCells} (which collects the new list of occupied cells during a tick of
+	 * the {@link #ENGINE_SPARSE} engine), growing the array if necessary.
+	 *
+	 * @param no cell number to append
+	 */
+	private void addNextActiveCell(long no) {
+		if (previousActiveCells == null) {
+			previousActiveCells = new long[(int) Math.min(MIN_ACTIVE_CELLS_CAPACITY, nextWorld.getSize())];
+		} else if (previousActiveCellCount == previousActiveCells.length) {
+			long[] newActiveCells = new long[(int) Math.min(Math.min(previousActiveCells.length * 2L, CellStore.MAX_HEAP_SIZE), nextWorld.getSize())];
+			System.arraycopy(previousActiveCells, 0, newActiveCells, 0, previousActiveCellCount);
+			previousActiveCells = newActiveCells;
 		}
-		currentWorld[x + y * worldWidth] = (short) ((currentHunger << 8) | breedAge);
+		previousActiveCells[previousActiveCellCount++] = no;
 	}
 
 
 	/**
 	 * Updates the {@link WorldCalculatorState#neighbours} array for the given cell number.
+	 *
+	 * If both the width and the height of the world are a power of two the neighbours are wrapped around the edges of
+	 * the world with bit masks. Otherwise the neighbours of a cell that is not at the edge of the world are calculated
+	 * with constant offsets and only cells at the edge need to take care of wrapping around.
+	 *
 	 * @param calculatorState calculator state to update
 	 * @param no cell number
+	 * @param x  horizontal coordinate (column) of the cell
+	 * @param y  vertical coordinate (row) of the cell
 	 */
-	private void calculateNeighbours(WorldCalculatorState calculatorState, int no) {
-		final int x = no % worldWidth;
-		final int y = no / worldWidth;
+	private void calculateNeighbours(WorldCalculatorState calculatorState, long no, int x, int y) {
+		final long[] neighbours = calculatorState.neighbours;
+		final boolean allowDiagonally = neighbours.length == NEIGHBOUR_DX.length;
+		if (worldMask != 0) {
+			final long row = no - x;
+			final int widthMask = worldWidth - 1;
+			final int[] dx = allowDiagonally ? NEIGHBOUR_DX : ORTHOGONAL_NEIGHBOUR_DX;
+			final int[] rowOffsets = allowDiagonally ? neighbourRowOffsets : orthogonalNeighbourRowOffsets;
+			for (int neighbourNo = 0; neighbourNo < neighbours.length; neighbourNo++) {
+				neighbours[neighbourNo] = ((row + rowOffsets[neighbourNo]) & worldMask) | ((x + dx[neighbourNo]) & widthMask);
+			}
+			return;
+		}
+		if (x != 0 && y != 0 && x != worldWidth - 1 && y != worldHeight - 1) {
+			final int[] offsets = allowDiagonally ? neighbourOffsets : orthogonalNeighbourOffsets;
+			for (int neighbourNo = 0; neighbourNo < neighbours.length; neighbourNo++) {
+				neighbours[neighbourNo] = no + offsets[neighbourNo];
+			}
+			return;
+		}
 		final int left   = x == 0               ? x - 1 + worldWidth  : x - 1;
 		final int right  = x == worldWidth  - 1 ? x + 1 - worldWidth  : x + 1;
 		final int top    = y == 0               ? y - 1 + worldHeight : y - 1;
 		final int bottom = y == worldHeight - 1 ? y + 1 - worldHeight : y + 1;
-		if (calculatorState.neighbours.length == 4) {
-			calculatorState.neighbours[0] = left + y * worldWidth; // left
-			calculatorState.neighbours[1] = x + top * worldWidth; // top
-			calculatorState.neighbours[2] = right + y * worldWidth; // right
-			calculatorState.neighbours[3] = x + bottom * worldWidth; // bottom
+		final long row = no - x;
+		final long topRow = (long) top * worldWidth;
+		final long bottomRow = (long) bottom * worldWidth;
+		if (!allowDiagonally) {
+			neighbours[0] = left + row; // left
+			neighbours[1] = x + topRow; // top
+			neighbours[2] = right + row; // right
+			neighbours[3] = x + bottomRow; // bottom
 		} else {
-			calculatorState.neighbours[0] = left + y * worldWidth; // left
-			calculatorState.neighbours[1] = left + top * worldWidth; // top left
-			calculatorState.neighbours[2] = x + top * worldWidth; // top
-			calculatorState.neighbours[3] = right + top * worldWidth; // top right
-			calculatorState.neighbours[4] = right + y * worldWidth; // right
-			calculatorState.neighbours[5] = right + bottom * worldWidth; // bottom right
-			calculatorState.neighbours[6] = x + bottom * worldWidth; // bottom
-			calculatorState.neighbours[7] = left + bottom * worldWidth; // bottom left
+			neighbours[0] = left + row; // left
+			neighbours[1] = left + topRow; // top left
+			neighbours[2] = x + topRow; // top
+			neighbours[3] = right + topRow; // top right
+			neighbours[4] = right + row; // right
+			neighbours[5] = right + bottomRow; // bottom right
+			neighbours[6] = x + bottomRow; // bottom
+			neighbours[7] = left + bottomRow; // bottom left
+		}
+	}
+
+	/**
+	 * Claims tiles of the phase of the {@code calculatorState} from {@link #nextPhaseTileNo} and calculates them until
+	 * all tiles of the phase have been claimed.
+	 *
+	 * @param calculatorState defines the phase to calculate
+	 */
+	private void calculatePhase(WorldCalculatorState calculatorState) {
+		final int phase = calculatorState.phase;
+		final int phaseColumns = getPhaseGridSize(tileColumns, phase & 1);
+		final int phaseTileCount = phaseColumns * getPhaseGridSize(tileRows, phase >> 1);
+		int tileNo;
+		while ((tileNo = nextPhaseTileNo.getAndIncrement()) < phaseTileCount) {
+			final int rowNo = (phase >> 1) + 2 * (tileNo / phaseColumns);
+			final int columnNo = (phase & 1) + 2 * (tileNo % phaseColumns);
+			calculatorState.setTile(
+					tileColumnStarts[columnNo],
+					tileRowStarts[rowNo],
+					tileColumnStarts[columnNo + 1] - tileColumnStarts[columnNo],
+					tileRowStarts[rowNo + 1] - tileRowStarts[rowNo]
+			);
+			if (seeded) {
+				calculatorState.random.setSeed(getTileSeed(rowNo * tileColumns + columnNo));
+			}
+			calculateNextWorld(calculatorState);
 		}
 	}
 
 	/**
-	 * Calculates the next state of a chunk of the world as specified by by the {@code calculatorState}.
+	 * Derives the seed for the random number generator used to calculate a tile in the current tick of a seeded
+	 * simulator. The seed only depends on the seed of the simulator, the number of the tick and the tile, which
+	 * makes the outcome of a tick independent of which thread calculates which tile.
+	 *
+	 * @param tileNo number of the tile in the tile grid
+	 * @return seed for the random number generator
+	 */
+	private long getTileSeed(int tileNo) {
+		return mixBits(mixBits(seed + tickCount * 0x9E3779B97F4A7C15L) + tileNo);
+	}
+
+	/**
+	 * Scrambles the bits of a number (the finalizer of the SplitMix64 generator). Numbers that differ in only one bit
+	 * give very different results.
+	 *
+	 * @param z number to scramble
+	 * @return scrambled number
+	 */
+	private static long mixBits(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Calculates the next state of a tile of the world as specified by by the {@code calculatorState}.
 	 *
-	 * @param calculatorState defines the chunk of the world to calculate
+	 * The cells of the tile are visited in a random order that is cheap to generate and still mostly walks through
+	 * memory in small contiguous steps: each row of the tile is split into blocks of up to
+	 * {@link #VISIT_BLOCK_SIZE} cells. The blocks are visited in the order of a full-period linear congruential
+	 * generator (modulo the next power of two of the number of blocks, skipping numbers past the last block) with a
+	 * random multiplier, increment and start. The cells inside a block are visited in the order of another random
+	 * permutation (multiplying with a random odd number and xor-ing with a random mask). This way every cell is
+	 * visited exactly once. Cells whose animal has already moved (see {@link #cellProcessed}) are skipped.
+	 *
+	 * @param calculatorState defines the tile of the world to calculate
 	 */
 	private void calculateNextWorld(WorldCalculatorState calculatorState) {
-		int chunkSize = calculatorState.end - calculatorState.start;
-		int offset = calculatorState.random.nextInt(chunkSize);
-		int delta = calculatorState.random.nextInt(4) + 11;
-		while (true) {
-			int startOffset = offset;
-			while (cellProcessed[calculatorState.start + offset]) {
-				offset = (offset + 1) % chunkSize;
-				if (offset == startOffset) {
-					return; // all cells in our range processed
+		final byte mark = processedMark;
+		final CellStore world = nextWorld;
+		final FastRandom random = calculatorState.random;
+		final int tileWidth = calculatorState.tileWidth;
+		final int tileX = calculatorState.tileX;
+		final int tileY = calculatorState.tileY;
+		final long tileStart = tileX + (long) tileY * worldWidth;
+
+		// Narrow tiles get smaller blocks so that few block positions fall outside the tile
+		final int blockShift = Math.min(VISIT_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(tileWidth - 1));
+		final int blockSize = 1 << blockShift;
+		final int blocksPerRow = (tileWidth + blockSize - 1) >> blockShift;
+		final int blockCount = blocksPerRow * calculatorState.tileHeight;
+		final int blockMask = blockCount == 1 ? 0 : (Integer.highestOneBit(blockCount - 1) << 1) - 1;
+
+		// Full period modulo a power of two: the increment is odd and the multiplier minus one is divisible by four
+		final long bits = random.nextLong();
+		final int blockMultiplier = ((int) bits << 2) | 1;
+		final int blockIncrement = ((int) (bits >>> 32) << 1) | 1;
+		int blockNo = random.nextInt(blockMask + 1);
+
+		for (int step = 0; step <= blockMask; step++) {
+			blockNo = (blockNo * blockMultiplier + blockIncrement) & blockMask;
+			if (blockNo >= blockCount) {
+				continue;
+			}
+			final int rowNo = blockNo / blocksPerRow;
+			final int blockX = (blockNo - rowNo * blocksPerRow) << blockShift;
+			final long blockStart = tileStart + (long) rowNo * worldWidth + blockX;
+			final int cellsInBlock = Math.min(blockSize, tileWidth - blockX);
+			final int cellMultiplier = (random.nextChoice(VISIT_BLOCK_SIZE / 2) << 1) | 1;
+			final int cellMask = random.nextChoice(blockSize);
+			for (int cellNo = 0; cellNo < blockSize; cellNo++) {
+				final int cellX = ((cellNo * cellMultiplier) ^ cellMask) & (blockSize - 1);
+				if (cellX >= cellsInBlock) {
+					continue;
+				}
+				final long no = blockStart + cellX;
+				final int cell = world.get(no);
+				if (cell != 0 && cellProcessed.get(no) != mark) {
+					final int x = tileX + blockX + cellX;
+					final int y = tileY + rowNo;
+					calculateNeighbours(calculatorState, no, x, y);
+					long newNo = cell < 0 ? calculateFish(calculatorState, no) : calculateShark(calculatorState, no);
+					if (newNo >= 0) {
+						cellProcessed.set(newNo, mark);
+					}
+					markDirtyTiles(x, y, newNo);
 				}
 			}
-			int no = calculatorState.start + offset;
-			if (nextWorld[no] < 0) {
-				// Fish
-				calculateNeighbours(calculatorState, no);
-				calculateFish(calculatorState, no);
-			} else if (nextWorld[no] > 0) {
-				// Shark
-				calculateNeighbours(calculatorState, no);
-				calculateShark(calculatorState, no);
+		}
+	}
+
+	/**
+	 * Calculates the next state of the world with the {@link #ENGINE_SPARSE} engine: only the cells in
+	 * {@link #activeCells} are visited. The visiting order is random: it starts at a random entry and steps through the
+	 * list with a stride that is relatively prime to the length of the list (so that each entry is visited once).
+	 * The cells that are occupied after the tick are collected in {@link #previousActiveCells}.
+	 *
+	 * @param calculatorState calculator state to use
+	 */
+	private void calculateNextSparseWorld(WorldCalculatorState calculatorState) {
+		final byte mark = processedMark;
+		final long[] cells = activeCells;
+		final int cellCount = activeCellCount;
+		previousActiveCellCount = 0;
+		if (cellCount == 0) {
+			return;
+		}
+		int entryNo = calculatorState.random.nextInt(cellCount);
+		int delta = cellCount == 1 ? 0 : (calculatorState.random.nextChoice(4) + 11) % cellCount;
+		if (delta == 0 && cellCount > 1) {
+			delta = 1;
+		}
+		while (greatestCommonDivisor(delta, cellCount) != 1) {
+			delta++;
+		}
+		for (int count = 0; count < cellCount; count++) {
+			long no = cells[entryNo];
+			entryNo += delta;
+			if (entryNo >= cellCount) {
+				entryNo -= cellCount;
+			}
+			if (cellProcessed.get(no) == mark || nextWorld.get(no) == 0) {
+				// Something moved into this cell (e.g., a shark ate the fish) and has already been taken care of
+				continue;
+			}
+			final int x;
+			final int y;
+			if (widthShift >= 0) {
+				x = (int) no & (worldWidth - 1);
+				y = (int) (no >>> widthShift);
+			} else {
+				x = (int) (no % worldWidth);
+				y = (int) (no / worldWidth);
+			}
+			calculateNeighbours(calculatorState, no, x, y);
+			long newNo = nextWorld.get(no) < 0 ? calculateFish(calculatorState, no) : calculateShark(calculatorState, no);
+			markDirtyTiles(x, y, newNo);
+			if (newNo >= 0 && cellProcessed.get(newNo) != mark) {
+				cellProcessed.set(newNo, mark);
+				addNextActiveCell(newNo);
+			}
+			if (nextWorld.get(no) != 0) {
+				cellProcessed.set(no, mark);
+				addNextActiveCell(no);
 			}
-			cellProcessed[no] = true;
-			offset = (offset + delta) % chunkSize;
 		}
 	}
 
+	/**
+	 * Calculates the greatest common divisor of two non-negative numbers.
+	 *
+	 * @param a first number
+	 * @param b second number
+	 * @return greatest common divisor of {@code a} and {@code b}
+	 */
+	private static int greatestCommonDivisor(int a, int b) {
+		while (b != 0) {
+			int temp = a % b;
+			a = b;
+			b = temp;
+		}
+		return a;
+	}
+
 	/**
 	 * Handle a fish at the given location.
 	 *
 	 * @param calculatorState {@link WorldCalculatorState} to use
 	 * @param no location of the fish to calculate
+	 * @return the cell the fish moved to or -1 if the fish could not move
 	 */
-	private void calculateFish(WorldCalculatorState calculatorState, int no) {
+	private long calculateFish(WorldCalculatorState calculatorState, long no) {
+		final CellStore world = nextWorld;
 		int emptyNeighbours = 0;
-		for (int neighbourNo : calculatorState.neighbours) {
-			if (nextWorld[neighbourNo] == 0) {
+		for (long neighbourNo : calculatorState.neighbours) {
+			if (world.get(neighbourNo) == 0) {
 				// empty
 				calculatorState.emptyNeighbourPos[emptyNeighbours++] = neighbourNo;
 			}
 		}
-		short fishAge = nextWorld[no];
+		int fishAge = world.get(no);
 		if (emptyNeighbours > 0) {
-			int newNo = calculatorState.emptyNeighbourPos[
-					emptyNeighbours == 1 ? 0 : calculatorState.random.nextInt(emptyNeighbours)
+			long newNo = calculatorState.emptyNeighbourPos[
+					emptyNeighbours == 1 ? 0 : calculatorState.random.nextChoice(emptyNeighbours)
 					];
 			if (fishAge <= -fishBreedTime) {
 				// reproduce
-				nextWorld[newNo] = -1;
-				nextWorld[no] = -1;
+				world.set(newNo, -1);
+				world.set(no, -1);
+				calculatorState.events.fishBirths++;
 			} else {
 				// just move (and age)
-				nextWorld[newNo] = (short) (fishAge - 1);
-				nextWorld[no] = 0;
+				world.set(newNo, fishAge - 1);
+				world.set(no, 0);
 			}
-			cellProcessed[newNo] = true;
-		} else {
-			// can't move but age
-			nextWorld[no] = (short) (fishAge <= fishBreedTime ? -1 : (fishAge - 1));
+			calculatorState.events.moves++;
+			return newNo;
 		}
+		// can't move but age
+		world.set(no, fishAge <= fishBreedTime ? -1 : (fishAge - 1));
+		calculatorState.events.blockedMoves++;
+		return -1;
 	}
 
 	/**
@@ -820,57 +2786,67 @@ final public class Simulator {
 	 *
 	 * @param calculatorState {@link WorldCalculatorState} to use
 	 * @param no              location of the shark to calculate
+	 * @return the cell the shark moved to or -1 if the shark could not move (or died)
 	 */
-	private void calculateShark(WorldCalculatorState calculatorState, int no) {
+	private long calculateShark(WorldCalculatorState calculatorState, long no) {
+		final CellStore world = nextWorld;
 		int emptyNeighbours = 0;
 		int fishNeighbours = 0;
-		for (int neighbourNo : calculatorState.neighbours) {
-			if (nextWorld[neighbourNo] == 0) {
+		for (long neighbourNo : calculatorState.neighbours) {
+			final int neighbour = world.get(neighbourNo);
+			if (neighbour == 0) {
 				// empty
 				calculatorState.emptyNeighbourPos[emptyNeighbours++] = neighbourNo;
-			} else if (nextWorld[neighbourNo] < 0) {
+			} else if (neighbour < 0) {
 				// fish
 				calculatorState.fishNeighbourPos[fishNeighbours++] = neighbourNo;
 			}
 		}
+		final int shark = world.get(no);
+		int currentBreedTime = shark & sharkAgeMask;
 		if (fishNeighbours > 0) {
 			// we can eat a fish :) so ignore the hunger
-			short currentBreedTime = (short) (nextWorld[no] & 255);
-			int newNo = calculatorState.fishNeighbourPos[fishNeighbours == 1 ? 0 : calculatorState.random.nextInt(fishNeighbours)];
-			final short compositeHunger = 1 << 8;
+			long newNo = calculatorState.fishNeighbourPos[fishNeighbours == 1 ? 0 : calculatorState.random.nextChoice(fishNeighbours)];
+			final int compositeHunger = 1 << sharkHungerShift;
+			calculatorState.events.fishEaten++;
+			calculatorState.events.moves++;
 			if (currentBreedTime > sharkBreedTime) {
 				// eat fish, reproduce and move
-				nextWorld[newNo] = compositeHunger | 1;
-				nextWorld[no] = compositeHunger | 1;
+				world.set(newNo, compositeHunger | 1);
+				world.set(no, compositeHunger | 1);
+				calculatorState.events.sharkBirths++;
 			} else {
 				// just eat the fish, increase current breed time and move
-				nextWorld[newNo] = (short) (compositeHunger | (currentBreedTime + 1));
-				nextWorld[no] = 0;
+				world.set(newNo, compositeHunger | (currentBreedTime + 1));
+				world.set(no, 0);
 			}
-			cellProcessed[newNo] = true;
+			return newNo;
 		} else {
 			// can't eat a fish :/ so we need to check if we starve first
-			short hunger = (short) (nextWorld[no] >> 8);
+			int hunger = shark >> sharkHungerShift;
 			if (hunger >= sharkStarveTime) {
 				// die
-				nextWorld[no] = 0;
+				world.set(no, 0);
+				calculatorState.events.sharkStarved++;
+				return -1;
 			} else {
 				// starve a bit...
 				hunger++;
-				short currentBreedTime = (short) (nextWorld[no] & 255);
 				if (emptyNeighbours > 0) {
 					// ... and move
-					int newNo = calculatorState.emptyNeighbourPos[emptyNeighbours == 1 ? 0 : calculatorState.random.nextInt(emptyNeighbours)];
+					long newNo = calculatorState.emptyNeighbourPos[emptyNeighbours == 1 ? 0 : calculatorState.random.nextChoice(emptyNeighbours)];
 					if (currentBreedTime >= sharkBreedTime) {
 						// reproduce and move
-						nextWorld[newNo] = (short) ((hunger << 8) | 1);
-						nextWorld[no] = (short) ((1 << 8) | 1);
+						world.set(newNo, (hunger << sharkHungerShift) | 1);
+						world.set(no, (1 << sharkHungerShift) | 1);
+						calculatorState.events.sharkBirths++;
 					} else {
 						// just move
-						nextWorld[newNo] = (short) ((hunger << 8) | (currentBreedTime + 1));
-						nextWorld[no] = 0;
+						world.set(newNo, (hunger << sharkHungerShift) | (currentBreedTime + 1));
+						world.set(no, 0);
 					}
-					cellProcessed[newNo] = true;
+					calculatorState.events.moves++;
+					return newNo;
 				} else {
 					// can't move, just age
 					if (currentBreedTime < sharkBreedTime) {
@@ -878,7 +2854,9 @@ final public class Simulator {
 					} else {
 						currentBreedTime = 1;
 					}
-					nextWorld[no] = (short) ((hunger << 8) | currentBreedTime);
+					world.set(no, (hunger << sharkHungerShift) | currentBreedTime);
+					calculatorState.events.blockedMoves++;
+					return -1;
 				}
 			}
 		}
@@ -892,94 +2870,501 @@ final public class Simulator {
 	/**
 	 * Calculate the next tick of the world with the specified number of threads.
 	 *
-	 * Note: this method currently ignores the parameter {@code threads} and only uses one thread.
-	 * @param threads number of threads to use to calculate the tick (currently ignored)
+	 * Note: the {@link #ENGINE_SPARSE} engine ignores the parameter {@code threads} and only uses one thread.
+	 * @param threads number of threads to use to calculate the tick
 	 */
 	final public void tick(int threads) {
-		// Copy from current to next
+		calculateTick(threads);
+		if (worldDeltaObservers.length > 0) {
+			deliverWorldDelta();
+		}
+	}
+
+	/**
+	 * Calculates the next tick of the world (see {@link #tick(int)}).
+	 *
+	 * @param threads number of threads to use to calculate the tick
+	 */
+	private void calculateTick(int threads) {
 		synchronized (this) {
-			System.arraycopy(currentWorld, 0, nextWorld, 0, currentWorld.length);
+			if (engine != requestedEngine || engine == ENGINE_SPARSE && fishCount + sharkCount > MAX_SPARSE_POPULATION) {
+				switchEngine();
+			}
+			if (inPlaceUpdate != requestedInPlaceUpdate) {
+				switchUpdateMode();
+			}
+			if (engine == ENGINE_SPARSE) {
+				tickSparse();
+				return;
+			}
+			tickInProgress = true;
+			if (inPlaceUpdate) {
+				worldUpdateInProgress = true;
+			} else {
+				// Copy from current to next
+				nextWorld.copyFrom(currentWorld);
+			}
 		}
 
 		// Mark all cells as unprocessed
-		Arrays.fill(cellProcessed, false);
+		advanceProcessedMark();
 
+		// Divide the world into tiles
+		setupTiles(threads);
 
-		// Calculate work chunk size
-		int chunkSize = nextWorld.length / (2 * threads);
-		if (chunkSize < 100) {
-			chunkSize = 100;
-			threads = 1 / chunkSize * nextWorld.length / 2;
-			if (threads < 1) {
-				threads = 1;
-				chunkSize = nextWorld.length;
-			} else {
-				chunkSize = nextWorld.length / (2 * threads);
-			}
+		// Set up calculator threads (if more than one thread works on a phase)
+		final boolean useCalculatorThreads = tileThreadCount > 1;
+		if (useCalculatorThreads) {
+			setupCalculatorThreads(tileThreadCount);
 		}
 
-		if (threads == 1) {
-
-			// Single threaded: just calculate the whole world start to end
-			mainThreadWorldCalculatorState.setChunk(0, nextWorld.length);
-			calculateNextWorld(mainThreadWorldCalculatorState);
+		// Do the tick: the calling thread (and the calculator threads) claim the tiles of each phase. Single threaded
+		// the grid usually is just one tile (the whole world) unless the simulator is seeded
+		try {
+			for (int phase = 0; phase < 4; phase++) {
+				if (getPhaseGridSize(tileColumns, phase & 1) == 0 || getPhaseGridSize(tileRows, phase >> 1) == 0) {
+					// The grid has only one column or row of tiles: there are no tiles of this colour
+					continue;
+				}
+				nextPhaseTileNo.set(0);
+				if (useCalculatorThreads) {
+					scheduleCalculatorThreads(phase);
+				}
+				mainThreadWorldCalculatorState.setPhase(phase);
+				calculatePhase(mainThreadWorldCalculatorState);
+				if (useCalculatorThreads) {
+					waitForCalculatorThreads();
+				}
+			}
+		} catch (InterruptedException e) {
+			// Nothing to do here
+		}
 
-		} else {
+		synchronized(this) {
+			tickCount++;
+			mergeTickStatistics();
+			stampDirtyTiles();
+			collectWorldDelta();
+			if (inPlaceUpdate) {
+				worldUpdateInProgress = false;
+			} else {
+				CellStore tempWorld = currentWorld;
+				currentWorld = nextWorld;
+				nextWorld = tempWorld;
+			}
+			tickInProgress = false;
+			notifyAll();
+			if (snapshotsRequested) {
+				publishSnapshot(false);
+			}
+		}
+	}
 
-			// Multithreaded: need to calculate the chunk size and then schedule the work to all the threads
-			//                we have set up
+	/**
+	 * Sums up the events counted by the calculators during a tick into {@link #lastTickStatistics}, updates
+	 * {@link #fishCount} and {@link #sharkCount} accordingly and resets the events of the calculators. Must be called
+	 * while holding the monitor of this simulator after all calculators are done and after {@link #tickCount} has been
+	 * incremented.
+	 */
+	private void mergeTickStatistics() {
+		lastTickStatistics.clearEvents();
+		lastTickStatistics.addEvents(mainThreadWorldCalculatorState.events);
+		mainThreadWorldCalculatorState.events.clearEvents();
+		if (calculatorThreads != null) {
+			for (CalculatorThread t : calculatorThreads) {
+				lastTickStatistics.addEvents(t.worldCalculatorState.events);
+				t.worldCalculatorState.events.clearEvents();
+			}
+		}
+		fishCount += lastTickStatistics.fishBirths - lastTickStatistics.fishEaten;
+		sharkCount += lastTickStatistics.sharkBirths - lastTickStatistics.sharkStarved;
+		lastTickStatistics.tickCount = tickCount;
+		lastTickStatistics.fishCount = fishCount;
+		lastTickStatistics.sharkCount = sharkCount;
+	}
 
-			// Set up calculator threads
-			setupCalculatorThreads(threads);
+	/**
+	 * Starts a new {@link #version} of the world and assigns it to all tiles marked in {@link #dirtyTiles}, then
+	 * clears the marks. Must be called while holding the monitor of this simulator after all calculators are done.
+	 */
+	private void stampDirtyTiles() {
+		version = VERSIONS.incrementAndGet();
+		for (int tileNo = 0; tileNo < dirtyTiles.length; tileNo++) {
+			if (dirtyTiles[tileNo]) {
+				tileVersions[tileNo] = version;
+				dirtyTiles[tileNo] = false;
+			}
+		}
+	}
 
-			// Do the tick
-			try {
-				for (int passNo = 0; passNo < 2; passNo++) {
-					for (int chunkNo = 0; chunkNo < threads; chunkNo++) {
-						int chunkStart = (2 * chunkNo + passNo) * chunkSize;
-						int chunkEnd = (passNo == 1 && chunkNo == threads - 1) ? nextWorld.length : chunkStart + chunkSize;
-
-						if (chunkNo == calculatorThreads.length) {
-							// Run on this thread
-							mainThreadWorldCalculatorState.setChunk(chunkStart, chunkEnd);
-							calculateNextWorld(mainThreadWorldCalculatorState);
-						} else {
-							calculatorThreads[chunkNo].startCalculatingWorld(chunkStart, chunkEnd);
-						}
+	/**
+	 * Collects the cells that changed since {@link #worldDeltaVersion} into {@link #pendingWorldDelta} and updates
+	 * {@link #worldDeltaBase} if there are {@link #worldDeltaObservers}. Only the cells of dirty tiles that changed
+	 * since then need to be compared. Must be called while holding the monitor of this simulator after
+	 * {@link #stampDirtyTiles()}. In place updates must be done (the changes are collected from {@link #nextWorld},
+	 * which is the same as {@link #currentWorld} in that case).
+	 */
+	private void collectWorldDelta() {
+		if (worldDeltaBase == null || pendingWorldDelta != null) {
+			// No observers or the previous delta has not been delivered yet (an observer has just been added); in the
+			// latter case the changes of this tick go into the next delta
+			return;
+		}
+		WorldDelta delta = null;
+		for (int no = 0; no < worldDeltas.length && delta == null; no++) {
+			delta = worldDeltas[no];
+			worldDeltas[no] = null;
+		}
+		if (delta == null) {
+			delta = new WorldDelta();
+		}
+		delta.clear(worldDeltaVersion);
+		final CellStore world = nextWorld;
+		final CellStore base = worldDeltaBase;
+		final long sinceVersion = worldDeltaVersion;
+		long previousNo = -1;
+		for (int tileY = 0; tileY < dirtyTileRows; tileY++) {
+			final int endY = Math.min((tileY + 1) << DIRTY_TILE_SHIFT, worldHeight);
+			for (int y = tileY << DIRTY_TILE_SHIFT; y < endY; y++) {
+				for (int tileX = 0; tileX < dirtyTileColumns; tileX++) {
+					if (tileVersions[tileX + tileY * dirtyTileColumns] <= sinceVersion) {
+						continue;
 					}
-					for (CalculatorThread t: calculatorThreads) {
-						t.waitForWorkDone();
+					final long startNo = (tileX << DIRTY_TILE_SHIFT) + (long) y * worldWidth;
+					final long endNo = (long) y * worldWidth + Math.min((tileX + 1) << DIRTY_TILE_SHIFT, worldWidth);
+					for (long no = startNo; no < endNo; no++) {
+						final int value = world.get(no);
+						if (value != base.get(no)) {
+							delta.addChange(no - previousNo, value);
+							base.set(no, value);
+							previousNo = no;
+						}
 					}
 				}
-			} catch (InterruptedException e) {
-				// Nothing to do here
 			}
 		}
+		worldDeltaVersion = version;
+		pendingWorldDelta = delta;
+	}
 
-		synchronized(this) {
-			short[] tempWorld = currentWorld;
-			currentWorld = nextWorld;
-			nextWorld = tempWorld;
+	/** Delivers {@link #pendingWorldDelta} (if any) to the {@link #worldDeltaObservers}. */
+	private void deliverWorldDelta() {
+		final WorldDelta delta;
+		final WorldDeltaObserver[] observers;
+		synchronized (this) {
+			delta = pendingWorldDelta;
+			pendingWorldDelta = null;
+			observers = worldDeltaObservers;
+		}
+		if (delta == null) {
+			return;
+		}
+		try {
+			for (WorldDeltaObserver observer : observers) {
+				delta.rewind();
+				observer.worldChanged(delta);
+			}
+		} finally {
+			delta.release();
+		}
+	}
+
+	/**
+	 * Registers an observer that receives the cells that changed after each tick (see {@link WorldDelta}). The first
+	 * delta an observer receives contains the changes since the observer was added (or since the first of the
+	 * current observers was added); an observer that needs the whole world should request it with
+	 * {@link #getWorldToPaint()} and apply the deltas whose {@link WorldDelta#getVersion()} is greater than the
+	 * version of that world.
+	 *
+	 * While there are observers the simulator keeps an additional copy of the world to find the changes.
+	 *
+	 * @param observer observer to add
+	 */
+	final synchronized public void addWorldDeltaObserver(WorldDeltaObserver observer) {
+		if (worldDeltaBase == null) {
+			waitForWorldUpdate();
+			worldDeltaBase = currentWorld.newStore();
+			worldDeltaBase.copyFrom(currentWorld);
+			worldDeltaVersion = version;
+		}
+		final WorldDeltaObserver[] observers = Arrays.copyOf(worldDeltaObservers, worldDeltaObservers.length + 1);
+		observers[observers.length - 1] = observer;
+		worldDeltaObservers = observers;
+	}
+
+	/**
+	 * Unregisters an observer added with {@link #addWorldDeltaObserver(WorldDeltaObserver)}.
+	 *
+	 * @param observer observer to remove
+	 */
+	final synchronized public void removeWorldDeltaObserver(WorldDeltaObserver observer) {
+		for (int no = 0; no < worldDeltaObservers.length; no++) {
+			if (worldDeltaObservers[no] == observer) {
+				final WorldDeltaObserver[] observers = new WorldDeltaObserver[worldDeltaObservers.length - 1];
+				System.arraycopy(worldDeltaObservers, 0, observers, 0, no);
+				System.arraycopy(worldDeltaObservers, no + 1, observers, no, observers.length - no);
+				worldDeltaObservers = observers;
+				break;
+			}
+		}
+		if (worldDeltaObservers.length == 0) {
+			worldDeltaBase = null;
+			if (pendingWorldDelta != null) {
+				pendingWorldDelta.release();
+				pendingWorldDelta = null;
+			}
+		}
+	}
+
+	/**
+	 * Marks the dirty tiles of a cell whose fish or shark has just been calculated and of the cell it moved to.
+	 *
+	 * @param x     horizontal coordinate (column) of the cell
+	 * @param y     vertical coordinate (row) of the cell
+	 * @param newNo number of the cell the fish or shark moved to (a neighbour of the cell); -1 if it did not move
+	 */
+	private void markDirtyTiles(int x, int y, long newNo) {
+		dirtyTiles[(x >> DIRTY_TILE_SHIFT) + (y >> DIRTY_TILE_SHIFT) * dirtyTileColumns] = true;
+		// A neighbour can only be in another tile if the cell is at the edge of its tile (or of the world)
+		if (newNo >= 0 && (((x + 1) & DIRTY_TILE_MASK) <= 1 || ((y + 1) & DIRTY_TILE_MASK) <= 1
+				|| x == worldWidth - 1 || y == worldHeight - 1)) {
+			final int newX;
+			final int newY;
+			if (widthShift >= 0) {
+				newX = (int) newNo & (worldWidth - 1);
+				newY = (int) (newNo >>> widthShift);
+			} else {
+				newX = (int) (newNo % worldWidth);
+				newY = (int) (newNo / worldWidth);
+			}
+			dirtyTiles[(newX >> DIRTY_TILE_SHIFT) + (newY >> DIRTY_TILE_SHIFT) * dirtyTileColumns] = true;
+		}
+	}
+
+	/**
+	 * Marks all cells as unprocessed by advancing {@link #processedMark}. Only when the mark wraps around (every 255
+	 * ticks) {@link #cellProcessed} needs to be cleared.
+	 */
+	private void advanceProcessedMark() {
+		processedMark++;
+		if (processedMark == 0) {
+			cellProcessed.clear();
+			processedMark = 1;
+		}
+	}
+
+	/**
+	 * Calculates the next tick with the {@link #ENGINE_SPARSE} engine. Must be called while holding the monitor of
+	 * this simulator; since a tick of this engine is short (it only visits the fish and shark) the monitor is held
+	 * for the whole tick, which also keeps {@link #setFish(int, int, short)} and
+	 * {@link #setShark(int, int, short, short)} from modifying {@link #activeCells} during the tick.
+	 */
+	private void tickSparse() {
+		// Bring nextWorld up to date with currentWorld: only the cells that were occupied before or after the
+		// previous tick can differ
+		if (inPlaceUpdate) {
+			// Nothing to do: there is only one world
+		} else if (sparseWorldsOutOfSync) {
+			nextWorld.copyFrom(currentWorld);
+			sparseWorldsOutOfSync = false;
+		} else {
+			for (int entryNo = 0; entryNo < previousActiveCellCount; entryNo++) {
+				long no = previousActiveCells[entryNo];
+				nextWorld.set(no, currentWorld.get(no));
+			}
+			for (int entryNo = 0; entryNo < activeCellCount; entryNo++) {
+				long no = activeCells[entryNo];
+				nextWorld.set(no, currentWorld.get(no));
+			}
+		}
+
+		advanceProcessedMark();
+		if (seeded) {
+			// The sparse engine has no tiles: use a tile number the tile grid never has
+			mainThreadWorldCalculatorState.random.setSeed(getTileSeed(-1));
+		}
+		calculateNextSparseWorld(mainThreadWorldCalculatorState);
+		tickCount++;
+		mergeTickStatistics();
+		stampDirtyTiles();
+		collectWorldDelta();
+
+		CellStore tempWorld = currentWorld;
+		currentWorld = nextWorld;
+		nextWorld = tempWorld;
+		long[] tempCells = activeCells;
+		activeCells = previousActiveCells;
+		previousActiveCells = tempCells;
+		int tempCount = activeCellCount;
+		activeCellCount = previousActiveCellCount;
+		previousActiveCellCount = tempCount;
+		if (snapshotsRequested) {
+			publishSnapshot(false);
 		}
 	}
 
 	/**
+	 * Returns a snapshot of the world after the most recent tick (or the most recent change through
+	 * {@link #setFish(int, int, short)} or {@link #setShark(int, int, short, short)}). Usually this method does not
+	 * take the monitor of this simulator and does not copy the world: it refers the inspector to the published
+	 * snapshot.
+	 *
 	 * @return a snapshot of the current world in a {@link WorldInspector}.
 	 */
-	final synchronized public WorldInspector getWorldToPaint() {
-		for (int no = 0; no < worldInspectors.length; no++) {
-			if (worldInspectors[no] != null) {
-				worldInspectors[no].setWorldToPaint(currentWorld);
-				try {
-					return worldInspectors[no];
-				} finally {
-					worldInspectors[no] = null;
+	final public WorldInspector getWorldToPaint() {
+		return getWorldToPaint(0, 0, worldWidth, worldHeight);
+	}
+
+	/**
+	 * Returns a snapshot of a region of the world after the most recent tick (see {@link #getWorldToPaint()}). The
+	 * region wraps around the right (bottom) edge of the world if {@code x + width} ({@code y + height}) is greater
+	 * than the width (height) of the world.
+	 *
+	 * Published snapshots only contain the tiles of the regions that have been requested recently, so the cost of
+	 * publishing a snapshot after each tick follows the regions viewers look at. All regions requested after the same
+	 * tick are served from the same published snapshot. Only the first request of a region (or a request after no one
+	 * has looked at the region for a while) takes the monitor of this simulator to publish a snapshot with the
+	 * region; when the world is updated in place this waits until the current tick is finished.
+	 *
+	 * @param x      horizontal coordinate (column) of the left edge of the region
+	 * @param y      vertical coordinate (row) of the top edge of the region
+	 * @param width  width of the region
+	 * @param height height of the region
+	 * @return a snapshot of the region in a {@link WorldInspector}.
+	 */
+	final public WorldInspector getWorldToPaint(int x, int y, int width, int height) {
+		if (x < 0 || x >= worldWidth || width <= 0 || width > worldWidth) {
+			throw new IllegalArgumentException("Region columns " + x + " + " + width + " are out of bounds (width = " + worldWidth + ")");
+		}
+		if (y < 0 || y >= worldHeight || height <= 0 || height > worldHeight) {
+			throw new IllegalArgumentException("Region rows " + y + " + " + height + " are out of bounds (height = " + worldHeight + ")");
+		}
+		WorldSnapshot snapshot = acquirePublishedSnapshot();
+		while (!touchRegionTiles(snapshot, x, y, width, height)) {
+			// The published snapshot lacks tiles of the region (or there is none yet): publish one with the region
+			if (snapshot != null) {
+				snapshot.references.decrementAndGet();
+			}
+			synchronized (this) {
+				waitForWorldUpdate();
+				publishSnapshot(true);
+				snapshotsRequested = true;
+			}
+			snapshot = acquirePublishedSnapshot();
+		}
+		WorldInspector inspector = null;
+		for (int no = 0; no < worldInspectors.length() && inspector == null; no++) {
+			inspector = worldInspectors.getAndSet(no, null);
+		}
+		if (inspector == null) {
+			inspector = new WorldInspector();
+		}
+		inspector.setSnapshot(snapshot, x, y, width, height);
+		return inspector;
+	}
+
+	/**
+	 * Takes a reference to the published snapshot.
+	 *
+	 * @return published snapshot (with an additional reference); {@code null} if no snapshot has been published yet
+	 */
+	private WorldSnapshot acquirePublishedSnapshot() {
+		WorldSnapshot snapshot;
+		do {
+			snapshot = publishedSnapshot.get();
+			if (snapshot == null) {
+				return null;
+			}
+			if (snapshot.references.incrementAndGet() > 0 && snapshot == publishedSnapshot.get()) {
+				return snapshot;
+			}
+			// The snapshot has been replaced in the meantime (and may be recycled right now)
+			snapshot.references.decrementAndGet();
+		} while (true);
+	}
+
+	/**
+	 * Records the interest in the tiles of a region (see {@link #tileInterestTimes}) and checks whether a snapshot
+	 * contains all of them.
+	 *
+	 * @param snapshot snapshot to check (may be {@code null})
+	 * @param x        horizontal coordinate (column) of the left edge of the region
+	 * @param y        vertical coordinate (row) of the top edge of the region
+	 * @param width    width of the region
+	 * @param height   height of the region
+	 * @return {@code true} if {@code snapshot} contains all tiles of the region
+	 */
+	private boolean touchRegionTiles(WorldSnapshot snapshot, int x, int y, int width, int height) {
+		final int now = getInterestTime();
+		boolean complete = snapshot != null;
+		for (int row = 0; row < height; ) {
+			final int cellY = y + row < worldHeight ? y + row : y + row - worldHeight;
+			final int tileRowStart = (cellY >> DIRTY_TILE_SHIFT) * dirtyTileColumns;
+			for (int column = 0; column < width; ) {
+				final int cellX = x + column < worldWidth ? x + column : x + column - worldWidth;
+				final int tileNo = tileRowStart + (cellX >> DIRTY_TILE_SHIFT);
+				tileInterestTimes[tileNo] = now;
+				complete = complete && snapshot.tiles[tileNo] != null;
+				// Continue with the next tile (or the first one of the world's row)
+				column += Math.min(DIRTY_TILE_SIZE - (cellX & DIRTY_TILE_MASK), worldWidth - cellX);
+			}
+			row += Math.min(DIRTY_TILE_SIZE - (cellY & DIRTY_TILE_MASK), worldHeight - cellY);
+		}
+		return complete;
+	}
+
+	/** @return current time in milliseconds for {@link #tileInterestTimes} (only differences are meaningful) */
+	private static int getInterestTime() {
+		return (int) (System.nanoTime() / 1000000L);
+	}
+
+	/**
+	 * Publishes a snapshot of {@link #currentWorld}. Snapshots that no inspector refers to any more are recycled
+	 * first; one of them (or a new one if there is none) becomes the new snapshot. Must be called while holding the
+	 * monitor of this simulator.
+	 *
+	 * @param always {@code true} to publish a snapshot even if the world has not changed since the published one
+	 *               (since the published one lacks tiles); {@code false} to only publish a changed world
+	 */
+	private void publishSnapshot(boolean always) {
+		if (worldUpdateInProgress) {
+			// The end of the tick publishes the world
+			return;
+		}
+		final WorldSnapshot published = publishedSnapshot.get();
+		if (!always && published != null && published.version == version) {
+			return;
+		}
+		WorldSnapshot newSnapshot = null;
+		for (WorldSnapshot snapshot : snapshots) {
+			if (snapshot != published && snapshot.references.compareAndSet(0, SNAPSHOT_UPDATING)) {
+				snapshot.recycle();
+				if (newSnapshot == null) {
+					newSnapshot = snapshot;
+				} else {
+					snapshot.references.addAndGet(-SNAPSHOT_UPDATING);
 				}
 			}
 		}
-		WorldInspector newInspector = new WorldInspector();
-		newInspector.setWorldToPaint(currentWorld);
-		return newInspector;
+		if (newSnapshot == null) {
+			newSnapshot = new WorldSnapshot();
+			newSnapshot.references.set(SNAPSHOT_UPDATING);
+			snapshots.add(newSnapshot);
+		}
+		newSnapshot.update(published);
+		newSnapshot.references.addAndGet(-SNAPSHOT_UPDATING);
+		publishedSnapshot.set(newSnapshot);
+	}
+
+	/**
+	 * Returns a tile that belongs to no snapshot (reusing a free one if possible). Must be called while holding the
+	 * monitor of this simulator.
+	 *
+	 * @return unused tile
+	 */
+	private SnapshotTile obtainSnapshotTile() {
+		final int freeTiles = freeSnapshotTiles.size();
+		return freeTiles == 0 ? new SnapshotTile() : freeSnapshotTiles.remove(freeTiles - 1);
 	}
 
 }
@@ -17,6 +17,16 @@
 
 package com.dirkgassen.wator.simulator;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.dirkgassen.wator.utils.FrameQueue;
 import com.dirkgassen.wator.utils.RollingAverage;
 
 import android.util.Log;
@@ -31,6 +41,22 @@ import android.util.Log;
  * {@link #registerSimulatorRunnableObserver(SimulatorRunnableObserver)}. Once a
  * {@link SimulatorRunnableObserver} is no longer interested in updates it should be unregistered
  * with {@link #unregisterSimulatorObserver(SimulatorRunnableObserver)}.
+ * <p/>
+ * A class that only needs the statistics of each tick (like the number of fish and shark) should implement
+ * {@link WorldStatisticsObserver} and register with {@link #registerStatisticsObserver(WorldStatisticsObserver)}.
+ * Delivering the statistics costs a copy of a few numbers rather than a snapshot of the world.
+ * <p/>
+ * Each observer is notified on its own thread (see {@link ObserverDispatch}), so a slow observer does not slow down
+ * the simulation or the other observers. Each observer chooses how it wants to be notified:
+ * <ul>
+ *     <li>{@link #DELIVER_LATEST}: ticks the observer has not caught up with are coalesced into one notification of
+ *     the most recent tick (for rendering)</li>
+ *     <li>{@link #DELIVER_EVERY_TICK}: the observer receives the statistics of every tick (for exact statistics; only
+ *     for {@link WorldStatisticsObserver}s)</li>
+ *     <li>{@link #DELIVER_EVERY_NTH_TICK}: like {@link #DELIVER_LATEST} but only every n-th tick (for recorders)</li>
+ *     <li>{@link #DELIVER_SAMPLED}: like {@link #DELIVER_LATEST} but at most once in a given number of milliseconds
+ *     (for recorders)</li>
+ * </ul>
  */
 public class SimulatorRunnable implements Runnable {
 
@@ -45,14 +71,365 @@ public class SimulatorRunnable implements Runnable {
 	 */
 	public interface SimulatorRunnableObserver {
 
-		/** This method is called whenever one simulator tick is finished */
+		/**
+		 * This method is called (on a thread of the observer's own) whenever a simulator tick is finished. Ticks that
+		 * finish while the observer is still busy with a previous one are coalesced into one call.
+		 */
 		void simulatorUpdated(Simulator simulator);
 
 	}
 
+	/**
+	 * Delivery policy: ticks the observer has not caught up with are coalesced into one notification of the most
+	 * recent tick
+	 */
+	public static final int DELIVER_LATEST = 0;
+
+	/**
+	 * Delivery policy: the observer receives the statistics of every tick (only for {@link WorldStatisticsObserver}s).
+	 * At most {@link #STATISTICS_BACKLOG} ticks are kept for an observer that falls behind; the statistics of further
+	 * ticks are dropped and counted in {@link Simulator.TickStatistics#getDroppedTicks()} of the next delivered tick.
+	 */
+	public static final int DELIVER_EVERY_TICK = 1;
+
+	/** Delivery policy: like {@link #DELIVER_LATEST} but only for every n-th tick (n being the interval) */
+	public static final int DELIVER_EVERY_NTH_TICK = 2;
+
+	/**
+	 * Delivery policy: like {@link #DELIVER_LATEST} but at most once in a number of milliseconds (the interval)
+	 */
+	public static final int DELIVER_SAMPLED = 3;
+
+	/**
+	 * Maximum number of ticks captured for a {@link #DELIVER_EVERY_TICK} observer that have not been delivered yet
+	 */
+	public static final int STATISTICS_BACKLOG = 64;
+
+	/** Default time budget (in milliseconds) of a notification of an observer (see {@link #setObserverBudget(int)}) */
+	public static final int DEFAULT_OBSERVER_BUDGET = 50;
+
+	/**
+	 * Returns the delivery policy an observer is demoted to when its notifications take too long (see
+	 * {@link ObserverWatchdog}): an observer that receives every tick only receives the most recent tick, all others
+	 * are sampled ({@link #DELIVER_SAMPLED}).
+	 *
+	 * @param delivery current delivery policy
+	 * @return delivery policy after the demotion
+	 */
+	public static int demoteDelivery(int delivery) {
+		return delivery == DELIVER_EVERY_TICK ? DELIVER_LATEST : DELIVER_SAMPLED;
+	}
+
+	/**
+	 * @param delivery delivery policy
+	 * @param interval interval of the delivery policy
+	 * @return description of the delivery policy (for log messages)
+	 */
+	public static String describeDelivery(int delivery, int interval) {
+		switch (delivery) {
+			case DELIVER_LATEST:
+				return "latest tick";
+			case DELIVER_EVERY_TICK:
+				return "every tick";
+			case DELIVER_EVERY_NTH_TICK:
+				return "every " + interval + " ticks";
+			case DELIVER_SAMPLED:
+				return "sampled every " + interval + " ms";
+			default:
+				return "unknown delivery " + delivery;
+		}
+	}
+
+	/**
+	 * Verifies a delivery policy and its interval.
+	 *
+	 * @param delivery   delivery policy ({@link #DELIVER_LATEST}, {@link #DELIVER_EVERY_TICK},
+	 *                   {@link #DELIVER_EVERY_NTH_TICK} or {@link #DELIVER_SAMPLED})
+	 * @param interval   number of ticks for {@link #DELIVER_EVERY_NTH_TICK}, number of milliseconds for
+	 *                   {@link #DELIVER_SAMPLED} (ignored otherwise)
+	 * @param everyTick  {@code true} if {@link #DELIVER_EVERY_TICK} is allowed
+	 * @throws IllegalArgumentException if the delivery policy or interval are invalid
+	 */
+	public static void checkDelivery(int delivery, int interval, boolean everyTick) {
+		switch (delivery) {
+			case DELIVER_LATEST:
+				break;
+			case DELIVER_EVERY_TICK:
+				if (!everyTick) {
+					throw new IllegalArgumentException("Only statistics can be delivered for every tick");
+				}
+				break;
+			case DELIVER_EVERY_NTH_TICK:
+			case DELIVER_SAMPLED:
+				if (interval <= 0) {
+					throw new IllegalArgumentException("Invalid delivery interval " + interval);
+				}
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown delivery policy " + delivery);
+		}
+	}
+
+	/**
+	 * Notifies one observer on its own thread. After each tick the tick loop calls
+	 * {@link #tickFinished(long, long)}, which never blocks: if a notification is already pending the tick is
+	 * coalesced into it (the observer sees the most recent tick when it gets to run). The delivery policy decides
+	 * which ticks lead to a notification. An {@link ObserverWatchdog} demotes an observer whose notifications keep
+	 * exceeding the budget (see {@link #setObserverBudget(int)}).
+	 */
+	private abstract class ObserverDispatch implements Runnable {
+
+		/** The observer (to find this dispatch when unregistering the observer) */
+		final Object observer;
+
+		/**
+		 * Delivery policy ({@link #DELIVER_LATEST}, {@link #DELIVER_EVERY_TICK}, {@link #DELIVER_EVERY_NTH_TICK} or
+		 * {@link #DELIVER_SAMPLED}). Only changed by the thread of the {@link #executor} (after {@link #interval}).
+		 */
+		volatile int delivery;
+
+		/** Number of ticks or milliseconds between notifications (see {@link #delivery}) */
+		volatile int interval;
+
+		/**
+		 * Delivery policy the observer registered with (and gets back some time after a demotion, see
+		 * {@link #observerCalled(long)})
+		 */
+		final int registeredDelivery;
+
+		/** Interval the observer registered with (see {@link #registeredDelivery}) */
+		final int registeredInterval;
+
+		/** Watches how long the notifications of the observer take (only used by the thread of the {@link #executor}) */
+		private final ObserverWatchdog watchdog = new ObserverWatchdog();
+
+		/** Time (in milliseconds) of the most recent tick that led to a notification (see {@link #DELIVER_SAMPLED}) */
+		private long lastNotificationTime = Long.MIN_VALUE / 2;
+
+		/** Runs the notifications of the observer on a thread of its own */
+		final ExecutorService executor;
+
+		/** Flag whether a notification has been handed to the {@link #executor} but has not started yet */
+		final AtomicBoolean pending = new AtomicBoolean(false);
+
+		/**
+		 * Called by the tick loop after each tick: schedules a notification according to the delivery policy unless
+		 * one is pending already.
+		 *
+		 * @param tickNo number of the tick
+		 * @param now    current time in milliseconds
+		 */
+		final void tickFinished(long tickNo, long now) {
+			final int delivery = this.delivery;
+			switch (delivery) {
+				case DELIVER_EVERY_TICK:
+					captureTick();
+					break;
+				case DELIVER_EVERY_NTH_TICK:
+					if (tickNo % interval != 0) {
+						return;
+					}
+					break;
+				case DELIVER_SAMPLED:
+					if (now - lastNotificationTime < interval) {
+						return;
+					}
+					lastNotificationTime = now;
+					break;
+			}
+			if (pending.compareAndSet(false, true)) {
+				try {
+					executor.execute(this);
+				} catch (RejectedExecutionException e) {
+					// The observer has just been unregistered
+				}
+			}
+		}
+
+		/** Notifies the observer (on the thread of the {@link #executor}) */
+		@Override
+		final public void run() {
+			// Ticks finishing from now on need another notification
+			pending.set(false);
+			try {
+				notifyObserver();
+			} catch (RuntimeException e) {
+				Log.e("Wa-Tor", "Observer " + observer + " failed", e);
+			}
+		}
+
+		/**
+		 * Records how long a call of the observer took (see {@link #watchdog}) and demotes the observer if it has
+		 * exceeded its budget too often. A demoted observer whose calls have stayed within the budget of its
+		 * registered delivery policy long enough gets that policy back.
+		 *
+		 * @param start time (from {@link System#nanoTime()}) when the call started
+		 */
+		final void observerCalled(long start) {
+			final long duration = (System.nanoTime() - start) / 1000L;
+			final long budget = getObserverBudget(delivery, interval);
+			if (watchdog.notified(duration, budget * 1000L)) {
+				final int oldDelivery = delivery;
+				final int oldInterval = interval;
+				final int newDelivery = demoteDelivery(oldDelivery);
+				if (newDelivery == DELIVER_SAMPLED) {
+					interval = watchdog.getSampledInterval(oldDelivery == DELIVER_SAMPLED ? oldInterval : 0);
+				}
+				delivery = newDelivery;
+				Log.w("Wa-Tor", "Observer " + observer + " exceeded its budget of " + budget + " ms "
+						+ ObserverWatchdog.STRIKES + " times in a row (" + watchdog.getNotificationTimes()
+						+ " us): delivering " + describeDelivery(delivery, interval) + " instead of "
+						+ describeDelivery(oldDelivery, oldInterval));
+			} else if ((delivery != registeredDelivery || interval != registeredInterval)
+					&& watchdog.recovered(duration, getObserverBudget(registeredDelivery, registeredInterval) * 1000L)) {
+				final int oldDelivery = delivery;
+				final int oldInterval = interval;
+				interval = registeredInterval;
+				delivery = registeredDelivery;
+				Log.i("Wa-Tor", "Observer " + observer + " stayed within its budget: delivering "
+						+ describeDelivery(delivery, interval) + " again instead of "
+						+ describeDelivery(oldDelivery, oldInterval));
+			}
+		}
+
+		/**
+		 * Called by the tick loop after each tick for {@link #DELIVER_EVERY_TICK}: stores what the observer needs to
+		 * learn about the tick
+		 */
+		void captureTick() {
+		}
+
+		/**
+		 * Notifies the observer of the most recent tick (or of all ticks captured with {@link #captureTick()} since
+		 * the last notification). Each call of the observer must be timed with {@link #observerCalled(long)}.
+		 */
+		abstract void notifyObserver();
+
+		/**
+		 * Creates a new dispatch with a thread of its own.
+		 *
+		 * @param observer observer to notify
+		 * @param delivery delivery policy (see {@link #delivery})
+		 * @param interval number of ticks or milliseconds between notifications (see {@link #interval})
+		 */
+		ObserverDispatch(Object observer, int delivery, int interval) {
+			this.observer = observer;
+			this.delivery = delivery;
+			this.interval = interval;
+			this.registeredDelivery = delivery;
+			this.registeredInterval = interval;
+			final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, OBSERVER_THREAD_KEEP_ALIVE,
+					TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), OBSERVER_THREAD_FACTORY);
+			// An idle thread ends (and is started again for the next notification), so a dispatch nobody shuts down
+			// does not keep its thread (and with it this runnable and the observer) alive forever
+			executor.allowCoreThreadTimeOut(true);
+			this.executor = executor;
+		}
+
+	}
+
+	/** Time (in milliseconds) after which an idle thread of an {@link ObserverDispatch} ends */
+	private static final long OBSERVER_THREAD_KEEP_ALIVE = 5000L;
+
+	/** Creates the (daemon) threads that notify the observers */
+	private static final ThreadFactory OBSERVER_THREAD_FACTORY = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Wa-Tor observer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	/** Delivers the statistics of a tick to a {@link WorldStatisticsObserver} */
+	private final class StatisticsDispatch extends ObserverDispatch {
+
+		/** The observer */
+		private final WorldStatisticsObserver statisticsObserver;
+
+		/** Statistics handed to the observer (reused for each notification unless delivering every tick) */
+		private final Simulator.TickStatistics statistics = new Simulator.TickStatistics();
+
+		/**
+		 * Statistics of the ticks captured for {@link #DELIVER_EVERY_TICK} that have not been delivered yet (the tick
+		 * thread produces, the observer thread consumes)
+		 */
+		private final FrameQueue<Simulator.TickStatistics> capturedStatistics =
+				new FrameQueue<Simulator.TickStatistics>(STATISTICS_BACKLOG);
+
+		/**
+		 * Statistics objects that can be reused by {@link #captureTick()} (the observer thread produces, the tick
+		 * thread consumes). All {@link #STATISTICS_BACKLOG} objects are allocated up front, so the backlog is full
+		 * when this queue is empty.
+		 */
+		private final FrameQueue<Simulator.TickStatistics> freeStatistics =
+				new FrameQueue<Simulator.TickStatistics>(STATISTICS_BACKLOG);
+
+		/** Number of ticks dropped since the last captured tick (only used by the tick thread) */
+		private int droppedTicks = 0;
+
+		@Override
+		void captureTick() {
+			final Simulator.TickStatistics tickStatistics = freeStatistics.poll();
+			if (tickStatistics == null) {
+				// The observer is too far behind
+				droppedTicks++;
+				return;
+			}
+			simulator.getTickStatistics(tickStatistics);
+			tickStatistics.setDroppedTicks(droppedTicks);
+			droppedTicks = 0;
+			capturedStatistics.offer(tickStatistics);
+		}
+
+		@Override
+		void notifyObserver() {
+			Simulator.TickStatistics tickStatistics;
+			if (delivery != DELIVER_EVERY_TICK) {
+				// Not (or no longer) delivering every tick: drop the statistics captured before a demotion
+				while ((tickStatistics = capturedStatistics.poll()) != null) {
+					freeStatistics.offer(tickStatistics);
+				}
+				simulator.getTickStatistics(statistics);
+				final long start = System.nanoTime();
+				statisticsObserver.statisticsUpdated(statistics);
+				observerCalled(start);
+				return;
+			}
+			while (delivery == DELIVER_EVERY_TICK && (tickStatistics = capturedStatistics.poll()) != null) {
+				final long start = System.nanoTime();
+				statisticsObserver.statisticsUpdated(tickStatistics);
+				freeStatistics.offer(tickStatistics);
+				observerCalled(start);
+			}
+		}
+
+		/**
+		 * Creates a new dispatch for a statistics observer.
+		 *
+		 * @param observer observer to notify
+		 * @param delivery delivery policy (see {@link #delivery})
+		 * @param interval number of ticks or milliseconds between notifications (see {@link #interval})
+		 */
+		StatisticsDispatch(WorldStatisticsObserver observer, int delivery, int interval) {
+			super(observer, delivery, interval);
+			this.statisticsObserver = observer;
+			for (int no = 0; no < STATISTICS_BACKLOG; no++) {
+				freeStatistics.offer(new Simulator.TickStatistics());
+			}
+		}
+
+	}
+
 	/** The simulator that should be ticked */
 	private final Simulator simulator;
 
+	/** Time budget (in milliseconds) of a notification of an observer (see {@link ObserverWatchdog}) */
+	private volatile int observerBudget = DEFAULT_OBSERVER_BUDGET;
+
+	/** Number of ticks calculated by this runnable */
+	private long tickNo = 0;
+
 	/** Keeps track of how long on average it took to calculate one tick */
 	private final RollingAverage tickDuration = new RollingAverage();
 
@@ -66,25 +443,17 @@ public class SimulatorRunnable implements Runnable {
 	private Thread simulatorTickThread;
 
 	/**
-	 * A list of objects that want to be notified of a finished tick via the {@link SimulatorRunnableObserver}
-	 * interface.
+	 * The {@link ObserverDispatch}es of all objects that want to be notified of a finished tick via the
+	 * {@link SimulatorRunnableObserver} or the {@link WorldStatisticsObserver} interface.
 	 *
-	 * Observers can be added with {@link #registerSimulatorRunnableObserver(SimulatorRunnableObserver)} and removed
-	 * with {@link #unregisterSimulatorObserver(SimulatorRunnableObserver)}.
-	 */
-	private SimulatorRunnableObserver simulatorObservers[] = new SimulatorRunnableObserver[4];
-
-	/**
-	 * Stores the number of observers stored in {@link #simulatorObservers}. Note that elements of that array can be
-	 * unused
-	 */
-	private int simulatorObserverCount = 0;
-
-	/**
-	 * A mutex on which we need to synchronize whenever we access the {@link #simulatorObservers}
-	 * (adding, removing or iterating over them)
+	 * The array is never modified: registering (see {@link #registerSimulatorRunnableObserver(SimulatorRunnableObserver)}
+	 * and {@link #registerStatisticsObserver(WorldStatisticsObserver)}) and unregistering (see
+	 * {@link #unregisterSimulatorObserver(SimulatorRunnableObserver)} and
+	 * {@link #unregisterStatisticsObserver(WorldStatisticsObserver)}) replaces it with a copy, so the tick loop can
+	 * iterate over it without a lock.
 	 */
-	final private Object simulatorObserverMutex = new Object();
+	private final AtomicReference<ObserverDispatch[]> observerDispatches =
+			new AtomicReference<ObserverDispatch[]>(new ObserverDispatch[0]);
 
 	/** @return average frame rate of the calculation of simulator ticks */
 	final public long getAvgFps() {
@@ -96,20 +465,82 @@ public class SimulatorRunnable implements Runnable {
 	}
 
 	/**
-	 * Add a new {@link SimulatorRunnableObserver}. The new observer will be notified whenever a tick completes.
+	 * Adds a dispatch to {@link #observerDispatches}.
+	 *
+	 * @param dispatch new dispatch
+	 */
+	private void addObserverDispatch(ObserverDispatch dispatch) {
+		ObserverDispatch[] dispatches;
+		ObserverDispatch[] newDispatches;
+		do {
+			dispatches = observerDispatches.get();
+			newDispatches = new ObserverDispatch[dispatches.length + 1];
+			System.arraycopy(dispatches, 0, newDispatches, 0, dispatches.length);
+			newDispatches[dispatches.length] = dispatch;
+		} while (!observerDispatches.compareAndSet(dispatches, newDispatches));
+	}
+
+	/**
+	 * Removes the dispatch of an observer from {@link #observerDispatches} and shuts down its thread. A notification
+	 * that is already running is finished.
+	 *
+	 * @param observer observer to remove
+	 */
+	private void removeObserverDispatch(Object observer) {
+		ObserverDispatch[] dispatches;
+		ObserverDispatch[] newDispatches;
+		ObserverDispatch gone;
+		do {
+			dispatches = observerDispatches.get();
+			gone = null;
+			int goneNo = 0;
+			while (goneNo < dispatches.length && gone == null) {
+				if (dispatches[goneNo].observer == observer) {
+					gone = dispatches[goneNo];
+				} else {
+					goneNo++;
+				}
+			}
+			if (gone == null) {
+				return;
+			}
+			newDispatches = new ObserverDispatch[dispatches.length - 1];
+			System.arraycopy(dispatches, 0, newDispatches, 0, goneNo);
+			System.arraycopy(dispatches, goneNo + 1, newDispatches, goneNo, newDispatches.length - goneNo);
+		} while (!observerDispatches.compareAndSet(dispatches, newDispatches));
+		gone.executor.shutdown();
+	}
+
+	/**
+	 * Add a new {@link SimulatorRunnableObserver}. The new observer will be notified (on a thread of its own)
+	 * whenever a tick completes; ticks it has not caught up with are coalesced (see {@link #DELIVER_LATEST}).
 	 *
 	 * @param newObserver new observer
 	 */
 	public void registerSimulatorRunnableObserver(SimulatorRunnableObserver newObserver) {
-		synchronized(simulatorObserverMutex) {
-			if (simulatorObservers.length == simulatorObserverCount - 1) {
-				// Time to reallocate
-				SimulatorRunnableObserver[] newObservers = new SimulatorRunnableObserver[simulatorObservers.length * 2];
-				System.arraycopy(simulatorObservers, 0, newObservers, 0, simulatorObservers.length);
-				simulatorObservers = newObservers;
+		registerSimulatorRunnableObserver(newObserver, DELIVER_LATEST, 0);
+	}
+
+	/**
+	 * Add a new {@link SimulatorRunnableObserver} with a delivery policy. The new observer will be notified (on a
+	 * thread of its own) as the delivery policy asks for.
+	 *
+	 * @param newObserver new observer
+	 * @param delivery    delivery policy ({@link #DELIVER_LATEST}, {@link #DELIVER_EVERY_NTH_TICK} or
+	 *                    {@link #DELIVER_SAMPLED})
+	 * @param interval    number of ticks for {@link #DELIVER_EVERY_NTH_TICK}, number of milliseconds for
+	 *                    {@link #DELIVER_SAMPLED} (ignored otherwise)
+	 */
+	public void registerSimulatorRunnableObserver(final SimulatorRunnableObserver newObserver, int delivery, int interval) {
+		checkDelivery(delivery, interval, false /* everyTick */);
+		addObserverDispatch(new ObserverDispatch(newObserver, delivery, interval) {
+			@Override
+			void notifyObserver() {
+				final long start = System.nanoTime();
+				newObserver.simulatorUpdated(simulator);
+				observerCalled(start);
 			}
-			simulatorObservers[simulatorObserverCount++] = newObserver;
-		}
+		});
 	}
 
 	/**
@@ -118,17 +549,84 @@ public class SimulatorRunnable implements Runnable {
 	 * @param goneObserver observer to remove
 	 */
 	public void unregisterSimulatorObserver(SimulatorRunnableObserver goneObserver) {
-		synchronized(simulatorObserverMutex) {
-			for (int no = 0; no < simulatorObservers.length; no++) {
-				if (simulatorObservers[no] == goneObserver) {
-					System.arraycopy(simulatorObservers, no + 1, simulatorObservers, no, simulatorObserverCount - 1 - no);
-					simulatorObservers[simulatorObserverCount - 1] = null;
-					simulatorObserverCount--;
-				}
-			}
+		removeObserverDispatch(goneObserver);
+	}
+
+	/**
+	 * Add a new {@link WorldStatisticsObserver}. The new observer receives the statistics of every tick (on a thread
+	 * of its own, see {@link #DELIVER_EVERY_TICK}). Delivering the statistics does not copy the world.
+	 *
+	 * @param newObserver new observer
+	 */
+	public void registerStatisticsObserver(WorldStatisticsObserver newObserver) {
+		registerStatisticsObserver(newObserver, DELIVER_EVERY_TICK, 0);
+	}
+
+	/**
+	 * Add a new {@link WorldStatisticsObserver} with a delivery policy. The new observer receives statistics (on a
+	 * thread of its own) as the delivery policy asks for.
+	 *
+	 * @param newObserver new observer
+	 * @param delivery    delivery policy ({@link #DELIVER_LATEST}, {@link #DELIVER_EVERY_TICK},
+	 *                    {@link #DELIVER_EVERY_NTH_TICK} or {@link #DELIVER_SAMPLED})
+	 * @param interval    number of ticks for {@link #DELIVER_EVERY_NTH_TICK}, number of milliseconds for
+	 *                    {@link #DELIVER_SAMPLED} (ignored otherwise)
+	 */
+	public void registerStatisticsObserver(WorldStatisticsObserver newObserver, int delivery, int interval) {
+		checkDelivery(delivery, interval, true /* everyTick */);
+		addObserverDispatch(new StatisticsDispatch(newObserver, delivery, interval));
+	}
+
+	/**
+	 * Remove a {@link WorldStatisticsObserver}. The observer will no longer receive the statistics of each tick.
+	 *
+	 * @param goneObserver observer to remove
+	 */
+	public void unregisterStatisticsObserver(WorldStatisticsObserver goneObserver) {
+		removeObserverDispatch(goneObserver);
+	}
+
+	/**
+	 * Removes all observers and shuts down their threads (notifications that are already running are finished).
+	 * Should be called when this runnable is no longer needed; ticking is not affected (see {@link #stopTicking()}).
+	 */
+	public void shutdown() {
+		final ObserverDispatch[] dispatches = observerDispatches.getAndSet(new ObserverDispatch[0]);
+		for (ObserverDispatch dispatch : dispatches) {
+			dispatch.executor.shutdown();
 		}
 	}
 
+	/** @return time budget (in milliseconds) of a notification of an observer */
+	public int getObserverBudget() {
+		return observerBudget;
+	}
+
+	/**
+	 * Returns the time budget of a notification of an observer with a delivery policy. A sampled observer may spend up
+	 * to a quarter of its interval in a notification (so that it is not demoted again and again once it has been
+	 * sampled with an interval that suits it, see {@link ObserverWatchdog#getSampledInterval(int)}).
+	 *
+	 * @param delivery delivery policy of the observer
+	 * @param interval interval of the delivery policy
+	 * @return time budget (in milliseconds)
+	 */
+	public int getObserverBudget(int delivery, int interval) {
+		final int budget = observerBudget;
+		return delivery == DELIVER_SAMPLED ? Math.max(budget, interval / 4) : budget;
+	}
+
+	/**
+	 * Changes the time budget of a notification of an observer. Observers whose notifications exceed the budget
+	 * {@link ObserverWatchdog#STRIKES} times in a row are notified less often from then on (see
+	 * {@link #demoteDelivery(int)}).
+	 *
+	 * @param newObserverBudget new time budget (in milliseconds)
+	 */
+	public void setObserverBudget(int newObserverBudget) {
+		observerBudget = newObserverBudget;
+	}
+
 	/** @return desired frame rate */
 	public int getTargetFps() {
 		return targetFps;
@@ -182,10 +680,10 @@ public class SimulatorRunnable implements Runnable {
 			while (Thread.currentThread() == simulatorTickThread) {
 				long startUpdate = System.currentTimeMillis();
 				simulator.tick(threads);
-				synchronized(simulatorObserverMutex) {
-					for (int observerNo = 0; observerNo < simulatorObserverCount; observerNo++) {
-						simulatorObservers[observerNo].simulatorUpdated(simulator);
-					}
+				tickNo++;
+				final long tickFinished = System.currentTimeMillis();
+				for (ObserverDispatch dispatch : observerDispatches.get()) {
+					dispatch.tickFinished(tickNo, tickFinished);
 				}
 				long duration = System.currentTimeMillis() - startUpdate;
 				tickDuration.add(duration);
@@ -0,0 +1,34 @@
+/*
+ * WorldDeltaObserver.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.dirkgassen.wator.simulator;
+
+/**
+ * Classes that wish to receive the cells that changed in each tick of a {@link Simulator} should implement this
+ * interface and register with {@link Simulator#addWorldDeltaObserver(WorldDeltaObserver)}.
+ */
+public interface WorldDeltaObserver {
+
+	/**
+	 * Called after each tick of a {@link Simulator} on the thread that called {@link Simulator#tick(int)}. The delta is
+	 * only valid during this call unless the observer calls {@link Simulator.WorldDelta#retain()}.
+	 *
+	 * @param delta {@link com.dirkgassen.wator.simulator.Simulator.WorldDelta} with the cells that changed
+	 */
+	void worldChanged(Simulator.WorldDelta delta);
+
+}
@@ -19,17 +19,29 @@ package com.dirkgassen.wator.simulator;
 
 /**
  * This interface should be implemented by classes who run a {@link Simulator}. It provides a common interface to
- * allow for registering/unregistering a {@link WorldObserver}.
+ * allow for registering/unregistering a {@link WorldObserver} (which receives a snapshot of the world) or a
+ * {@link WorldStatisticsObserver} (which only receives the statistics of each tick).
  */
 public interface WorldHost {
 
 	/**
-	 * Register a new {@link WorldObserver}.
+	 * Register a new {@link WorldObserver} that is notified of the most recent tick.
 	 *
 	 * @param newObserver new observer
 	 */
 	void registerSimulatorObserver(WorldObserver newObserver);
 
+	/**
+	 * Register a new {@link WorldObserver} with a delivery policy.
+	 *
+	 * @param newObserver new observer
+	 * @param delivery    delivery policy ({@link SimulatorRunnable#DELIVER_LATEST},
+	 *                    {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK} or {@link SimulatorRunnable#DELIVER_SAMPLED})
+	 * @param interval    number of ticks for {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK}, number of milliseconds
+	 *                    for {@link SimulatorRunnable#DELIVER_SAMPLED} (ignored otherwise)
+	 */
+	void registerSimulatorObserver(WorldObserver newObserver, int delivery, int interval);
+
 	/**
 	 * Unregister a {@link WorldObserver}
 	 *
@@ -37,5 +49,30 @@ public interface WorldHost {
 	 */
 	void unregisterSimulatorObserver(WorldObserver goneObserver);
 
+	/**
+	 * Register a new {@link WorldStatisticsObserver} that receives the statistics of every tick.
+	 *
+	 * @param newObserver new observer
+	 */
+	void registerStatisticsObserver(WorldStatisticsObserver newObserver);
+
+	/**
+	 * Register a new {@link WorldStatisticsObserver} with a delivery policy.
+	 *
+	 * @param newObserver new observer
+	 * @param delivery    delivery policy ({@link SimulatorRunnable#DELIVER_LATEST},
+	 *                    {@link SimulatorRunnable#DELIVER_EVERY_TICK}, {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK}
+	 *                    or {@link SimulatorRunnable#DELIVER_SAMPLED})
+	 * @param interval    number of ticks for {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK}, number of milliseconds
+	 *                    for {@link SimulatorRunnable#DELIVER_SAMPLED} (ignored otherwise)
+	 */
+	void registerStatisticsObserver(WorldStatisticsObserver newObserver, int delivery, int interval);
+
+	/**
+	 * Unregister a {@link WorldStatisticsObserver}
+	 *
+	 * @param goneObserver observer to be unregistered
+	 */
+	void unregisterStatisticsObserver(WorldStatisticsObserver goneObserver);
 
 }
@@ -24,10 +24,10 @@ package com.dirkgassen.wator.simulator;
 public class WorldParameters {
 
 	/** Width of a world */
-	private short width = 300;
+	private int width = 300;
 
 	/** Height of a height */
-	private short height = 200;
+	private int height = 200;
 
 	/** Initial number of fish in a world */
 	private int initialFishCount = 1000;
@@ -44,13 +44,22 @@ public class WorldParameters {
 	/** Ticks a shark can go without eating a fish before it dies */
 	private short sharkStarveTime = 12;
 
+	/** Flag whether the described world is seeded (see {@link #setSeed(long)}) */
+	private boolean seeded = false;
+
+	/** Seed of the described world (only used if {@link #seeded}) */
+	private long seed = 0;
+
+	/** Flag whether the cells of the described world are stored outside of the Java heap */
+	private boolean offHeapStorage = false;
+
 	/** @return width of the described world */
-	public short getWidth() {
+	public int getWidth() {
 		return width;
 	}
 
 	/** @return height of the described world */
-	public short getHeight() {
+	public int getHeight() {
 		return height;
 	}
 
@@ -79,13 +88,28 @@ public class WorldParameters {
 		return sharkStarveTime;
 	}
 
+	/** @return {@code true} if the described world is seeded; {@code false} otherwise */
+	public boolean isSeeded() {
+		return seeded;
+	}
+
+	/** @return seed of the described world (only meaningful if {@link #isSeeded()}) */
+	public long getSeed() {
+		return seed;
+	}
+
+	/** @return {@code true} if the cells of the described world are stored outside of the Java heap */
+	public boolean isOffHeapStorage() {
+		return offHeapStorage;
+	}
+
 	/**
 	 * Sets the width of the described world.
 	 *
 	 * @param width new width
 	 * @return {@code this}
 	 */
-	public WorldParameters setWidth(short width) {
+	public WorldParameters setWidth(int width) {
 		this.width = width;
 		return this;
 	}
@@ -96,7 +120,7 @@ public class WorldParameters {
 	 * @param height new height
 	 * @return {@code this}
 	 */
-	public WorldParameters setHeight(short height) {
+	public WorldParameters setHeight(int height) {
 		this.height = height;
 		return this;
 	}
@@ -156,13 +180,62 @@ public class WorldParameters {
 		return this;
 	}
 
+	/**
+	 * Makes the described world seeded. All random decisions of a seeded world (including the initial placement of
+	 * fish and shark) are derived from the seed. Two seeded worlds with the same parameters develop identically,
+	 * whatever the number of threads used to tick them.
+	 *
+	 * @param seed seed of the world
+	 * @return {@code this}
+	 */
+	public WorldParameters setSeed(long seed) {
+		this.seed = seed;
+		this.seeded = true;
+		return this;
+	}
+
+	/**
+	 * Sets whether the cells of the described world are stored outside of the Java heap (in direct buffers). This is
+	 * meant for huge worlds: their cells do not put strain on the garbage collector and are not limited by the heap
+	 * size. Accessing the cells is a bit slower, though. Snapshots of the world are kept on the heap either way; they
+	 * only hold the tiles of the world somebody is looking at.
+	 *
+	 * @param offHeapStorage {@code true} to store the cells outside of the Java heap
+	 * @return {@code this}
+	 */
+	public WorldParameters setOffHeapStorage(boolean offHeapStorage) {
+		this.offHeapStorage = offHeapStorage;
+		return this;
+	}
+
 	/**
 	 * Verify the sanity of the parameters. Throws {@link IllegalArgumentException} if the parameters are not
 	 * consistent.
+	 *
+	 * The size of a world is limited by {@link Simulator#MAX_WORLD_WIDTH} and {@link Simulator#MAX_WORLD_HEIGHT}: the
+	 * cells are numbered with a {@code long}, so the largest world has 2^34 cells. A world needs one byte per cell
+	 * for the marks of the processed cells plus one, two or four bytes per cell (see
+	 * {@link Simulator#getCellLayout()}) for each of the two copies of the world, i.e., at least 3 GB per billion
+	 * cells. A world with more cells than fit into an array (about 2^31) must use
+	 * {@link #setOffHeapStorage(boolean)}, which also keeps all of it off the Java heap.
 	 */
 	protected void verify() {
-		if (initialFishCount + initialSharkCount > width * height) {
-			throw new IllegalArgumentException("Can't have " + initialFishCount + " fish and " + initialSharkCount + " sharks in a world with " + (width * height) + " cells");
+		if (width <= 0 || width > Simulator.MAX_WORLD_WIDTH) {
+			throw new IllegalArgumentException("World width " + width + " must be positive (max " + Simulator.MAX_WORLD_WIDTH + ")");
+		}
+		if (height <= 0 || height > Simulator.MAX_WORLD_HEIGHT) {
+			throw new IllegalArgumentException("World height " + height + " must be positive (max " + Simulator.MAX_WORLD_HEIGHT + ")");
+		}
+		final long cellCount = (long) width * height;
+		if (!offHeapStorage && cellCount > CellStore.MAX_HEAP_SIZE) {
+			throw new IllegalArgumentException("A world with " + cellCount + " cells must be stored outside of the Java heap (max " + CellStore.MAX_HEAP_SIZE + " cells on the heap)");
+		}
+		if (initialFishCount < 0 || initialSharkCount < 0) {
+			throw new IllegalArgumentException("Can't have a negative number of fish (" + initialFishCount + ") or sharks (" + initialSharkCount + ")");
+		}
+		// Note: the sum of the counts may overflow an int
+		if ((long) initialFishCount + initialSharkCount > cellCount) {
+			throw new IllegalArgumentException("Can't have " + initialFishCount + " fish and " + initialSharkCount + " sharks in a world with " + cellCount + " cells");
 		}
 		if (fishBreedTime > Simulator.MAX_FISH_BREED_TIME) {
 			throw new IllegalArgumentException("Fish breed time " + fishBreedTime + " too large (max " + Simulator.MAX_FISH_BREED_TIME + ")");
@@ -0,0 +1,37 @@
+/*
+ * WorldStatisticsObserver.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.dirkgassen.wator.simulator;
+
+/**
+ * Classes that are only interested in the statistics of a {@link Simulator} (like the number of fish and shark)
+ * should implement this interface instead of {@link WorldObserver}. Delivering the statistics does not need a
+ * snapshot of the world.
+ */
+public interface WorldStatisticsObserver {
+
+	/**
+	 * Called after a tick of a {@link Simulator}. Depending on the delivery policy the observer registered with (see
+	 * {@link SimulatorRunnable#DELIVER_EVERY_TICK}) it receives the statistics of every tick or ticks that finish
+	 * while the observer is still busy with a previous one are coalesced. The statistics object is reused: it is only
+	 * valid during this call.
+	 *
+	 * @param statistics {@link com.dirkgassen.wator.simulator.Simulator.TickStatistics} of the tick
+	 */
+	void statisticsUpdated(Simulator.TickStatistics statistics);
+
+}
@@ -19,15 +19,19 @@ package com.dirkgassen.wator.ui.activity;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.dirkgassen.wator.R;
 import com.dirkgassen.wator.ui.fragment.NewWorld;
 import com.dirkgassen.wator.ui.view.RangeSlider;
+import com.dirkgassen.wator.utils.FrameQueue;
 import com.dirkgassen.wator.utils.RollingAverage;
+import com.dirkgassen.wator.simulator.ObserverWatchdog;
 import com.dirkgassen.wator.simulator.Simulator;
 import com.dirkgassen.wator.simulator.SimulatorRunnable;
 import com.dirkgassen.wator.simulator.WorldHost;
 import com.dirkgassen.wator.simulator.WorldObserver;
+import com.dirkgassen.wator.simulator.WorldStatisticsObserver;
 import com.dirkgassen.wator.simulator.WorldParameters;
 
 import android.annotation.SuppressLint;
@@ -65,6 +69,21 @@ import android.widget.TextView;
 
 /**
  * Main activity for the app.
+ * <p/>
+ * The world gets to the screen through a pipeline of stages, each running on its own thread so that the simulator
+ * calculates tick N+1 while tick N is rendered:
+ * <ol>
+ *     <li>tick: the {@link SimulatorRunnable} ticks the simulator</li>
+ *     <li>snapshot: {@link #simulatorUpdated(Simulator)} takes a snapshot of the world (on the observer thread of the
+ *     {@link SimulatorRunnable}; ticks finishing while it is busy are coalesced) and hands it to the
+ *     {@link #renderQueue}</li>
+ *     <li>render: the {@link #worldUpdateNotifierThread} takes the snapshot from the {@link #renderQueue} and
+ *     hands it to the {@link WorldObserver}s, which convert it to pixels</li>
+ *     <li>present: the {@link WorldObserver}s post their pixels to the UI thread</li>
+ * </ol>
+ * Frames are dropped so that the render stage always renders the newest world: a tick that finds the
+ * {@link #renderQueue} full takes no snapshot but sets {@link #renderFrameMissed}; the render stage then replaces the
+ * queued (older) snapshot with a snapshot of the current world.
  */
 // Adding the hamburger menu: followed this tutorial:
 //     http://codetheory.in/android-navigation-drawer/
@@ -236,14 +255,73 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	}
 
 
+	/** An observer registered with this activity together with its delivery policy */
+	static class ObserverSubscription {
+
+		/** The observer ({@link WorldObserver} or {@link WorldStatisticsObserver}) */
+		final Object observer;
+
+		/**
+		 * Delivery policy ({@link SimulatorRunnable#DELIVER_LATEST}, {@link SimulatorRunnable#DELIVER_EVERY_TICK},
+		 * {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK} or {@link SimulatorRunnable#DELIVER_SAMPLED}); changed
+		 * when the {@link #watchdog} demotes or promotes a {@link WorldObserver}
+		 */
+		int delivery;
+
+		/** Number of ticks or milliseconds between notifications (see {@link #delivery}) */
+		int interval;
+
+		/** Delivery policy the observer registered with */
+		final int registeredDelivery;
+
+		/** Interval the observer registered with */
+		final int registeredInterval;
+
+		/** Tick (or time in milliseconds) of the most recent notification of the observer */
+		long lastDelivery = Long.MIN_VALUE / 2;
+
+		/** Watches how long the notifications of a {@link WorldObserver} take */
+		final ObserverWatchdog watchdog = new ObserverWatchdog();
+
+		/**
+		 * Creates a new subscription.
+		 * @param observer observer
+		 * @param delivery delivery policy
+		 * @param interval number of ticks or milliseconds between notifications
+		 */
+		ObserverSubscription(Object observer, int delivery, int interval) {
+			this.observer = observer;
+			this.delivery = delivery;
+			this.interval = interval;
+			this.registeredDelivery = delivery;
+			this.registeredInterval = interval;
+		}
+
+		/** @return {@code true} if the observer is not notified with the policy it registered with */
+		boolean isDemoted() {
+			return delivery != registeredDelivery || interval != registeredInterval;
+		}
+
+		/** Gives the observer its registered delivery policy back */
+		void restoreRegisteredDelivery() {
+			delivery = registeredDelivery;
+			interval = registeredInterval;
+			lastDelivery = Long.MIN_VALUE / 2;
+		}
+
+	}
+
+	/** Maximum number of snapshots waiting for the render stage (see {@link #renderQueue}) */
+	private static final int RENDER_QUEUE_CAPACITY = 1;
+
 	/** Tag for the "new world" fragment */
 	private static final String NEW_WORLD_FRAGMENT_TAG = "New World";
 
 	/**
-	 * Set of {@link com.dirkgassen.wator.simulator.WorldObserver} objects that are notified whenever the simulator
-	 * ticked.
+	 * Set of {@link com.dirkgassen.wator.simulator.WorldObserver} objects (with their delivery policies) that are
+	 * notified whenever the simulator ticked.
 	 */
-	private WorldObserver worldObservers[] = new WorldObserver[4];
+	private ObserverSubscription worldObservers[] = new ObserverSubscription[4];
 
 	/**
 	 * Stores the number of observers stored in {@link #worldObservers}. Note that elements of that array can be
@@ -257,16 +335,57 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	 */
 	final private Object worldObserverMutex = new Object();
 
+	/**
+	 * Set of {@link WorldStatisticsObserver} objects (with their delivery policies) that receive the statistics of
+	 * the ticks. They do not need a snapshot of the world: they are registered with the {@link #simulatorRunnable},
+	 * which notifies each of them on a thread of its own.
+	 */
+	private ObserverSubscription statisticsObservers[] = new ObserverSubscription[4];
+
+	/**
+	 * Stores the number of observers stored in {@link #statisticsObservers}. Note that elements of that array can be
+	 * unused
+	 */
+	private int statisticsObserverCount = 0;
+
+	/**
+	 * A mutex on which we need to synchronize whenever we access the {@link #statisticsObservers} array
+	 * (adding, removing or iterating over them) or replace the {@link #simulatorRunnable}
+	 */
+	final private Object statisticsObserverMutex = new Object();
+
 
 	/** Simulator object that runs the world */
 	private Simulator simulator;
 
-	/** {@link java.lang.Runnable} for the thread that ticks the world */
-	private SimulatorRunnable simulatorRunnable;
+	/**
+	 * {@link java.lang.Runnable} for the thread that ticks the world. Volatile since it is replaced on the main thread
+	 * and read on the simulator and render threads.
+	 */
+	private volatile SimulatorRunnable simulatorRunnable;
 
-	/** Thread that updates the {@link #worldObservers} */
+	/** Thread that updates the {@link #worldObservers} (the render stage) */
 	private Thread worldUpdateNotifierThread;
 
+	/**
+	 * Snapshots of the world handed from the snapshot stage ({@link #simulatorUpdated(Simulator)}) to the render
+	 * stage ({@link #worldUpdateNotifierThread}). The producer must hold the monitor of this queue (there is only one
+	 * producer at a time even while the {@link #simulatorRunnable} is replaced).
+	 */
+	private final FrameQueue<Simulator.WorldInspector> renderQueue = new FrameQueue<Simulator.WorldInspector>(RENDER_QUEUE_CAPACITY);
+
+	/**
+	 * Flag whether a tick found the {@link #renderQueue} full, i.e., the snapshot in the queue is no longer the newest
+	 * world. Set by the snapshot stage and reset by the render stage, which then takes a snapshot itself.
+	 */
+	private final AtomicBoolean renderFrameMissed = new AtomicBoolean(false);
+
+	/**
+	 * A mutex the render stage holds while it consumes the {@link #renderQueue} (there is only one consumer at a
+	 * time even while an interrupted {@link #worldUpdateNotifierThread} is still finishing)
+	 */
+	final private Object renderStageMutex = new Object();
+
 	/** Keeps track of the average drawing time */
 	private RollingAverage drawingAverageTime;
 
@@ -309,33 +428,72 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	/** The FPS indicators will be colored with this color when the FPS is higher or equal to the desired FPS */
 	private int fpsOkColor;
 
-	/** Notifies all {@link #worldObservers} of a world change */
-	private void worldUpdated() {
+	/**
+	 * Records how long the notification of a {@link WorldObserver} took. Demotes the observer (see
+	 * {@link SimulatorRunnable#demoteDelivery(int)}) if it has exceeded the budget of the {@link #simulatorRunnable}
+	 * too often, so that it does not slow down the other observers. A demoted observer whose notifications have
+	 * stayed within the budget of its registered delivery policy long enough gets that policy back (see
+	 * {@link ObserverWatchdog#recovered(long, long)}).
+	 * @param subscription subscription of the observer
+	 * @param duration     duration of the notification (in microseconds)
+	 */
+	private void checkObserverBudget(ObserverSubscription subscription, long duration) {
+		final int budget = simulatorRunnable.getObserverBudget(subscription.delivery, subscription.interval);
+		if (subscription.watchdog.notified(duration, budget * 1000L)) {
+			final int oldDelivery = subscription.delivery;
+			final int oldInterval = subscription.interval;
+			subscription.interval = subscription.watchdog.getSampledInterval(oldDelivery == SimulatorRunnable.DELIVER_SAMPLED ? oldInterval : 0);
+			subscription.delivery = SimulatorRunnable.demoteDelivery(oldDelivery);
+			subscription.lastDelivery = System.currentTimeMillis();
+			Log.w("Wa-Tor", "World observer " + subscription.observer + " exceeded its budget of " + budget + " ms "
+					+ ObserverWatchdog.STRIKES + " times in a row (" + subscription.watchdog.getNotificationTimes()
+					+ " us): delivering " + SimulatorRunnable.describeDelivery(subscription.delivery, subscription.interval)
+					+ " instead of " + SimulatorRunnable.describeDelivery(oldDelivery, oldInterval));
+		} else if (subscription.isDemoted() && subscription.watchdog.recovered(duration,
+				simulatorRunnable.getObserverBudget(subscription.registeredDelivery, subscription.registeredInterval) * 1000L)) {
+			final int oldDelivery = subscription.delivery;
+			final int oldInterval = subscription.interval;
+			subscription.restoreRegisteredDelivery();
+			Log.i("Wa-Tor", "World observer " + subscription.observer + " stayed within its budget: delivering "
+					+ SimulatorRunnable.describeDelivery(subscription.delivery, subscription.interval) + " again instead of "
+					+ SimulatorRunnable.describeDelivery(oldDelivery, oldInterval));
+		}
+	}
+
+	/** @return {@code true} if there are {@link #worldObservers} */
+	private boolean hasWorldObservers() {
 		synchronized (worldObserverMutex) {
-			if (worldObserverCount > 0) {
-				Simulator.WorldInspector world = simulator.getWorldToPaint();
-				try {
-					for (int observerNo = 0; observerNo < worldObserverCount; observerNo++) {
-						worldObservers[observerNo].worldUpdated(world);
-						world.reset();
+			return worldObserverCount > 0;
+		}
+	}
+
+	/**
+	 * Notifies the {@link #worldObservers} of a world change (as their delivery policies ask for).
+	 * @param world snapshot of the world
+	 */
+	private void worldUpdated(Simulator.WorldInspector world) {
+		synchronized (worldObserverMutex) {
+			final long now = System.currentTimeMillis();
+			for (int observerNo = 0; observerNo < worldObserverCount; observerNo++) {
+				final ObserverSubscription subscription = worldObservers[observerNo];
+				if (subscription.delivery == SimulatorRunnable.DELIVER_SAMPLED) {
+					if (now - subscription.lastDelivery < subscription.interval) {
+						continue;
 					}
-					if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "Fish: " + world.getFishCount() + "; sharks: " + world.getSharkCount()); }
-					if (world.getSharkCount() == 0) {
-						simulatorRunnable.stopTicking();
+					subscription.lastDelivery = now;
+				} else if (subscription.delivery == SimulatorRunnable.DELIVER_EVERY_NTH_TICK) {
+					// Notify the observer if the world has passed another multiple of the interval
+					if (world.getTickCount() / subscription.interval == subscription.lastDelivery / subscription.interval) {
+						continue;
 					}
-				} finally {
-					world.release();
+					subscription.lastDelivery = world.getTickCount();
 				}
+				final long startNotification = System.nanoTime();
+				((WorldObserver) subscription.observer).worldUpdated(world);
+				world.reset();
+				checkObserverBudget(subscription, (System.nanoTime() - startNotification) / 1000L);
 			}
 		}
-		// Note: not synchronizing here, but rather a rudimentary check to avoid posting if it's not
-		// necessary. If the drawer opens while we are executing and one of these fields change to non-null
-		// then the frame rate will be update next time. If it's the other way around the updateFpsRunnable
-		// should synchronize and check again.
-		if (currentSimFps != null || currentDrawFps != null && nextFpsUpdate < System.currentTimeMillis()) {
-			handler.post(updateFpsRunnable);
-			nextFpsUpdate = System.currentTimeMillis() + 6000L;
-		}
 	}
 
 	/**
@@ -483,11 +641,10 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 			simulatorRunnable.stopTicking();
 		}
 		simulator = new Simulator(worldParameters);
-		simulatorRunnable = new SimulatorRunnable(simulator);
+		setSimulatorRunnable(new SimulatorRunnable(simulator));
 		if (targetFps >= 0) {
 			simulatorRunnable.setTargetFps(targetFps);
 		}
-		simulatorRunnable.registerSimulatorRunnableObserver(this);
 		startSimulatorThread();
 		hideNewWorldFragment();
 	}
@@ -511,65 +668,79 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	protected void onSaveInstanceState(Bundle outState) {
 		Simulator.WorldInspector world = simulator.getWorldToPaint();
 		try {
-			final int fishCount = world.getFishCount();
-			final int sharkCount = world.getSharkCount();
+			// Note: the worlds created in this activity have far fewer cells than an array can have
+			final int fishCount = (int) world.getFishCount();
+			final int sharkCount = (int) world.getSharkCount();
 			final short[] fishAge;
-			final short[] fishPosX;
-			final short[] fishPosY;
+			final int[] fishPosX;
+			final int[] fishPosY;
 			if (fishCount == 0) {
-				fishAge = fishPosX = fishPosY = null;
+				fishAge = null;
+				fishPosX = fishPosY = null;
 			} else {
 				fishAge = new short[fishCount];
-				fishPosX = new short[fishCount];
-				fishPosY = new short[fishCount];
+				fishPosX = new int[fishCount];
+				fishPosY = new int[fishCount];
 			}
 			final short[] sharkAge;
 			final short[] sharkHunger;
-			final short[] sharkPosX;
-			final short[] sharkPosY;
+			final int[] sharkPosX;
+			final int[] sharkPosY;
 			if (sharkCount == 0) {
-				sharkAge = sharkHunger = sharkPosX = sharkPosY = null;
+				sharkAge = sharkHunger = null;
+				sharkPosX = sharkPosY = null;
 			} else {
 				sharkAge = new short[sharkCount];
 				sharkHunger = new short[sharkCount];
-				sharkPosX = new short[sharkCount];
-				sharkPosY = new short[sharkCount];
-			}
-
-			int fishNo = 0;
-			int sharkNo = 0;
-			do {
-				if (world.isFish()) {
-					//noinspection ConstantConditions
-					fishAge[fishNo] = world.getFishAge();
-					//noinspection ConstantConditions
-					fishPosX[fishNo] = world.getCurrentX();
-					//noinspection ConstantConditions
-					fishPosY[fishNo++] = world.getCurrentY();
-				} else if (world.isShark()) {
-					//noinspection ConstantConditions
-					sharkAge[sharkNo] = world.getSharkAge();
-					//noinspection ConstantConditions
-					sharkHunger[sharkNo] = world.getSharkHunger();
-					//noinspection ConstantConditions
-					sharkPosX[sharkNo] = world.getCurrentX();
-					//noinspection ConstantConditions
-					sharkPosY[sharkNo++] = world.getCurrentY();
-				}
-			} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+				sharkPosX = new int[sharkCount];
+				sharkPosY = new int[sharkCount];
+			}
+
+			if (fishCount > 0) {
+				world.forEachFish(new Simulator.FishVisitor() {
+					private int fishNo = 0;
+
+					@Override
+					public void visitFish(long no, int x, int y, short age) {
+						//noinspection ConstantConditions
+						fishAge[fishNo] = age;
+						//noinspection ConstantConditions
+						fishPosX[fishNo] = x;
+						//noinspection ConstantConditions
+						fishPosY[fishNo++] = y;
+					}
+				});
+			}
+			if (sharkCount > 0) {
+				world.forEachShark(new Simulator.SharkVisitor() {
+					private int sharkNo = 0;
+
+					@Override
+					public void visitShark(long no, int x, int y, short age, short hunger) {
+						//noinspection ConstantConditions
+						sharkAge[sharkNo] = age;
+						//noinspection ConstantConditions
+						sharkHunger[sharkNo] = hunger;
+						//noinspection ConstantConditions
+						sharkPosX[sharkNo] = x;
+						//noinspection ConstantConditions
+						sharkPosY[sharkNo++] = y;
+					}
+				});
+			}
 			if (fishCount > 0) {
 				outState.putShortArray(WorldKeys.FISH_AGE_KEY, fishAge);
-				outState.putShortArray(WorldKeys.FISH_POSITIONS_X_KEY, fishPosX);
-				outState.putShortArray(WorldKeys.FISH_POSITIONS_Y_KEY, fishPosY);
+				outState.putIntArray(WorldKeys.FISH_POSITIONS_X_KEY, fishPosX);
+				outState.putIntArray(WorldKeys.FISH_POSITIONS_Y_KEY, fishPosY);
 			}
 			if (sharkCount > 0) {
 				outState.putShortArray(WorldKeys.SHARK_AGE_KEY, sharkAge);
 				outState.putShortArray(WorldKeys.SHARK_HUNGER_KEY, sharkHunger);
-				outState.putShortArray(WorldKeys.SHARK_POSITIONS_X_KEY, sharkPosX);
-				outState.putShortArray(WorldKeys.SHARK_POSITIONS_Y_KEY, sharkPosY);
+				outState.putIntArray(WorldKeys.SHARK_POSITIONS_X_KEY, sharkPosX);
+				outState.putIntArray(WorldKeys.SHARK_POSITIONS_Y_KEY, sharkPosY);
 			}
-			outState.putShort(WorldKeys.WORLD_WIDTH_KEY, world.getWorldWidth());
-			outState.putShort(WorldKeys.WORLD_HEIGHT_KEY, world.getWorldHeight());
+			outState.putInt(WorldKeys.WORLD_WIDTH_KEY, world.getWorldWidth());
+			outState.putInt(WorldKeys.WORLD_HEIGHT_KEY, world.getWorldHeight());
 			outState.putShort(WorldKeys.FISH_BREED_TIME_KEY, world.getFishBreedTime());
 			outState.putShort(WorldKeys.SHARK_BREED_TIME_KEY, world.getSharkBreedTime());
 			outState.putShort(WorldKeys.SHARK_STARVE_TIME_KEY, world.getSharkStarveTime());
@@ -704,8 +875,8 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 			);
 		} else {
 			WorldParameters parameters = new WorldParameters()
-					.setWidth(savedInstanceState.getShort(WorldKeys.WORLD_WIDTH_KEY))
-					.setHeight(savedInstanceState.getShort(WorldKeys.WORLD_HEIGHT_KEY))
+					.setWidth(savedInstanceState.getInt(WorldKeys.WORLD_WIDTH_KEY))
+					.setHeight(savedInstanceState.getInt(WorldKeys.WORLD_HEIGHT_KEY))
 					.setFishBreedTime(savedInstanceState.getShort(WorldKeys.FISH_BREED_TIME_KEY))
 					.setSharkBreedTime(savedInstanceState.getShort(WorldKeys.SHARK_BREED_TIME_KEY))
 					.setSharkStarveTime(savedInstanceState.getShort(WorldKeys.SHARK_STARVE_TIME_KEY))
@@ -714,9 +885,9 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 			simulator = new Simulator(parameters);
 			short[] fishAge = savedInstanceState.getShortArray(WorldKeys.FISH_AGE_KEY);
 			if (fishAge != null) {
-				short[] fishPosX = savedInstanceState.getShortArray(WorldKeys.FISH_POSITIONS_X_KEY);
+				int[] fishPosX = savedInstanceState.getIntArray(WorldKeys.FISH_POSITIONS_X_KEY);
 				if (fishPosX != null) {
-					short[] fishPosY = savedInstanceState.getShortArray(WorldKeys.FISH_POSITIONS_Y_KEY);
+					int[] fishPosY = savedInstanceState.getIntArray(WorldKeys.FISH_POSITIONS_Y_KEY);
 					if (fishPosY != null) {
 						for (int fishNo = 0; fishNo < fishAge.length; fishNo++) {
 							simulator.setFish(fishPosX[fishNo], fishPosY[fishNo], fishAge[fishNo]);
@@ -728,9 +899,9 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 			if (sharkAge != null) {
 				short[] sharkHunger = savedInstanceState.getShortArray(WorldKeys.SHARK_HUNGER_KEY);
 				if (sharkHunger != null) {
-					short[] sharkPosX = savedInstanceState.getShortArray(WorldKeys.SHARK_POSITIONS_X_KEY);
+					int[] sharkPosX = savedInstanceState.getIntArray(WorldKeys.SHARK_POSITIONS_X_KEY);
 					if (sharkPosX != null) {
-						short[] sharkPosY = savedInstanceState.getShortArray(WorldKeys.SHARK_POSITIONS_Y_KEY);
+						int[] sharkPosY = savedInstanceState.getIntArray(WorldKeys.SHARK_POSITIONS_Y_KEY);
 						if (sharkPosY != null) {
 							for (int sharkNo = 0; sharkNo < sharkAge.length; sharkNo++) {
 								simulator.setShark(sharkPosX[sharkNo], sharkPosY[sharkNo], sharkAge[sharkNo], sharkHunger[sharkNo]);
@@ -752,11 +923,10 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 
 		}
 
-		simulatorRunnable = new SimulatorRunnable(simulator);
+		setSimulatorRunnable(new SimulatorRunnable(simulator));
 		if (savedInstanceState != null && savedInstanceState.containsKey(WorldKeys.TARGET_FPS_KEY)) {
 			simulatorRunnable.setTargetFps(savedInstanceState.getInt(WorldKeys.TARGET_FPS_KEY));
 		}
-		simulatorRunnable.registerSimulatorRunnableObserver(this);
 
 		drawerLayout = (DrawerLayout) findViewById(R.id.drawer_layout);
 		final ListView drawerList = (ListView) findViewById(R.id.drawer_commands);
@@ -861,12 +1031,21 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 			@Override
 			public void run() {
 				if (Log.isLoggable("Wa-Tor", Log.DEBUG)) { Log.d("Wa-Tor", "Entering world update notifier thread"); }
+				// Start with the current world (the simulator might not be ticking)
+				Simulator.WorldInspector world = hasWorldObservers() ? simulator.getWorldToPaint() : null;
 				try {
 					long lastUpdateFinished = 0;
 					while (Thread.currentThread() == worldUpdateNotifierThread) {
 						long startUpdate = System.currentTimeMillis();
 						if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "WorldUpdateNotifierThread: Notifying observers of world update"); }
-						worldUpdated();
+						if (world != null) {
+							try {
+								worldUpdated(world);
+							} finally {
+								world.release();
+								world = null;
+							}
+						}
 						if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "WorldUpdateNotifierThread: Notifying observers took " + (System.currentTimeMillis() - startUpdate) + " ms"); }
 						long now = System.currentTimeMillis();
 						if (lastUpdateFinished > 0 && drawingAverageTime != null) {
@@ -875,8 +1054,14 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 						}
 						lastUpdateFinished = now;
 						if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "WorldUpdateNotifierThread: Waiting for next update"); }
-						synchronized (this) {
-							wait();
+						synchronized (renderStageMutex) {
+							world = renderQueue.take();
+						}
+						if (renderFrameMissed.getAndSet(false)) {
+							// The simulator ticked again while the snapshot was waiting: render the newest world
+							world.release();
+							world = simulator.getWorldToPaint();
+							if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "WorldUpdateNotifierThread: Dropping a frame"); }
 						}
 					}
 				} catch(InterruptedException e){
@@ -885,6 +1070,15 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 						worldUpdateNotifierThread = null;
 					}
 				}
+				if (world != null) {
+					world.release();
+				}
+				synchronized (renderStageMutex) {
+					// Give up the snapshots nobody is going to render
+					while ((world = renderQueue.poll()) != null) {
+						world.release();
+					}
+				}
 				if (Log.isLoggable("Wa-Tor", Log.DEBUG)) { Log.d("Wa-Tor", "Exiting world update notifier thread"); }
 			}
 		};
@@ -901,6 +1095,34 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 		}
 	}
 
+	/**
+	 * Replaces the {@link #simulatorRunnable}: moves this activity (as {@link SimulatorRunnable.SimulatorRunnableObserver})
+	 * and the {@link #statisticsObservers} from the previous runnable to the new one.
+	 * @param newRunnable new simulator runnable
+	 */
+	private void setSimulatorRunnable(SimulatorRunnable newRunnable) {
+		synchronized (statisticsObserverMutex) {
+			if (simulatorRunnable != null) {
+				simulatorRunnable.unregisterSimulatorObserver(this);
+				for (int observerNo = 0; observerNo < statisticsObserverCount; observerNo++) {
+					simulatorRunnable.unregisterStatisticsObserver((WorldStatisticsObserver) statisticsObservers[observerNo].observer);
+				}
+			}
+			simulatorRunnable = newRunnable;
+			simulatorRunnable.registerSimulatorRunnableObserver(this);
+			synchronized (worldObserverMutex) {
+				// A new world (e.g., with every tile to paint at first) deserves a fresh look at the observers
+				for (int observerNo = 0; observerNo < worldObserverCount; observerNo++) {
+					worldObservers[observerNo].restoreRegisteredDelivery();
+				}
+			}
+			for (int observerNo = 0; observerNo < statisticsObserverCount; observerNo++) {
+				final ObserverSubscription subscription = statisticsObservers[observerNo];
+				simulatorRunnable.registerStatisticsObserver((WorldStatisticsObserver) subscription.observer, subscription.delivery, subscription.interval);
+			}
+		}
+	}
+
 	/** Starts the simulator thread with our {@link #simulatorRunnable}. */
 	private void startSimulatorThread() {
 		Thread simulatorThread = new Thread(simulatorRunnable, getString(R.string.simulatorThreadName));
@@ -922,18 +1144,47 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	}
 
 	/**
-	 * Add another {@link WorldObserver} to our list of observers.
+	 * The activity is destroyed (e.g., when the device is rotated). Shut down the observer threads of the
+	 * {@link #simulatorRunnable}: a new activity creates a runnable of its own.
+	 */
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		synchronized (statisticsObserverMutex) {
+			if (simulatorRunnable != null) {
+				simulatorRunnable.stopTicking();
+				simulatorRunnable.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Add another {@link WorldObserver} to our list of observers. The observer is notified of the most recent tick.
 	 * @param newObserver observer to add
 	 */
+	@Override
 	public void registerSimulatorObserver(WorldObserver newObserver) {
+		registerSimulatorObserver(newObserver, SimulatorRunnable.DELIVER_LATEST, 0);
+	}
+
+	/**
+	 * Add another {@link WorldObserver} with a delivery policy to our list of observers.
+	 * @param newObserver observer to add
+	 * @param delivery    delivery policy ({@link SimulatorRunnable#DELIVER_LATEST},
+	 *                    {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK} or {@link SimulatorRunnable#DELIVER_SAMPLED})
+	 * @param interval    number of ticks or milliseconds between notifications
+	 */
+	@Override
+	public void registerSimulatorObserver(WorldObserver newObserver, int delivery, int interval) {
+		SimulatorRunnable.checkDelivery(delivery, interval, false /* everyTick */);
 		synchronized (worldObserverMutex) {
-			if (worldObservers.length == worldObserverCount - 1) {
+			if (worldObservers.length == worldObserverCount) {
 				// Time to reallocate
-				WorldObserver[] newObservers = new WorldObserver[worldObservers.length * 2];
+				ObserverSubscription[] newObservers = new ObserverSubscription[worldObservers.length * 2];
 				System.arraycopy(worldObservers, 0, newObservers, 0, worldObservers.length);
 				worldObservers = newObservers;
 			}
-			worldObservers[worldObserverCount++] = newObserver;
+			worldObservers[worldObserverCount++] = new ObserverSubscription(newObserver, delivery, interval);
 		}
 	}
 
@@ -944,8 +1195,8 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	@Override
 	public void unregisterSimulatorObserver(WorldObserver goneObserver) {
 		synchronized (worldObserverMutex) {
-			for (int no = 0; no < worldObservers.length; no++) {
-				if (worldObservers[no] == goneObserver) {
+			for (int no = 0; no < worldObserverCount; no++) {
+				if (worldObservers[no].observer == goneObserver) {
 					System.arraycopy(worldObservers, no + 1, worldObservers, no, worldObserverCount - 1 - no);
 					worldObservers[worldObserverCount - 1] = null;
 					worldObserverCount--;
@@ -955,18 +1206,91 @@ public class MainActivity extends AppCompatActivity implements WorldHost, Simula
 	}
 
 	/**
-	 * Called whenever the {@link SimulatorRunnable} has finished calculating a new world. We need to tell the
-	 * registered {@link WorldObserver} objects about this fact.
+	 * Add another {@link WorldStatisticsObserver} to our list of statistics observers. The observer receives the
+	 * statistics of every tick.
+	 * @param newObserver observer to add
+	 */
+	@Override
+	public void registerStatisticsObserver(WorldStatisticsObserver newObserver) {
+		registerStatisticsObserver(newObserver, SimulatorRunnable.DELIVER_EVERY_TICK, 0);
+	}
+
+	/**
+	 * Add another {@link WorldStatisticsObserver} with a delivery policy to our list of statistics observers.
+	 * @param newObserver observer to add
+	 * @param delivery    delivery policy ({@link SimulatorRunnable#DELIVER_LATEST},
+	 *                    {@link SimulatorRunnable#DELIVER_EVERY_TICK}, {@link SimulatorRunnable#DELIVER_EVERY_NTH_TICK}
+	 *                    or {@link SimulatorRunnable#DELIVER_SAMPLED})
+	 * @param interval    number of ticks or milliseconds between notifications
+	 */
+	@Override
+	public void registerStatisticsObserver(WorldStatisticsObserver newObserver, int delivery, int interval) {
+		SimulatorRunnable.checkDelivery(delivery, interval, true /* everyTick */);
+		synchronized (statisticsObserverMutex) {
+			if (statisticsObservers.length == statisticsObserverCount) {
+				// Time to reallocate
+				ObserverSubscription[] newObservers = new ObserverSubscription[statisticsObservers.length * 2];
+				System.arraycopy(statisticsObservers, 0, newObservers, 0, statisticsObservers.length);
+				statisticsObservers = newObservers;
+			}
+			statisticsObservers[statisticsObserverCount++] = new ObserverSubscription(newObserver, delivery, interval);
+			simulatorRunnable.registerStatisticsObserver(newObserver, delivery, interval);
+		}
+	}
+
+	/**
+	 * Remove a {@link WorldStatisticsObserver} from our list of statistics observers.
+	 * @param goneObserver observer to remove
+	 */
+	@Override
+	public void unregisterStatisticsObserver(WorldStatisticsObserver goneObserver) {
+		synchronized (statisticsObserverMutex) {
+			for (int no = 0; no < statisticsObserverCount; no++) {
+				if (statisticsObservers[no].observer == goneObserver) {
+					System.arraycopy(statisticsObservers, no + 1, statisticsObservers, no, statisticsObserverCount - 1 - no);
+					statisticsObservers[--statisticsObserverCount] = null;
+					simulatorRunnable.unregisterStatisticsObserver(goneObserver);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Called whenever the {@link SimulatorRunnable} has finished calculating a new world (the snapshot stage). If
+	 * there are registered {@link WorldObserver} objects we hand a snapshot of the world to the render stage.
 	 * @param simulator simulator that has ticked
 	 */
 	@Override
-	synchronized public void simulatorUpdated(Simulator simulator) {
-		if (worldUpdateNotifierThread != null) {
-			//noinspection SynchronizeOnNonFinalField
-			synchronized (worldUpdateNotifierThread) {
-				worldUpdateNotifierThread.notify();
+	public void simulatorUpdated(Simulator simulator) {
+		if (hasWorldObservers()) {
+			synchronized (renderQueue) {
+				if (renderQueue.isFull()) {
+					// The render stage is behind: it takes a snapshot of the newest world itself
+					renderFrameMissed.set(true);
+					if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "SimulatorUpdated: Render queue full, dropping a frame"); }
+				}
+				// Checking (again) after setting the flag: if the render stage took the queued snapshot before it saw
+				// the flag, the newest world must still get to it. Only this producer adds to the queue: a queue that
+				// is not full accepts the frame
+				if (!renderQueue.isFull()) {
+					renderQueue.offer(simulator.getWorldToPaint());
+				}
 			}
 		}
+		final long sharkCount = simulator.getSharkCount();
+		if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "Fish: " + simulator.getFishCount() + "; sharks: " + sharkCount); }
+		if (sharkCount == 0) {
+			simulatorRunnable.stopTicking();
+		}
+		// Note: not synchronizing here, but rather a rudimentary check to avoid posting if it's not
+		// necessary. If the drawer opens while we are executing and one of these fields change to non-null
+		// then the frame rate will be update next time. If it's the other way around the updateFpsRunnable
+		// should synchronize and check again.
+		if (currentSimFps != null || currentDrawFps != null && nextFpsUpdate < System.currentTimeMillis()) {
+			handler.post(updateFpsRunnable);
+			nextFpsUpdate = System.currentTimeMillis() + 6000L;
+		}
 	}
 
 }
@@ -308,8 +308,8 @@ public class NewWorld extends Fragment {
 	private void createWorld() {
 		worldCreator.createWorld(
 				new WorldParameters()
-						.setWidth(Short.valueOf(inputs[WORLD_WIDTH_INPUT].getText().toString()))
-						.setHeight(Short.valueOf(inputs[WORLD_HEIGHT_INPUT].getText().toString()))
+						.setWidth(Integer.valueOf(inputs[WORLD_WIDTH_INPUT].getText().toString()))
+						.setHeight(Integer.valueOf(inputs[WORLD_HEIGHT_INPUT].getText().toString()))
 						.setFishBreedTime(Short.valueOf(inputs[FISH_BREED_INPUT].getText().toString()))
 						.setSharkBreedTime(Short.valueOf(inputs[SHARK_BREED_INPUT].getText().toString()))
 						.setSharkStarveTime(Short.valueOf(inputs[SHARK_STARVE_INPUT].getText().toString()))
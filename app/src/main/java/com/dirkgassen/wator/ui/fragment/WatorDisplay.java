@@ -17,6 +17,8 @@
 
 package com.dirkgassen.wator.ui.fragment;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 import com.dirkgassen.wator.R;
 import com.dirkgassen.wator.simulator.Simulator;
 import com.dirkgassen.wator.simulator.WorldHost;
@@ -65,6 +67,18 @@ public class WatorDisplay extends Fragment implements WorldObserver {
 	/** Pixel array that is calculated from the world and then dumped into the {@link #planetBitmap} */
 	private int[] pixels;
 
+	/**
+	 * Version of the world that is in {@link #pixels} (see {@link Simulator.WorldInspector#getVersion()}); 0 if all
+	 * pixels must be calculated again
+	 */
+	private long paintedVersion = 0;
+
+	/** Ages of the fish of the dirty tile being painted */
+	private final short[] tileFishAges = new short[Simulator.DIRTY_TILE_SIZE * Simulator.DIRTY_TILE_SIZE];
+
+	/** Hunger of the shark of the dirty tile being painted */
+	private final short[] tileSharkHungers = new short[Simulator.DIRTY_TILE_SIZE * Simulator.DIRTY_TILE_SIZE];
+
 	/** Handler to run stuff on the UI thread */
 	private Handler handler;
 
@@ -73,6 +87,12 @@ public class WatorDisplay extends Fragment implements WorldObserver {
 	 * {@link ImageView} */
 	private Runnable updateImageRunner;
 
+	/**
+	 * Flag whether {@link #updateImageRunner} has been posted to the UI thread but has not run yet. Pixels painted
+	 * meanwhile are presented by the pending runner, so the UI thread never falls behind by more than one frame.
+	 */
+	private final AtomicBoolean presentPending = new AtomicBoolean(false);
+
 	/**
 	 * Calculates a color ramp from {@code youngColor} to {@code oldColor} and returns that array.
 	 *
@@ -125,6 +145,7 @@ public class WatorDisplay extends Fragment implements WorldObserver {
 		updateImageRunner = new Runnable() {
 			@Override
 			public void run() {
+				presentPending.set(false);
 				synchronized (WatorDisplay.this) {
 					if (planetBitmap != null) {
 						watorDisplay.setImageBitmap(planetBitmap);
@@ -199,6 +220,7 @@ public class WatorDisplay extends Fragment implements WorldObserver {
 			if (Log.isLoggable("Wa-Tor", Log.DEBUG)) { Log.d("Wa-Tor", "(Re)creating bitmap/pixels"); }
 			planetBitmap = Bitmap.createBitmap(worldWidth, worldHeight, Bitmap.Config.ARGB_8888);
 			pixels = new int[worldWidth * worldHeight];
+			paintedVersion = 0;
 		}
 		if (fishAgeColors == null || fishAgeColors.length != fishBreedTime) {
 			if (Log.isLoggable("Wa-Tor", Log.DEBUG)) { Log.d("Wa-Tor", "(Re)creating fish colors"); }
@@ -207,6 +229,7 @@ public class WatorDisplay extends Fragment implements WorldObserver {
 					ContextCompat.getColor(getContext(), R.color.fish_young),
 					ContextCompat.getColor(getContext(), R.color.fish_old)
 			);
+			paintedVersion = 0;
 		}
 		if (sharkAgeColors == null || sharkAgeColors.length != sharkStarveTime) {
 			if (Log.isLoggable("Wa-Tor", Log.DEBUG)) { Log.d("Wa-Tor", "(Re)creating shark colors"); }
@@ -215,26 +238,69 @@ public class WatorDisplay extends Fragment implements WorldObserver {
 					ContextCompat.getColor(getContext(), R.color.shark_young),
 					ContextCompat.getColor(getContext(), R.color.shark_old)
 			);
+			paintedVersion = 0;
 		}
 
-		do {
-			if (world.isEmpty()) {
-				pixels[world.getCurrentPosition()] = waterColor;
-			} else if (world.isFish()) {
-				pixels[world.getCurrentPosition()] = fishAgeColors[world.getFishAge() - 1];
-			} else {
-				pixels[world.getCurrentPosition()] = sharkAgeColors[world.getSharkHunger() - 1];
+		// Only calculate the pixels of the tiles that changed since the world painted last
+		final long sinceVersion = paintedVersion;
+		final int tileColumns = world.getDirtyTileColumns();
+		final int tileRows = world.getDirtyTileRows();
+		int dirtyTileCount = 0;
+		for (int tileY = 0; tileY < tileRows; tileY++) {
+			for (int tileX = 0; tileX < tileColumns; tileX++) {
+				if (!world.isTileDirty(tileX, tileY, sinceVersion)) {
+					continue;
+				}
+				dirtyTileCount++;
+				final int startX = tileX * Simulator.DIRTY_TILE_SIZE;
+				final int startY = tileY * Simulator.DIRTY_TILE_SIZE;
+				final int columns = Math.min(Simulator.DIRTY_TILE_SIZE, worldWidth - startX);
+				final int rows = Math.min(Simulator.DIRTY_TILE_SIZE, worldHeight - startY);
+				world.copyFishAges(startX, startY, columns, rows, tileFishAges, 0, Simulator.DIRTY_TILE_SIZE);
+				world.copySharkHungers(startX, startY, columns, rows, tileSharkHungers, 0, Simulator.DIRTY_TILE_SIZE);
+				for (int row = 0; row < rows; row++) {
+					final int pixelRowStart = startX + (startY + row) * worldWidth;
+					final int tileRowStart = row * Simulator.DIRTY_TILE_SIZE;
+					for (int column = 0; column < columns; column++) {
+						final short fishAge = tileFishAges[tileRowStart + column];
+						final short sharkHunger = tileSharkHungers[tileRowStart + column];
+						if (fishAge > 0) {
+							pixels[pixelRowStart + column] = fishAgeColors[fishAge - 1];
+						} else if (sharkHunger > 0) {
+							pixels[pixelRowStart + column] = sharkAgeColors[sharkHunger - 1];
+						} else {
+							pixels[pixelRowStart + column] = waterColor;
+						}
+					}
+				}
 			}
-		} while (world.moveToNext() != Simulator.WorldInspector.RESET);
-		if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "Generating pixels " + (System.currentTimeMillis() - startUpdate) + " ms"); }
+		}
+		paintedVersion = world.getVersion();
+		if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "Generating pixels of " + dirtyTileCount + " tiles " + (System.currentTimeMillis() - startUpdate) + " ms"); }
 		synchronized (WatorDisplay.this) {
 			if (planetBitmap != null) {
 				int width = planetBitmap.getWidth();
 				int height = planetBitmap.getHeight();
-				planetBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+				if (dirtyTileCount == tileColumns * tileRows) {
+					planetBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+				} else {
+					for (int tileY = 0; tileY < tileRows; tileY++) {
+						for (int tileX = 0; tileX < tileColumns; tileX++) {
+							if (world.isTileDirty(tileX, tileY, sinceVersion)) {
+								final int x = tileX * Simulator.DIRTY_TILE_SIZE;
+								final int y = tileY * Simulator.DIRTY_TILE_SIZE;
+								planetBitmap.setPixels(pixels, x + y * width, width, x, y,
+										Math.min(Simulator.DIRTY_TILE_SIZE, width - x),
+										Math.min(Simulator.DIRTY_TILE_SIZE, height - y));
+							}
+						}
+					}
+				}
 			}
 		}
-		handler.post(updateImageRunner);
+		if (presentPending.compareAndSet(false, true)) {
+			handler.post(updateImageRunner);
+		}
 		if (Log.isLoggable("Wa-Tor", Log.VERBOSE)) { Log.v("Wa-Tor", "Repainting took " + (System.currentTimeMillis() - startUpdate) + " ms"); }
 	}
 
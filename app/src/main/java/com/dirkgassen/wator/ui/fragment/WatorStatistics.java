@@ -19,8 +19,8 @@ package com.dirkgassen.wator.ui.fragment;
 
 import com.dirkgassen.wator.R;
 import com.dirkgassen.wator.simulator.Simulator;
-import com.dirkgassen.wator.simulator.WorldObserver;
 import com.dirkgassen.wator.simulator.WorldHost;
+import com.dirkgassen.wator.simulator.WorldStatisticsObserver;
 import com.dirkgassen.wator.ui.view.RollingGraphView;
 
 import android.content.Context;
@@ -34,10 +34,10 @@ import android.view.ViewGroup;
 
 /**
  * A fragment that shows a rolling graph of the statistics of fish and shark in a {@link Simulator}. The fragment must
- * be placed into an activity that implements {@link WorldHost}.It registers itself as a {@link WorldObserver} to that {@link WorldHost} to receive
- * notifcations that the simulator has ticked.
+ * be placed into an activity that implements {@link WorldHost}.It registers itself as a {@link WorldStatisticsObserver} to that {@link WorldHost} to receive
+ * the statistics of each tick (without a snapshot of the world).
  */
-public class WatorStatistics extends Fragment implements WorldObserver {
+public class WatorStatistics extends Fragment implements WorldStatisticsObserver {
 
 	/** A preallocated array used to add new values to {@link #rollingGraphView} */
 	private final float[] newStatsValues = new float[2];
@@ -85,7 +85,7 @@ public class WatorStatistics extends Fragment implements WorldObserver {
 	public void onPause() {
 		super.onPause();
 		if (displayHost != null) {
-			displayHost.unregisterSimulatorObserver(this);
+			displayHost.unregisterStatisticsObserver(this);
 		}
 	}
 
@@ -94,21 +94,22 @@ public class WatorStatistics extends Fragment implements WorldObserver {
 	public void onResume() {
 		super.onResume();
 		if (displayHost != null) {
-			displayHost.registerSimulatorObserver(this);
+			displayHost.registerStatisticsObserver(this);
 		}
 	}
 
 	/**
-	 * Called when the {@link WorldHost} has updated its simulator. This method repaints the bitmap for the view.
+	 * Called when the {@link WorldHost} has ticked its simulator. This method adds the numbers of fish and shark to
+	 * the graph.
 	 *
-	 * @param world {@link com.dirkgassen.wator.simulator.Simulator.WorldInspector} of the {@link Simulator} that was
+	 * @param statistics {@link com.dirkgassen.wator.simulator.Simulator.TickStatistics} of the tick
 	 */
 	 @Override
-	public void worldUpdated(Simulator.WorldInspector world) {
+	public void statisticsUpdated(Simulator.TickStatistics statistics) {
 		if (rollingGraphView != null) {
 			synchronized (newStatsValues) {
-				newStatsValues[0] = world.getFishCount();
-				newStatsValues[1] = world.getSharkCount();
+				newStatsValues[0] = statistics.getFishCount();
+				newStatsValues[1] = statistics.getSharkCount();
 				rollingGraphView.addData(newStatsValues);
 			}
 		}
@@ -0,0 +1,139 @@
+/*
+ * FrameQueue.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.dirkgassen.wator.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue that hands frames from one producer thread to one consumer thread (one stage of a pipeline to the
+ * next). The producer never blocks: {@link #offer(Object)} fails if the queue is full and the producer decides what
+ * to do with the frame. The consumer can wait for a frame with {@link #take()}; unlike {@link Object#wait()} and
+ * {@link Object#notify()} a frame offered while the consumer is busy is not missed.
+ *
+ * @param <T> type of the frames
+ */
+public final class FrameQueue<T> {
+
+	/** Slots of the frames; frame number {@code n} goes into slot {@code n % slots.length()} */
+	private final AtomicReferenceArray<T> slots;
+
+	/** Number of the next frame the consumer takes (only changed by the consumer) */
+	private final AtomicLong head = new AtomicLong();
+
+	/** Number of the next frame the producer offers (only changed by the producer) */
+	private final AtomicLong tail = new AtomicLong();
+
+	/** The consumer while it is waiting in {@link #take()}; {@code null} otherwise */
+	private volatile Thread waitingConsumer;
+
+	/**
+	 * Adds a frame to the queue. Must only be called by the producer.
+	 *
+	 * @param frame frame to add
+	 * @return {@code true} if the frame was added; {@code false} if the queue is full (the frame is not added)
+	 */
+	public boolean offer(T frame) {
+		final long frameNo = tail.get();
+		if (frameNo - head.get() == slots.length()) {
+			return false;
+		}
+		slots.set((int) (frameNo % slots.length()), frame);
+		tail.set(frameNo + 1);
+		final Thread consumer = waitingConsumer;
+		if (consumer != null) {
+			LockSupport.unpark(consumer);
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the oldest frame from the queue. Must only be called by the consumer.
+	 *
+	 * @return oldest frame; {@code null} if the queue is empty
+	 */
+	public T poll() {
+		final long frameNo = head.get();
+		if (frameNo == tail.get()) {
+			return null;
+		}
+		final int slotNo = (int) (frameNo % slots.length());
+		final T frame = slots.get(slotNo);
+		slots.set(slotNo, null);
+		head.set(frameNo + 1);
+		return frame;
+	}
+
+	/**
+	 * Removes the oldest frame from the queue, waiting for one if the queue is empty. Must only be called by the
+	 * consumer.
+	 *
+	 * @return oldest frame
+	 * @throws InterruptedException if the consumer was interrupted while waiting
+	 */
+	public T take() throws InterruptedException {
+		T frame = poll();
+		if (frame != null) {
+			return frame;
+		}
+		waitingConsumer = Thread.currentThread();
+		try {
+			// Checking again after announcing the consumer makes sure that a frame offered in between unparks it
+			while ((frame = poll()) == null) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				LockSupport.park(this);
+			}
+		} finally {
+			waitingConsumer = null;
+		}
+		return frame;
+	}
+
+	/**
+	 * Checks whether the queue is full. Meant for the producer to find out whether it is worth preparing a frame
+	 * before doing so: since only the producer adds frames, a queue that is not full accepts its next frame.
+	 *
+	 * @return {@code true} if {@link #offer(Object)} would reject a frame
+	 */
+	public boolean isFull() {
+		return tail.get() - head.get() == slots.length();
+	}
+
+	/** @return number of frames in the queue */
+	public int size() {
+		return (int) (tail.get() - head.get());
+	}
+
+	/** @return maximum number of frames in the queue */
+	public int getCapacity() {
+		return slots.length();
+	}
+
+	/**
+	 * Creates a new queue.
+	 *
+	 * @param capacity maximum number of frames in the queue
+	 */
+	public FrameQueue(int capacity) {
+		slots = new AtomicReferenceArray<T>(capacity);
+	}
+
+}
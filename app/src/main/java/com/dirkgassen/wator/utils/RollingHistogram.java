@@ -0,0 +1,134 @@
+/*
+ * RollingHistogram.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.dirkgassen.wator.utils;
+
+/**
+ * Class to provide a histogram over some history of values, e.g., the last 60 values (default). Like
+ * {@link RollingAverage} values outside of the sliding window are disregarded automatically. The values are sorted
+ * into buckets whose upper bounds are powers of two (see {@link #getBucketUpperBound(int)}), so percentiles are only
+ * known up to a factor of two.
+ */
+public class RollingHistogram {
+
+	/** Number of buckets; the last bucket takes all values from 2^({@code BUCKETS} - 2) on */
+	public static final int BUCKETS = 32;
+
+	/** Stores the buckets of the values in the histogram; {@link #valueCurrentNo} is the index of the next value */
+	private final byte[] valueBuckets;
+
+	/** Number of values in each bucket */
+	private final int[] bucketCounts = new int[BUCKETS];
+
+	/** Index in {@link #valueBuckets} where the next new value is going to be stored */
+	private int valueCurrentNo = 0;
+
+	/** Number of values in {@link #valueBuckets} (less than its size until the window is full) */
+	private int valueCount = 0;
+
+	/**
+	 * Returns the bucket of a value: 0 for values less than 1, otherwise the bucket {@code n} with
+	 * 2^({@code n} - 1) &lt;= value &lt; 2^{@code n}.
+	 *
+	 * @param value value
+	 * @return bucket of the value
+	 */
+	public static int getBucket(long value) {
+		if (value <= 0) {
+			return 0;
+		}
+		return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+	}
+
+	/**
+	 * @param bucket bucket
+	 * @return upper bound (exclusive) of the values in the bucket (the last bucket has no upper bound)
+	 */
+	public static long getBucketUpperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+	/**
+	 * Add a new value to the histogram.
+	 *
+	 * @param newValue value to add
+	 */
+	final public void add(long newValue) {
+		if (valueCount == valueBuckets.length) {
+			bucketCounts[valueBuckets[valueCurrentNo]]--;
+		} else {
+			valueCount++;
+		}
+		final int bucket = getBucket(newValue);
+		valueBuckets[valueCurrentNo] = (byte) bucket;
+		bucketCounts[bucket]++;
+		if (++valueCurrentNo == valueBuckets.length) {
+			valueCurrentNo = 0;
+		}
+	}
+
+	/** @return number of values in the histogram */
+	final public int getCount() {
+		return valueCount;
+	}
+
+	/**
+	 * @param bucket bucket (see {@link #getBucket(long)})
+	 * @return number of values in the histogram that fall into the bucket
+	 */
+	final public int getBucketCount(int bucket) {
+		return bucketCounts[bucket];
+	}
+
+	/**
+	 * Returns the upper bound of the bucket of a percentile of the values: at least the given fraction of the values
+	 * is less than the returned value.
+	 *
+	 * @param fraction fraction of the values (between 0 and 1, e.g., 0.9 for the 90th percentile)
+	 * @return upper bound of the bucket of the percentile (0 if no values have been added)
+	 */
+	final public long getPercentile(float fraction) {
+		if (valueCount == 0) {
+			return 0;
+		}
+		final int needed = Math.max(1, (int) Math.ceil(fraction * valueCount));
+		int count = 0;
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+			count += bucketCounts[bucket];
+			if (count >= needed) {
+				return getBucketUpperBound(bucket);
+			}
+		}
+		return getBucketUpperBound(BUCKETS - 1);
+	}
+
+	/** @return the median, 90th percentile and maximum of the values (up to their bucket bounds) */
+	@Override
+	public String toString() {
+		return "n=" + valueCount + ", p50<" + getPercentile(0.5f) + ", p90<" + getPercentile(0.9f)
+				+ ", max<" + getPercentile(1f);
+	}
+
+	public RollingHistogram() {
+		this(60);
+	}
+
+	public RollingHistogram(int history) {
+		valueBuckets = new byte[history];
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * CellLayoutBenchmark.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.dirkgassen.wator.simulator.Simulator;
+import com.dirkgassen.wator.simulator.WorldParameters;
+
+/**
+ * Measures ticks with each cell layout ({@link Simulator#CELL_LAYOUT_BYTE}, {@link Simulator#CELL_LAYOUT_SHORT} and
+ * {@link Simulator#CELL_LAYOUT_INT}) on and off the heap. The default parameters (short cells on the heap) are
+ * measured first, while only one cell store is loaded, and again after all others have been used, which shows what
+ * the default path loses when the calls of the cell stores can no longer be inlined. This is a standalone program
+ * (run its {@link #main(String[])}) rather than a unit test: it takes a few seconds and its result depends on the
+ * machine.
+ *
+ * @author dirk.
+ */
+public class CellLayoutBenchmark {
+
+	/** Number of threads to tick with */
+	private static final int THREADS = 2;
+
+	/** Width and height of the world */
+	private static final int SIZE = 256;
+
+	/** Time to tick each configuration (in nanoseconds) */
+	private static final long MEASURE_TIME = 300000000L;
+
+	/** Names of the cell layouts (indexed by layout) */
+	private static final String[] LAYOUT_NAMES = new String[] { "byte", "short", "int" };
+
+	/**
+	 * Ticks a world for about {@link #MEASURE_TIME} nanoseconds (after a short warm up) and prints the result.
+	 *
+	 * @param configuration fish breed time, shark breed time, shark starve time and expected cell layout
+	 * @param offHeap       {@code true} to store the cells off the heap
+	 * @return average time per tick in nanoseconds
+	 */
+	private static long measureTick(int[] configuration, boolean offHeap) {
+		Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) SIZE)
+						.setHeight((short) SIZE)
+						.setFishBreedTime((short) configuration[0])
+						.setSharkBreedTime((short) configuration[1])
+						.setSharkStarveTime((short) configuration[2])
+						.setInitialFishCount(SIZE * SIZE / 3)
+						.setInitialSharkCount(SIZE * SIZE / 20)
+						.setOffHeapStorage(offHeap)
+						.setSeed(42L)
+		);
+		if (simulator.getCellLayout() != configuration[3]) {
+			throw new IllegalStateException("Unexpected cell layout " + LAYOUT_NAMES[simulator.getCellLayout()]);
+		}
+		for (int tickNo = 0; tickNo < 50; tickNo++) {
+			simulator.tick(THREADS);
+		}
+		int ticks = 0;
+		final long start = System.nanoTime();
+		long elapsed;
+		do {
+			simulator.tick(THREADS);
+			ticks++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < MEASURE_TIME);
+		final long time = elapsed / ticks;
+		System.out.println("Cell layout " + LAYOUT_NAMES[configuration[3]] + (offHeap ? " off heap: " : " on heap: ")
+				+ time / 1000 + "us/tick (" + simulator.getFishCount() + " fish, " + simulator.getSharkCount() + " shark)");
+		return time;
+	}
+
+	/**
+	 * Measures all cell layouts on and off the heap and prints how the default cell layout is affected by the others.
+	 *
+	 * @param args ignored
+	 */
+	public static void main(String[] args) {
+		final int[] defaultConfiguration = new int[] { 14, 13, 12, Simulator.CELL_LAYOUT_SHORT };
+		final int[][] otherConfigurations = new int[][] {
+				// fish breed time, shark breed time, shark starve time, cell layout
+				{ 5, 6, 5, Simulator.CELL_LAYOUT_BYTE },
+				{ 14, 1000, 500, Simulator.CELL_LAYOUT_INT }
+		};
+		final long defaultTime = measureTick(defaultConfiguration, false);
+		for (int[] configuration : otherConfigurations) {
+			measureTick(configuration, false);
+		}
+		measureTick(defaultConfiguration, true);
+		for (int[] configuration : otherConfigurations) {
+			measureTick(configuration, true);
+		}
+		final long mixedDefaultTime = measureTick(defaultConfiguration, false);
+		System.out.println("Default cell layout after using all others: " + mixedDefaultTime * 100 / defaultTime
+				+ "% of the time with only one cell store");
+		// The calculator threads of the simulators never end on their own
+		System.exit(0);
+	}
+
+}
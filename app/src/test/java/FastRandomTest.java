@@ -0,0 +1,72 @@
+/*
+ * FastRandomTest.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import com.dirkgassen.wator.utils.FastRandom;
+
+import junit.framework.Assert;
+
+/**
+ * @author dirk.
+ */
+public class FastRandomTest {
+
+	@Test
+	public void sameSeedTest() {
+		FastRandom random1 = new FastRandom(42L);
+		FastRandom random2 = new FastRandom(0L);
+		random2.nextChoice(3);
+		random2.setSeed(42L);
+		for (int no = 0; no < 1000; no++) {
+			Assert.assertEquals("Generators with the same seed differ", random1.nextLong(), random2.nextLong());
+			Assert.assertEquals("Generators with the same seed differ", random1.nextChoice(7), random2.nextChoice(7));
+		}
+	}
+
+	@Test
+	public void boundsTest() {
+		FastRandom random = new FastRandom(4711L);
+		for (int bound = 1; bound < 100; bound++) {
+			for (int no = 0; no < 100; no++) {
+				int value = random.nextInt(bound);
+				Assert.assertTrue("nextInt(" + bound + ") returned " + value, value >= 0 && value < bound);
+				value = random.nextChoice(bound);
+				Assert.assertTrue("nextChoice(" + bound + ") returned " + value, value >= 0 && value < bound);
+			}
+		}
+		Assert.assertTrue("Large bound", random.nextInt(Integer.MAX_VALUE) >= 0);
+	}
+
+	@Test
+	public void choiceDistributionTest() {
+		FastRandom random = new FastRandom(1L);
+		for (int choices = 2; choices <= 8; choices++) {
+			int[] counts = new int[choices];
+			final int draws = 80000;
+			for (int no = 0; no < draws; no++) {
+				counts[random.nextChoice(choices)]++;
+			}
+			for (int choice = 0; choice < choices; choice++) {
+				float expected = (float) draws / choices;
+				Assert.assertTrue("Choice " + choice + " of " + choices + " drawn " + counts[choice] + " times",
+						Math.abs(counts[choice] - expected) < expected * 0.05f);
+			}
+		}
+	}
+
+}
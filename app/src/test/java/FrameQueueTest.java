@@ -0,0 +1,80 @@
+/*
+ * FrameQueueTest.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import com.dirkgassen.wator.utils.FrameQueue;
+
+import junit.framework.Assert;
+
+/**
+ * @author dirk.
+ */
+public class FrameQueueTest {
+
+	@Test
+	public void boundedTest() {
+		FrameQueue<Integer> queue = new FrameQueue<Integer>(2);
+		Assert.assertTrue("Empty queue should return null", queue.poll() == null);
+		Assert.assertTrue("First frame should be added", queue.offer(1));
+		Assert.assertTrue("Queue should not be full yet", !queue.isFull());
+		Assert.assertTrue("Second frame should be added", queue.offer(2));
+		Assert.assertTrue("Queue should be full", queue.isFull());
+		Assert.assertTrue("Full queue should reject a frame", !queue.offer(3));
+		Assert.assertEquals("Unexpected size", 2, queue.size());
+		Assert.assertEquals("Unexpected first frame", 1, queue.poll().intValue());
+		Assert.assertTrue("Queue should not be full after taking a frame", !queue.isFull());
+		Assert.assertTrue("Frame should be added after taking one", queue.offer(4));
+		Assert.assertEquals("Unexpected second frame", 2, queue.poll().intValue());
+		Assert.assertEquals("Unexpected third frame", 4, queue.poll().intValue());
+		Assert.assertTrue("Queue should be empty", queue.poll() == null);
+	}
+
+	@Test
+	public void handOffTest() throws InterruptedException {
+		final FrameQueue<Integer> queue = new FrameQueue<Integer>(2);
+		final int frames = 100000;
+		final int[] received = new int[1];
+		final boolean[] inOrder = { true };
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					int expected = 0;
+					while (expected < frames) {
+						final int frame = queue.take();
+						inOrder[0] &= frame == expected;
+						expected++;
+					}
+					received[0] = expected;
+				} catch (InterruptedException e) {
+					// Test fails below
+				}
+			}
+		};
+		consumer.start();
+		for (int frame = 0; frame < frames; frame++) {
+			while (!queue.offer(frame)) {
+				Thread.yield();
+			}
+		}
+		consumer.join(10000);
+		Assert.assertEquals("Consumer missed frames (lost wakeup?)", frames, received[0]);
+		Assert.assertTrue("Frames should arrive in order", inOrder[0]);
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * ObserverWatchdogTest.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import com.dirkgassen.wator.simulator.ObserverWatchdog;
+import com.dirkgassen.wator.simulator.SimulatorRunnable;
+
+import junit.framework.Assert;
+
+/**
+ * @author dirk.
+ */
+public class ObserverWatchdogTest {
+
+	@Test
+	public void observerWatchdogTest() {
+		ObserverWatchdog watchdog = new ObserverWatchdog();
+		for (int strike = 1; strike < ObserverWatchdog.STRIKES; strike++) {
+			Assert.assertTrue("Observer demoted too early", !watchdog.notified(60000, 50000));
+		}
+		Assert.assertTrue("A fast notification should reset the strikes", !watchdog.notified(1000, 50000));
+		for (int strike = 1; strike < ObserverWatchdog.STRIKES; strike++) {
+			Assert.assertTrue("Observer demoted too early", !watchdog.notified(60000, 50000));
+		}
+		Assert.assertTrue("Observer should be demoted", watchdog.notified(60000, 50000));
+		Assert.assertTrue("Strikes should start over after a demotion", !watchdog.notified(60000, 50000));
+
+		final int interval = watchdog.getSampledInterval(0);
+		Assert.assertTrue("Sampled interval " + interval + " too short for slow notifications", interval >= 4 * 60);
+		Assert.assertTrue("Sampled interval should grow", watchdog.getSampledInterval(interval) >= 2 * interval);
+
+		Assert.assertEquals("Observers receiving every tick should only receive the latest tick",
+				SimulatorRunnable.DELIVER_LATEST, SimulatorRunnable.demoteDelivery(SimulatorRunnable.DELIVER_EVERY_TICK));
+		Assert.assertEquals("Other observers should be sampled",
+				SimulatorRunnable.DELIVER_SAMPLED, SimulatorRunnable.demoteDelivery(SimulatorRunnable.DELIVER_LATEST));
+	}
+
+	@Test
+	public void recoveryTest() {
+		ObserverWatchdog watchdog = new ObserverWatchdog();
+		for (int call = 1; call < ObserverWatchdog.RECOVERY_CALLS; call++) {
+			Assert.assertTrue("Observer promoted too early", !watchdog.recovered(40000, 50000));
+		}
+		Assert.assertTrue("A slow notification should reset the run of fast ones", !watchdog.recovered(60000, 50000));
+		for (int call = 1; call < ObserverWatchdog.RECOVERY_CALLS; call++) {
+			Assert.assertTrue("Observer promoted too early", !watchdog.recovered(40000, 50000));
+		}
+		Assert.assertTrue("Observer should be promoted", watchdog.recovered(40000, 50000));
+
+		// Demoted again after the promotion: the next promotion takes twice as long
+		for (int strike = 1; strike < ObserverWatchdog.STRIKES; strike++) {
+			watchdog.notified(60000, 50000);
+		}
+		Assert.assertTrue("Observer should be demoted", watchdog.notified(60000, 50000));
+		for (int call = 1; call < 2 * ObserverWatchdog.RECOVERY_CALLS; call++) {
+			Assert.assertTrue("Observer promoted again too early", !watchdog.recovered(40000, 50000));
+		}
+		Assert.assertTrue("Observer should be promoted again", watchdog.recovered(40000, 50000));
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * RollingHistogramTest.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import org.junit.Test;
+
+import com.dirkgassen.wator.utils.RollingHistogram;
+
+import junit.framework.Assert;
+
+/**
+ * @author dirk.
+ */
+public class RollingHistogramTest {
+
+	@Test
+	public void rollingHistogramTest() {
+		RollingHistogram histogram = new RollingHistogram(4);
+		Assert.assertEquals("Unexpected percentile before adding anything", 0L, histogram.getPercentile(0.5f));
+
+		histogram.add(0);
+		histogram.add(1);
+		histogram.add(5);
+		histogram.add(100);
+		Assert.assertEquals("Unexpected count", 4, histogram.getCount());
+		Assert.assertEquals("Unexpected bucket count for 0", 1, histogram.getBucketCount(0));
+		Assert.assertEquals("Unexpected bucket count for 5", 1, histogram.getBucketCount(RollingHistogram.getBucket(5)));
+		Assert.assertEquals("Unexpected median", 2L, histogram.getPercentile(0.5f));
+		Assert.assertEquals("Unexpected maximum", 128L, histogram.getPercentile(1f));
+
+		// The oldest values fall out of the window
+		histogram.add(1000);
+		histogram.add(1000);
+		Assert.assertEquals("Unexpected count after the window is full", 4, histogram.getCount());
+		Assert.assertEquals("Old value should have been removed", 0, histogram.getBucketCount(0));
+		Assert.assertEquals("Unexpected median after the window is full", 128L, histogram.getPercentile(0.5f));
+		Assert.assertEquals("Unexpected maximum after the window is full", 1024L, histogram.getPercentile(1f));
+
+		Assert.assertEquals("Huge values should go into the last bucket", RollingHistogram.BUCKETS - 1, RollingHistogram.getBucket(Long.MAX_VALUE));
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * SimulatorBarrierBenchmark.java is part of Wa-Tor (C) 2016 by Dirk Gassen.
+ *
+ * Wa-Tor is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wa-Tor is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+import com.dirkgassen.wator.simulator.Simulator;
+import com.dirkgassen.wator.simulator.WorldParameters;
+
+/**
+ * Measures multithreaded ticks with {@link Simulator#BARRIER_BLOCKING} and {@link Simulator#BARRIER_SPINNING} for
+ * growing world sizes and prints the world size from which on blocking stays as fast as spinning. This is a
+ * standalone program (run its {@link #main(String[])}) rather than a unit test: it takes a few seconds and its result
+ * depends on the machine.
+ *
+ * @author dirk.
+ */
+public class SimulatorBarrierBenchmark {
+
+	/** Number of threads to tick with */
+	private static final int THREADS = 4;
+
+	/** Time to tick each world size with each barrier (in nanoseconds) */
+	private static final long MEASURE_TIME = 150000000L;
+
+	/** Smallest world size (width and height) to measure */
+	private static final int MIN_SIZE = 16;
+
+	/** Largest world size (width and height) to measure */
+	private static final int MAX_SIZE = 512;
+
+	/**
+	 * Ticks a world for about {@link #MEASURE_TIME} nanoseconds (after a short warm up).
+	 *
+	 * @param width   width of the world
+	 * @param height  height of the world
+	 * @param barrier barrier to use
+	 * @return average time per tick in nanoseconds
+	 */
+	private static long measureTick(int width, int height, int barrier) {
+		Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) width)
+						.setHeight((short) height)
+						.setInitialFishCount(width * height / 3)
+						.setInitialSharkCount(width * height / 20)
+		);
+		simulator.setBarrier(barrier);
+		for (int tickNo = 0; tickNo < 20; tickNo++) {
+			simulator.tick(THREADS);
+		}
+		int ticks = 0;
+		final long start = System.nanoTime();
+		long elapsed;
+		do {
+			simulator.tick(THREADS);
+			ticks++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < MEASURE_TIME);
+		return elapsed / ticks;
+	}
+
+	/**
+	 * Measures both barriers for square worlds from {@link #MIN_SIZE} to {@link #MAX_SIZE} and prints the times and
+	 * the crossover: the smallest size from which on blocking is as fast as spinning for all larger sizes.
+	 *
+	 * @param args ignored
+	 */
+	public static void main(String[] args) {
+		int crossoverSize = -1;
+		for (int size = MIN_SIZE; size <= MAX_SIZE; size *= 2) {
+			final long blocking = measureTick(size, size, Simulator.BARRIER_BLOCKING);
+			final long spinning = measureTick(size, size, Simulator.BARRIER_SPINNING);
+			System.out.println("World " + size + "x" + size + ": blocking " + blocking / 1000 + "us/tick, spinning "
+					+ spinning / 1000 + "us/tick");
+			if (blocking > spinning) {
+				// Spinning is faster: the crossover (if any) is at a larger size
+				crossoverSize = -1;
+			} else if (crossoverSize == -1) {
+				crossoverSize = size;
+			}
+		}
+		if (crossoverSize == -1) {
+			System.out.println("Spinning was faster for the largest measured world size");
+		} else {
+			System.out.println("Blocking is as fast as spinning from " + crossoverSize + "x" + crossoverSize + " on");
+		}
+		// The calculator threads of the simulators never end on their own
+		System.exit(0);
+	}
+
+}
@@ -15,10 +15,13 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import com.dirkgassen.wator.simulator.Simulator;
+import com.dirkgassen.wator.simulator.WorldDeltaObserver;
 import com.dirkgassen.wator.simulator.WorldParameters;
 
 /**
@@ -57,12 +60,12 @@ public class SimulatorTest {
 
 		Simulator.WorldInspector world = simulator.getWorldToPaint();
 		int emptyCellCount = 0;
-		int fishCellNo = -1;
+		long fishCellNo = -1;
 		do {
 			if (world.isShark()) {
 				Assert.fail("Didn't expect a shark in the waters");
 			} else if (world.isFish()) {
-				int no = world.getCurrentPosition();
+				long no = world.getCurrentPosition();
 				Assert.assertEquals("Found more than one fish", fishCellNo, -1);
 				Assert.assertTrue("Found fish in wrong location",
 						   no ==  6 || no ==  7 || no ==  8
@@ -209,8 +212,8 @@ public class SimulatorTest {
 
 		Simulator.WorldInspector world = simulator.getWorldToPaint();
 		try {
-			int sharkCellNo = -1;
-			int emptyCellNo = -1;
+			long sharkCellNo = -1;
+			long emptyCellNo = -1;
 			do {
 				if (world.isShark()) {
 					Assert.assertEquals("Found more than one shark", sharkCellNo, -1);
@@ -371,4 +374,1197 @@ public class SimulatorTest {
 		}
 	}
 
+	@Test
+	public void testSparseEngineFishBreed() {
+		Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) 3)
+						.setHeight((short) 3)
+						.setFishBreedTime((short) 2)
+						.setSharkBreedTime((short) 2)
+						.setSharkStarveTime((short) 2)
+						.setInitialFishCount(0)
+						.setInitialSharkCount(0)
+		);
+		simulator.setEngine(Simulator.ENGINE_SPARSE);
+		simulator.setFish(1, 1);
+
+		for (int tickNo = 0; tickNo < 6; tickNo++) {
+			simulator.tick(16);
+		}
+
+		Simulator.WorldInspector world = simulator.getWorldToPaint();
+		try {
+			int fishCount = 0;
+			do {
+				if (world.isFish()) {
+					fishCount++;
+					Assert.assertEquals("Wrong fish reproduction age", world.getFishAge(), 1);
+				}
+			} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+			Assert.assertEquals("Unexpected number of fish", 8, fishCount);
+		} finally {
+			world.release();
+		}
+	}
+
+	@Test
+	public void testSparseEngineSwitching() {
+		final Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) 60)
+						.setHeight((short) 40)
+						.setFishBreedTime((short) 3)
+						.setSharkBreedTime((short) 5)
+						.setSharkStarveTime((short) 4)
+						.setInitialFishCount(300)
+						.setInitialSharkCount(100)
+		);
+
+		for (int tickNo = 0; tickNo < 60; tickNo++) {
+			if (tickNo % 20 == 0) {
+				simulator.setEngine(Simulator.ENGINE_SPARSE);
+			} else if (tickNo % 20 == 10) {
+				simulator.setEngine(Simulator.ENGINE_DENSE);
+			}
+			if (tickNo == 5) {
+				simulator.setFish(0, 0, (short) 1);
+				simulator.setShark(59, 39, (short) 1, (short) 1);
+			}
+			simulator.tick(2);
+
+			Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				int fish = 0;
+				int shark = 0;
+				do {
+					if (world.isFish()) {
+						short fishAge = world.getFishAge();
+						Assert.assertTrue("Unexpected fish age " + fishAge + " after " + tickNo + " ticks", fishAge > 0 && fishAge <= 3);
+						fish++;
+					} else if (world.isShark()) {
+						short sharkHunger = world.getSharkHunger();
+						Assert.assertTrue("Unexpected shark hunger " + sharkHunger + " after " + tickNo + " ticks", sharkHunger > 0 && sharkHunger <= 4);
+						shark++;
+					}
+				} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+				Assert.assertEquals("Unexpected number of fish after " + tickNo + " ticks", fish, world.getFishCount());
+				Assert.assertEquals("Unexpected number of shark after " + tickNo + " ticks", shark, world.getSharkCount());
+			} finally {
+				world.release();
+			}
+		}
+	}
+
+	@Test
+	public void testFishProcessedOncePerTick() {
+		for (int engine = Simulator.ENGINE_DENSE; engine <= Simulator.ENGINE_SPARSE; engine++) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 5)
+							.setHeight((short) 5)
+							.setFishBreedTime((short) 1000)
+							.setSharkBreedTime((short) 2)
+							.setSharkStarveTime((short) 2)
+							.setInitialFishCount(0)
+							.setInitialSharkCount(0)
+			);
+			simulator.setEngine(engine);
+			simulator.setFish(2, 2, (short) 1);
+
+			// Tick often enough for the processed marks to wrap around a couple of times
+			for (int tickNo = 0; tickNo < 600; tickNo++) {
+				simulator.tick();
+			}
+
+			Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				Assert.assertEquals("Unexpected number of fish (engine " + engine + ")", 1, world.getFishCount());
+				do {
+					if (world.isFish()) {
+						Assert.assertEquals("Fish should have aged once per tick (engine " + engine + ")", 601, world.getFishAge());
+					}
+				} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+			} finally {
+				world.release();
+			}
+		}
+	}
+
+	@Test
+	public void testInPlaceUpdateSharkAndFishCount() throws InterruptedException {
+		for (int engine = Simulator.ENGINE_DENSE; engine <= Simulator.ENGINE_SPARSE; engine++) {
+			final Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 100)
+							.setHeight((short) 100)
+							.setFishBreedTime((short) 2)
+							.setSharkBreedTime((short) 4)
+							.setSharkStarveTime((short) 3)
+							.setInitialFishCount(2000)
+							.setInitialSharkCount(1500)
+			);
+			simulator.setEngine(engine);
+			simulator.setInPlaceUpdate(true);
+
+			for (int tickNo = 0; tickNo < 50; tickNo++) {
+				Thread backgroundTick = new Thread() {
+					@Override
+					public void run() {
+						simulator.tick(4);
+					}
+				};
+				backgroundTick.start();
+				final Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					int fish = 0;
+					int shark = 0;
+					do {
+						if (world.isFish()) {
+							fish++;
+						} else if (world.isShark()) {
+							shark++;
+						}
+					} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+					Assert.assertEquals("Unexpected number of fish after " + tickNo + " ticks", fish, world.getFishCount());
+					Assert.assertEquals("Unexpected number of shark after " + tickNo + " ticks", shark, world.getSharkCount());
+				} finally {
+					world.release();
+				}
+				backgroundTick.join();
+			}
+		}
+	}
+
+	@Test
+	public void testFishMovesAcrossEdges() {
+		// A world with a power of two width and height, one with only a power of two width and one without
+		short[][] worldSizes = new short[][] { { 4, 4 }, { 4, 3 }, { 5, 3 } };
+		for (short[] worldSize : worldSizes) {
+			final short width = worldSize[0];
+			final short height = worldSize[1];
+			for (int run = 0; run < 20; run++) {
+				Simulator simulator = new Simulator(
+						new WorldParameters()
+								.setWidth(width)
+								.setHeight(height)
+								.setFishBreedTime((short) 10)
+								.setSharkBreedTime((short) 2)
+								.setSharkStarveTime((short) 2)
+								.setInitialFishCount(0)
+								.setInitialSharkCount(0)
+				);
+				simulator.setFish(0, 0, (short) 1);
+
+				simulator.tick();
+
+				Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					Assert.assertEquals("There should be one fish", 1, world.getFishCount());
+					do {
+						if (world.isFish()) {
+							int x = world.getCurrentX();
+							int y = world.getCurrentY();
+							Assert.assertTrue("Fish moved too far in a " + width + "x" + height + " world: " + x + "/" + y,
+									(x == 0 || x == 1 || x == width - 1) && (y == 0 || y == 1 || y == height - 1));
+							Assert.assertFalse("Fish should have moved in a " + width + "x" + height + " world", x == 0 && y == 0);
+						}
+					} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+				} finally {
+					world.release();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMultithreadedTickOnWideWorld() {
+		Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) 64)
+						.setHeight((short) 4)
+						.setFishBreedTime((short) 1000)
+						.setSharkBreedTime((short) 2)
+						.setSharkStarveTime((short) 2)
+						.setInitialFishCount(0)
+						.setInitialSharkCount(0)
+		);
+		for (int fishNo = 0; fishNo < 4; fishNo++) {
+			simulator.setFish(fishNo * 16, fishNo, (short) 1);
+		}
+
+		for (int tickNo = 0; tickNo < 300; tickNo++) {
+			simulator.tick(8);
+		}
+
+		Simulator.WorldInspector world = simulator.getWorldToPaint();
+		try {
+			Assert.assertEquals("Unexpected number of fish", 4, world.getFishCount());
+			do {
+				if (world.isFish()) {
+					Assert.assertEquals("Fish should have moved exactly once per tick", 301, world.getFishAge());
+				}
+			} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+		} finally {
+			world.release();
+		}
+	}
+
+	@Test
+	public void testChangingThreadCount() {
+		Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) 64)
+						.setHeight((short) 64)
+						.setFishBreedTime((short) 1000)
+						.setSharkBreedTime((short) 2)
+						.setSharkStarveTime((short) 2)
+						.setInitialFishCount(0)
+						.setInitialSharkCount(0)
+		);
+		for (int fishNo = 0; fishNo < 4; fishNo++) {
+			simulator.setFish(fishNo * 16, fishNo * 16, (short) 1);
+		}
+
+		final int[] threadCounts = new int[] { 2, 5, 1, 8, 3 };
+		for (int tickNo = 0; tickNo < 250; tickNo++) {
+			simulator.tick(threadCounts[tickNo / 50]);
+		}
+
+		Simulator.WorldInspector world = simulator.getWorldToPaint();
+		try {
+			Assert.assertEquals("Unexpected number of fish", 4, world.getFishCount());
+			do {
+				if (world.isFish()) {
+					Assert.assertEquals("Fish should have moved exactly once per tick", 251, world.getFishAge());
+				}
+			} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+		} finally {
+			world.release();
+		}
+	}
+
+	@Test
+	public void testSpinningBarrier() {
+		Simulator simulator = new Simulator(
+				new WorldParameters()
+						.setWidth((short) 64)
+						.setHeight((short) 64)
+						.setFishBreedTime((short) 1000)
+						.setSharkBreedTime((short) 2)
+						.setSharkStarveTime((short) 2)
+						.setInitialFishCount(0)
+						.setInitialSharkCount(0)
+		);
+		simulator.setBarrier(Simulator.BARRIER_SPINNING);
+		for (int fishNo = 0; fishNo < 4; fishNo++) {
+			simulator.setFish(fishNo * 16, fishNo * 16, (short) 1);
+		}
+
+		for (int tickNo = 0; tickNo < 200; tickNo++) {
+			simulator.tick(4);
+			if (tickNo == 100) {
+				simulator.setBarrier(Simulator.BARRIER_BLOCKING);
+			} else if (tickNo == 150) {
+				simulator.setBarrier(Simulator.BARRIER_SPINNING);
+			}
+		}
+
+		Simulator.WorldInspector world = simulator.getWorldToPaint();
+		try {
+			Assert.assertEquals("Unexpected number of fish", 4, world.getFishCount());
+			do {
+				if (world.isFish()) {
+					Assert.assertEquals("Fish should have moved exactly once per tick", 201, world.getFishAge());
+				}
+			} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+		} finally {
+			world.release();
+		}
+	}
+
+	@Test
+	public void testSeededWorldIndependentOfThreadCount() {
+		final int[] threadCounts = new int[] { 1, 2, 3, 8 };
+		short[][] cells = new short[threadCounts.length][];
+		for (int runNo = 0; runNo < threadCounts.length; runNo++) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 60)
+							.setHeight((short) 40)
+							.setInitialFishCount(600)
+							.setInitialSharkCount(200)
+							.setSeed(4711L)
+			);
+			simulator.setInPlaceUpdate(runNo % 2 == 1);
+			for (int tickNo = 0; tickNo < 100; tickNo++) {
+				simulator.tick(threadCounts[runNo]);
+			}
+			Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				cells[runNo] = new short[60 * 40 * 2];
+				do {
+					int no = (int) world.getCurrentPosition();
+					if (world.isFish()) {
+						cells[runNo][no * 2] = world.getFishAge();
+					} else if (world.isShark()) {
+						cells[runNo][no * 2] = (short) -world.getSharkAge();
+						cells[runNo][no * 2 + 1] = world.getSharkHunger();
+					}
+				} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+			} finally {
+				world.release();
+			}
+		}
+		for (int runNo = 1; runNo < threadCounts.length; runNo++) {
+			Assert.assertArrayEquals("World ticked with " + threadCounts[runNo] + " threads differs", cells[0], cells[runNo]);
+		}
+	}
+
+	@Test
+	public void testEveryCellVisited() {
+		final int[] threadCounts = new int[] { 1, 3 };
+		for (int threads : threadCounts) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 37)
+							.setHeight((short) 23)
+							.setFishBreedTime((short) 2)
+							.setSharkBreedTime((short) 20)
+							.setSharkStarveTime((short) 3)
+							.setInitialFishCount(0)
+							.setInitialSharkCount(0)
+			);
+			for (int y = 0; y < 23; y++) {
+				for (int x = 0; x < 37; x++) {
+					simulator.setShark(x, y);
+				}
+			}
+
+			// The sharks cannot move or eat: each of them must get hungrier in every tick until all of them starve
+			// at the same time
+			int tickNo = 0;
+			long sharkCount;
+			do {
+				simulator.tick(threads);
+				tickNo++;
+				Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					sharkCount = world.getSharkCount();
+				} finally {
+					world.release();
+				}
+				Assert.assertTrue("Only some shark starved in tick " + tickNo, sharkCount == 0 || sharkCount == 37 * 23);
+			} while (sharkCount > 0 && tickNo < 10);
+			Assert.assertEquals("Shark starved in unexpected tick", 3, tickNo);
+		}
+	}
+
+	@Test
+	public void testCellLayouts() {
+		final short[][] times = new short[][] {
+				// fish breed time, shark breed time, shark starve time, expected layout
+				{ 5, 6, 5, Simulator.CELL_LAYOUT_BYTE },
+				{ 14, 13, 12, Simulator.CELL_LAYOUT_SHORT },
+				{ 200, 6, 5, Simulator.CELL_LAYOUT_SHORT },
+				{ 14, 1000, 500, Simulator.CELL_LAYOUT_INT },
+				{ 14, Simulator.MAX_SHARK_BREED_TIME, Simulator.MAX_SHARK_STARVE_TIME, Simulator.CELL_LAYOUT_INT }
+		};
+		for (short[] time : times) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 40)
+							.setHeight((short) 30)
+							.setFishBreedTime(time[0])
+							.setSharkBreedTime(time[1])
+							.setSharkStarveTime(time[2])
+							.setInitialFishCount(300)
+							.setInitialSharkCount(50)
+			);
+			Assert.assertEquals("Unexpected cell layout", time[3], simulator.getCellLayout());
+
+			simulator.setShark(0, 0, (short) (time[1] + 1), time[2]);
+			Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				Assert.assertEquals("Unexpected shark age", time[1] + 1, world.getSharkAge(0, 0));
+				Assert.assertEquals("Unexpected shark hunger", time[2], world.getSharkHunger(0, 0));
+			} finally {
+				world.release();
+			}
+
+			for (int tickNo = 0; tickNo < 20; tickNo++) {
+				simulator.tick(2);
+			}
+			world = simulator.getWorldToPaint();
+			try {
+				do {
+					if (world.isFish()) {
+						Assert.assertTrue("Fish too old", world.getFishAge() >= 1 && world.getFishAge() <= time[0]);
+					} else if (world.isShark()) {
+						Assert.assertTrue("Shark too old", world.getSharkAge() >= 1 && world.getSharkAge() <= time[1] + 1);
+						Assert.assertTrue("Shark too hungry", world.getSharkHunger() >= 1 && world.getSharkHunger() <= time[2]);
+					}
+				} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+			} finally {
+				world.release();
+			}
+		}
+	}
+
+	@Test
+	public void testOffHeapStorage() {
+		final short[][] times = new short[][] {
+				// fish breed time, shark breed time, shark starve time
+				{ 5, 6, 5 },
+				{ 14, 13, 12 },
+				{ 14, 1000, 500 }
+		};
+		for (short[] time : times) {
+			final WorldParameters parameters = new WorldParameters()
+					.setWidth((short) 60)
+					.setHeight((short) 40)
+					.setFishBreedTime(time[0])
+					.setSharkBreedTime(time[1])
+					.setSharkStarveTime(time[2])
+					.setInitialFishCount(600)
+					.setInitialSharkCount(200)
+					.setSeed(42L);
+			Simulator onHeap = new Simulator(parameters);
+			Simulator offHeap = new Simulator(parameters.setOffHeapStorage(true));
+			Assert.assertFalse("Simulator should store cells on the heap", onHeap.isOffHeapStorage());
+			Assert.assertTrue("Simulator should store cells off the heap", offHeap.isOffHeapStorage());
+			Assert.assertEquals("Off heap storage should not change the cell layout", onHeap.getCellLayout(), offHeap.getCellLayout());
+			for (int tickNo = 0; tickNo < 30; tickNo++) {
+				if (tickNo == 10) {
+					// From now on the snapshots are brought up to date tile by tile after each tick
+					onHeap.getWorldToPaint().release();
+					offHeap.getWorldToPaint().release();
+				}
+				onHeap.tick(2);
+				offHeap.tick(3);
+			}
+
+			Simulator.WorldInspector onHeapWorld = onHeap.getWorldToPaint();
+			Simulator.WorldInspector offHeapWorld = offHeap.getWorldToPaint();
+			try {
+				Assert.assertEquals("Unexpected number of fish", onHeapWorld.getFishCount(), offHeapWorld.getFishCount());
+				Assert.assertEquals("Unexpected number of shark", onHeapWorld.getSharkCount(), offHeapWorld.getSharkCount());
+				do {
+					offHeapWorld.moveTo(onHeapWorld.getCurrentX(), onHeapWorld.getCurrentY());
+					Assert.assertEquals("Cells differ", onHeapWorld.getFishAge(), offHeapWorld.getFishAge());
+					Assert.assertEquals("Cells differ", onHeapWorld.getSharkAge(), offHeapWorld.getSharkAge());
+					Assert.assertEquals("Cells differ", onHeapWorld.getSharkHunger(), offHeapWorld.getSharkHunger());
+				} while (onHeapWorld.moveToNext() != Simulator.WorldInspector.RESET);
+			} finally {
+				onHeapWorld.release();
+				offHeapWorld.release();
+			}
+		}
+
+		// Cells on both sides of the border between two chunks
+		Simulator huge = new Simulator(
+				new WorldParameters()
+						.setWidth((short) 1024)
+						.setHeight((short) 1100)
+						.setInitialFishCount(0)
+						.setInitialSharkCount(0)
+						.setOffHeapStorage(true)
+		);
+		huge.setFish(1023, 1023, (short) 3);
+		huge.setShark(0, 1024, (short) 4, (short) 5);
+		Simulator.WorldInspector world = huge.getWorldToPaint();
+		try {
+			Assert.assertEquals("Unexpected number of fish", 1, world.getFishCount());
+			Assert.assertEquals("Unexpected number of shark", 1, world.getSharkCount());
+			Assert.assertEquals("Unexpected fish age", 3, world.getFishAge(1023, 1023));
+			Assert.assertEquals("Unexpected shark age", 4, world.getSharkAge(0, 1024));
+			Assert.assertEquals("Unexpected shark hunger", 5, world.getSharkHunger(0, 1024));
+		} finally {
+			world.release();
+		}
+	}
+
+	/**
+	 * Creates a simulator that is expected to be rejected by {@link WorldParameters#verify()}.
+	 *
+	 * @param message    message if the simulator is created
+	 * @param parameters invalid parameters
+	 */
+	private static void assertRejected(String message, WorldParameters parameters) {
+		try {
+			new Simulator(parameters);
+		} catch (IllegalArgumentException e) {
+			return;
+		}
+		Assert.fail(message);
+	}
+
+	@Test
+	public void testWorldSizeLimits() {
+		// A world with 2^31 cells is rejected for having too many fish, not for an overflow of its number of cells
+		try {
+			new Simulator(
+					new WorldParameters()
+							.setWidth(Simulator.MAX_WORLD_WIDTH)
+							.setHeight((int) ((1L << 31) / Simulator.MAX_WORLD_WIDTH))
+							.setInitialFishCount(Integer.MAX_VALUE)
+							.setInitialSharkCount(Integer.MAX_VALUE)
+							.setOffHeapStorage(true)
+			);
+			Assert.fail("Too many fish accepted");
+		} catch (IllegalArgumentException e) {
+			Assert.assertTrue("Unexpected number of cells: " + e.getMessage(),
+					e.getMessage().contains(" " + (1L << 31) + " cells"));
+		}
+		assertRejected("World with more cells than an array accepted on the heap", new WorldParameters()
+				.setWidth(Simulator.MAX_WORLD_WIDTH)
+				.setHeight(Simulator.MAX_WORLD_HEIGHT / 4));
+		assertRejected("Too wide world accepted", new WorldParameters().setWidth(Simulator.MAX_WORLD_WIDTH + 1));
+		assertRejected("Too high world accepted", new WorldParameters().setHeight(Simulator.MAX_WORLD_HEIGHT + 1));
+		assertRejected("Overflowing number of fish and shark accepted", new WorldParameters()
+				.setInitialFishCount(Integer.MAX_VALUE)
+				.setInitialSharkCount(Integer.MAX_VALUE));
+		assertRejected("Negative number of fish accepted", new WorldParameters().setInitialFishCount(-1));
+		assertRejected("Zero width accepted", new WorldParameters().setWidth((short) 0));
+		assertRejected("Negative height accepted", new WorldParameters().setHeight((short) -3));
+
+		// The processed marks are cleared every 255 ticks, on and off the heap
+		final WorldParameters parameters = new WorldParameters()
+				.setWidth((short) 40)
+				.setHeight((short) 30)
+				.setInitialFishCount(300)
+				.setInitialSharkCount(60)
+				.setSeed(7L);
+		Simulator onHeap = new Simulator(parameters);
+		Simulator offHeap = new Simulator(parameters.setOffHeapStorage(true));
+		for (int tickNo = 0; tickNo < 600; tickNo++) {
+			onHeap.tick(1);
+			offHeap.tick(1);
+			Assert.assertEquals("Unexpected number of fish", onHeap.getFishCount(), offHeap.getFishCount());
+			Assert.assertEquals("Unexpected number of shark", onHeap.getSharkCount(), offHeap.getSharkCount());
+		}
+	}
+
+	@Test
+	public void testWorldsBeyondShortDimensions() {
+		final int[][] sizes = new int[][] { { 40000, 6 }, { 5, 40000 } };
+		for (int[] size : sizes) {
+			for (int mode = 0; mode < 2; mode++) {
+				final int width = size[0];
+				final int height = size[1];
+				final Simulator simulator = new Simulator(
+						new WorldParameters()
+								.setWidth(width)
+								.setHeight(height)
+								.setInitialFishCount(0)
+								.setInitialSharkCount(0)
+								.setFishBreedTime((short) 100)
+								.setOffHeapStorage(mode == 1)
+				);
+				// Three fish in the corners, which move across the edges of the world
+				simulator.setFish(width - 1, height - 1);
+				simulator.setFish(width - 1, 0);
+				simulator.setFish(0, height - 1);
+				for (int tickNo = 0; tickNo < 3; tickNo++) {
+					simulator.tick(2);
+				}
+				Assert.assertEquals("Unexpected number of fish", 3, simulator.getFishCount());
+				final Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					Assert.assertEquals("Unexpected world width", width, world.getWorldWidth());
+					Assert.assertEquals("Unexpected world height", height, world.getWorldHeight());
+					final int[] fishCount = new int[1];
+					world.forEachFish(new Simulator.FishVisitor() {
+						@Override
+						public void visitFish(long no, int x, int y, short age) {
+							Assert.assertEquals("Unexpected cell number", x + (long) y * width, no);
+							Assert.assertEquals("Unexpected fish age", 4, age);
+							Assert.assertEquals("Unexpected fish age", age, world.getFishAge(no));
+							Assert.assertTrue("Fish at " + x + "/" + y + " is too far from a corner",
+									(x <= 3 || x >= width - 4) && (y <= 3 || y >= height - 4));
+							fishCount[0]++;
+						}
+					});
+					Assert.assertEquals("Unexpected number of fish visited", 3, fishCount[0]);
+				} finally {
+					world.release();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPopulationCounts() {
+		for (int mode = 0; mode < 4; mode++) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 50)
+							.setHeight((short) 40)
+							.setInitialFishCount(500)
+							.setInitialSharkCount(100)
+			);
+			simulator.setEngine(mode == 3 ? Simulator.ENGINE_SPARSE : Simulator.ENGINE_DENSE);
+			simulator.setInPlaceUpdate(mode == 2);
+			final int threads = mode == 0 ? 1 : 4;
+			simulator.setShark(0, 0);
+			simulator.setFish(0, 0);
+			for (int tickNo = 0; tickNo < 60; tickNo++) {
+				simulator.tick(threads);
+				int fishCount = 0;
+				int sharkCount = 0;
+				Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					do {
+						if (world.isFish()) {
+							fishCount++;
+						} else if (world.isShark()) {
+							sharkCount++;
+						}
+					} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+					Assert.assertEquals("Unexpected number of fish in snapshot", fishCount, world.getFishCount());
+					Assert.assertEquals("Unexpected number of shark in snapshot", sharkCount, world.getSharkCount());
+				} finally {
+					world.release();
+				}
+				Assert.assertEquals("Unexpected number of fish", fishCount, simulator.getFishCount());
+				Assert.assertEquals("Unexpected number of shark", sharkCount, simulator.getSharkCount());
+				Assert.assertEquals("Unexpected number of empty cells", 50 * 40 - fishCount - sharkCount, simulator.getEmptyCount());
+			}
+		}
+	}
+
+	@Test
+	public void testTickStatistics() {
+		for (int mode = 0; mode < 4; mode++) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 50)
+							.setHeight((short) 40)
+							.setInitialFishCount(500)
+							.setInitialSharkCount(100)
+			);
+			simulator.setEngine(mode == 3 ? Simulator.ENGINE_SPARSE : Simulator.ENGINE_DENSE);
+			simulator.setInPlaceUpdate(mode == 2);
+			final int threads = mode == 0 ? 1 : 4;
+			Simulator.TickStatistics statistics = simulator.getTickStatistics(null);
+			Assert.assertEquals("Unexpected tick count before first tick", 0, statistics.getTickCount());
+			Assert.assertEquals("Unexpected initial number of fish", 500, statistics.getFishCount());
+			Assert.assertEquals("Unexpected initial number of shark", 100, statistics.getSharkCount());
+			long totalEvents = 0;
+			for (int tickNo = 1; tickNo <= 60; tickNo++) {
+				final long previousFishCount = statistics.getFishCount();
+				final long previousSharkCount = statistics.getSharkCount();
+				simulator.tick(threads);
+				Assert.assertSame("Statistics object not reused", statistics, simulator.getTickStatistics(statistics));
+				Assert.assertEquals("Unexpected tick count", tickNo, statistics.getTickCount());
+				Assert.assertEquals("Unexpected number of fish", simulator.getFishCount(), statistics.getFishCount());
+				Assert.assertEquals("Unexpected number of shark", simulator.getSharkCount(), statistics.getSharkCount());
+				Assert.assertEquals("Fish births and fish eaten do not add up",
+						statistics.getFishCount() - previousFishCount, statistics.getFishBirths() - statistics.getFishEaten());
+				Assert.assertEquals("Shark births and starved shark do not add up",
+						statistics.getSharkCount() - previousSharkCount, statistics.getSharkBirths() - statistics.getSharkStarved());
+				Assert.assertTrue("More shark starved than existed", statistics.getSharkStarved() <= previousSharkCount);
+				// Every animal alive at the start of the tick moves, is blocked or starves unless it is a fish eaten
+				// before its turn
+				final long handled = statistics.getMoves() + statistics.getBlockedMoves() + statistics.getSharkStarved();
+				Assert.assertTrue("Too many animals handled", handled <= previousFishCount + previousSharkCount);
+				Assert.assertTrue("Too few animals handled",
+						handled >= previousFishCount + previousSharkCount - statistics.getFishEaten());
+				totalEvents += statistics.getFishBirths() + statistics.getSharkBirths() + statistics.getFishEaten();
+			}
+			Assert.assertTrue("No births or predation counted", totalEvents > 0);
+		}
+	}
+
+	@Test
+	public void testDirtyTiles() {
+		for (int mode = 0; mode < 4; mode++) {
+			// A world with a few shark in a small region: most tiles never change
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 100)
+							.setHeight((short) 70)
+							.setInitialFishCount(0)
+							.setInitialSharkCount(0)
+			);
+			simulator.setEngine(mode == 3 ? Simulator.ENGINE_SPARSE : Simulator.ENGINE_DENSE);
+			simulator.setInPlaceUpdate(mode == 2);
+			final int threads = mode == 0 ? 1 : 4;
+			for (int no = 0; no < 20; no++) {
+				simulator.setFish(no, 0);
+				simulator.setFish(99, no);
+				simulator.setShark(no, 69);
+			}
+			int[] previousCells = new int[100 * 70];
+			long previousVersion = 0;
+			int cleanTiles = 0;
+			for (int tickNo = 0; tickNo < 30; tickNo++) {
+				Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					Assert.assertTrue("Version did not increase", world.getVersion() > previousVersion);
+					Assert.assertEquals("Unexpected number of dirty tile columns",
+							(100 + Simulator.DIRTY_TILE_SIZE - 1) / Simulator.DIRTY_TILE_SIZE, world.getDirtyTileColumns());
+					Assert.assertEquals("Unexpected number of dirty tile rows",
+							(70 + Simulator.DIRTY_TILE_SIZE - 1) / Simulator.DIRTY_TILE_SIZE, world.getDirtyTileRows());
+					do {
+						final int cell = world.isFish() ? -world.getFishAge()
+								: world.isShark() ? world.getSharkHunger() * 1000 + world.getSharkAge() : 0;
+						final int x = world.getCurrentX();
+						final int y = world.getCurrentY();
+						if (!world.isTileDirty(x / Simulator.DIRTY_TILE_SIZE, y / Simulator.DIRTY_TILE_SIZE, previousVersion)) {
+							Assert.assertEquals("Cell " + x + "," + y + " changed in a clean tile", previousCells[(int) world.getCurrentPosition()], cell);
+							cleanTiles++;
+						}
+						previousCells[(int) world.getCurrentPosition()] = cell;
+					} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+					previousVersion = world.getVersion();
+				} finally {
+					world.release();
+				}
+				simulator.tick(threads);
+			}
+			Assert.assertTrue("All tiles were dirty", cleanTiles > 0);
+		}
+	}
+
+	/**
+	 * Reads a world into an array of cells (0 for empty, negative fish age for fish and hunger * 1000 + age for shark).
+	 *
+	 * @param simulator simulator to read the world of
+	 * @param cells     array to read the cells into
+	 * @return version of the world
+	 */
+	private static long readCells(Simulator simulator, int[] cells) {
+		Simulator.WorldInspector world = simulator.getWorldToPaint();
+		try {
+			do {
+				cells[(int) world.getCurrentPosition()] = world.isFish() ? -world.getFishAge()
+						: world.isShark() ? world.getSharkHunger() * 1000 + world.getSharkAge() : 0;
+			} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+			return world.getVersion();
+		} finally {
+			world.release();
+		}
+	}
+
+	@Test
+	public void testWorldDelta() {
+		for (int mode = 0; mode < 5; mode++) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 300)
+							.setHeight((short) 40)
+							.setSharkStarveTime((short) (mode == 4 ? 300 : 3))
+							.setInitialFishCount(mode == 3 ? 100 : 2000)
+							.setInitialSharkCount(mode == 3 ? 10 : 400)
+			);
+			simulator.setEngine(mode == 3 ? Simulator.ENGINE_SPARSE : Simulator.ENGINE_DENSE);
+			simulator.setInPlaceUpdate(mode == 2);
+			final int threads = mode == 0 ? 1 : 4;
+			final int[] cells = new int[300 * 40];
+			final int[] expectedCells = new int[300 * 40];
+			final long[] lastVersion = new long[1];
+			final Simulator.WorldDelta[] retained = new Simulator.WorldDelta[1];
+			WorldDeltaObserver observer = new WorldDeltaObserver() {
+				@Override
+				public void worldChanged(Simulator.WorldDelta delta) {
+					Assert.assertTrue("Delta does not fit the previous one", delta.getFromVersion() <= lastVersion[0]);
+					Assert.assertTrue("Version did not increase", delta.getVersion() > lastVersion[0]);
+					lastVersion[0] = delta.getVersion();
+					int changes = 0;
+					long previousNo = -1;
+					while (delta.nextChange()) {
+						Assert.assertTrue("Cell numbers do not increase", delta.getCellNo() > previousNo);
+						previousNo = delta.getCellNo();
+						cells[(int) delta.getCellNo()] = delta.isFish() ? -delta.getFishAge()
+								: delta.isShark() ? delta.getSharkHunger() * 1000 + delta.getSharkAge() : 0;
+						changes++;
+					}
+					Assert.assertEquals("Unexpected number of changes", delta.getChangeCount(), changes);
+					if (retained[0] == null) {
+						delta.retain();
+						retained[0] = delta;
+					} else {
+						Assert.assertNotSame("Retained delta has been reused", retained[0], delta);
+					}
+				}
+			};
+			simulator.addWorldDeltaObserver(observer);
+			lastVersion[0] = readCells(simulator, cells);
+			for (int tickNo = 0; tickNo < 30; tickNo++) {
+				if (tickNo == 10) {
+					simulator.setFish(150, 20);
+					simulator.setShark(299, 39);
+				}
+				simulator.tick(threads);
+				Assert.assertEquals("No delta delivered", readCells(simulator, expectedCells), lastVersion[0]);
+				Assert.assertArrayEquals("Applying the deltas does not give the world", expectedCells, cells);
+			}
+			final int firstChangeCount = retained[0].getChangeCount();
+			Assert.assertTrue("Retained delta is empty", firstChangeCount > 0);
+			int changes = 0;
+			retained[0].rewind();
+			while (retained[0].nextChange()) {
+				changes++;
+			}
+			Assert.assertEquals("Retained delta changed", firstChangeCount, changes);
+			retained[0].release();
+			simulator.removeWorldDeltaObserver(observer);
+			simulator.tick(threads);
+			Assert.assertTrue("Delta delivered after removing the observer", readCells(simulator, expectedCells) > lastVersion[0]);
+		}
+	}
+
+	/**
+	 * Reads the cells of a world inspector (see {@link #readCells(Simulator, int[])}).
+	 *
+	 * @param world inspector to read
+	 * @return cells of the inspector
+	 */
+	private static int[] readCells(Simulator.WorldInspector world) {
+		final int[] cells = new int[world.getWorldWidth() * world.getWorldHeight()];
+		do {
+			cells[(int) world.getCurrentPosition()] = world.isFish() ? -world.getFishAge()
+					: world.isShark() ? world.getSharkHunger() * 1000 + world.getSharkAge() : 0;
+		} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+		return cells;
+	}
+
+	@Test
+	public void testHeldSnapshots() {
+		for (int mode = 0; mode < 2; mode++) {
+			Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 70)
+							.setHeight((short) 50)
+							.setInitialFishCount(mode == 0 ? 600 : 30)
+							.setInitialSharkCount(mode == 0 ? 100 : 5)
+							.setOffHeapStorage(mode == 1)
+			);
+			// Keep a history of snapshots; some are released early, the others stay in use until the end
+			final Simulator.WorldInspector[] history = new Simulator.WorldInspector[20];
+			final int[][] historyCells = new int[history.length][];
+			for (int tickNo = 0; tickNo < history.length; tickNo++) {
+				history[tickNo] = simulator.getWorldToPaint();
+				historyCells[tickNo] = readCells(history[tickNo]);
+				if (tickNo > 0) {
+					Assert.assertTrue("Version did not increase", history[tickNo].getVersion() > history[tickNo - 1].getVersion());
+				}
+				if (tickNo % 3 == 1) {
+					history[tickNo - 1].release();
+					history[tickNo - 1] = null;
+				}
+				simulator.tick(2);
+				if (tickNo == 10) {
+					simulator.setFish(0, 0);
+				}
+			}
+
+			// Held snapshots do not keep the simulator from publishing the current world
+			Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				Assert.assertTrue("World has not been published", world.getVersion() > history[history.length - 1].getVersion());
+				Assert.assertEquals("Unexpected number of fish", simulator.getFishCount(), world.getFishCount());
+			} finally {
+				world.release();
+			}
+
+			for (int tickNo = 0; tickNo < history.length; tickNo++) {
+				if (history[tickNo] != null) {
+					Assert.assertArrayEquals("Held snapshot changed", historyCells[tickNo], readCells(history[tickNo]));
+					history[tickNo].release();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotsWhileTicking() throws InterruptedException {
+		for (int mode = 0; mode < 3; mode++) {
+			final Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 80)
+							.setHeight((short) 60)
+							.setInitialFishCount(1000)
+							.setInitialSharkCount(150)
+			);
+			simulator.setEngine(mode == 2 ? Simulator.ENGINE_SPARSE : Simulator.ENGINE_DENSE);
+			simulator.setInPlaceUpdate(mode == 1);
+			Thread ticker = new Thread() {
+				@Override
+				public void run() {
+					for (int tickNo = 0; tickNo < 300; tickNo++) {
+						simulator.tick(2);
+					}
+				}
+			};
+			ticker.start();
+			long previousVersion = 0;
+			int snapshots = 0;
+			while (ticker.isAlive() || snapshots == 0) {
+				Simulator.WorldInspector world = simulator.getWorldToPaint();
+				try {
+					Assert.assertTrue("Version decreased", world.getVersion() >= previousVersion);
+					previousVersion = world.getVersion();
+					int fishCount = 0;
+					int sharkCount = 0;
+					do {
+						if (world.isFish()) {
+							fishCount++;
+						} else if (world.isShark()) {
+							sharkCount++;
+						}
+					} while (world.moveToNext() != Simulator.WorldInspector.RESET);
+					Assert.assertEquals("Snapshot is inconsistent", fishCount, world.getFishCount());
+					Assert.assertEquals("Snapshot is inconsistent", sharkCount, world.getSharkCount());
+				} finally {
+					world.release();
+				}
+				snapshots++;
+			}
+			ticker.join();
+		}
+	}
+
+	@Test
+	public void testSetFishWhileTicking() throws InterruptedException {
+		for (int mode = 0; mode < 2; mode++) {
+			final Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 80)
+							.setHeight((short) 60)
+							.setInitialFishCount(1000)
+							.setInitialSharkCount(150)
+			);
+			simulator.setInPlaceUpdate(mode == 1);
+			Thread ticker = new Thread() {
+				@Override
+				public void run() {
+					for (int tickNo = 0; tickNo < 300; tickNo++) {
+						simulator.tick(4);
+					}
+				}
+			};
+			ticker.start();
+			Random random = new Random(42);
+			int placed = 0;
+			while (ticker.isAlive() || placed == 0) {
+				if (random.nextBoolean()) {
+					simulator.setFish(random.nextInt(80), random.nextInt(60));
+				} else {
+					simulator.setShark(random.nextInt(80), random.nextInt(60));
+				}
+				placed++;
+			}
+			ticker.join();
+
+			int[] cells = new int[80 * 60];
+			readCells(simulator, cells);
+			int fishCount = 0;
+			int sharkCount = 0;
+			for (int cell : cells) {
+				if (cell < 0) {
+					fishCount++;
+				} else if (cell > 0) {
+					sharkCount++;
+				}
+			}
+			Assert.assertEquals("Fish count drifted", fishCount, simulator.getFishCount());
+			Assert.assertEquals("Shark count drifted", sharkCount, simulator.getSharkCount());
+		}
+	}
+
+	@Test
+	public void testBulkAccessors() {
+		for (int mode = 0; mode < 2; mode++) {
+			final Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 75)
+							.setHeight((short) 45)
+							.setInitialFishCount(800)
+							.setInitialSharkCount(150)
+							.setOffHeapStorage(mode == 1)
+			);
+			for (int tickNo = 0; tickNo < 5; tickNo++) {
+				simulator.tick(2);
+			}
+			final Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				// A region that is not aligned with the tiles, copied into the middle of larger arrays
+				final int x = 13;
+				final int y = 7;
+				final int width = 50;
+				final int height = 30;
+				final int offset = 5;
+				final int stride = width + 3;
+				final byte[] types = new byte[offset + height * stride];
+				final short[] fishAges = new short[types.length];
+				final short[] sharkAges = new short[types.length];
+				final short[] sharkHungers = new short[types.length];
+				world.copyCellTypes(x, y, width, height, types, offset, stride);
+				world.copyFishAges(x, y, width, height, fishAges, offset, stride);
+				world.copySharkAges(x, y, width, height, sharkAges, offset, stride);
+				world.copySharkHungers(x, y, width, height, sharkHungers, offset, stride);
+				for (int row = 0; row < height; row++) {
+					for (int column = 0; column < width; column++) {
+						world.moveTo(x + column, y + row);
+						final int index = offset + row * stride + column;
+						final byte expectedType = world.isFish() ? Simulator.WorldInspector.CELL_FISH
+								: world.isShark() ? Simulator.WorldInspector.CELL_SHARK : Simulator.WorldInspector.CELL_EMPTY;
+						Assert.assertEquals("Unexpected cell type", expectedType, types[index]);
+						Assert.assertEquals("Unexpected fish age", world.getFishAge(), fishAges[index]);
+						Assert.assertEquals("Unexpected shark age", world.getSharkAge(), sharkAges[index]);
+						Assert.assertEquals("Unexpected shark hunger", world.getSharkHunger(), sharkHungers[index]);
+					}
+				}
+
+				try {
+					world.copyCellTypes(70, 0, 10, 1, types, 0, 10);
+					Assert.fail("Region outside of the world should be rejected");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+
+				final int[] counts = new int[2];
+				world.forEachFish(new Simulator.FishVisitor() {
+					@Override
+					public void visitFish(long no, int x, int y, short age) {
+						Assert.assertEquals("Unexpected cell number", x + y * 75, no);
+						Assert.assertEquals("Unexpected fish age", world.getFishAge(x, y), age);
+						Assert.assertTrue("Fish age must be positive", age > 0);
+						counts[0]++;
+					}
+				});
+				world.forEachShark(new Simulator.SharkVisitor() {
+					@Override
+					public void visitShark(long no, int x, int y, short age, short hunger) {
+						Assert.assertEquals("Unexpected cell number", x + y * 75, no);
+						Assert.assertEquals("Unexpected shark age", world.getSharkAge(x, y), age);
+						Assert.assertEquals("Unexpected shark hunger", world.getSharkHunger(x, y), hunger);
+						Assert.assertTrue("Shark hunger must be positive", hunger > 0);
+						counts[1]++;
+					}
+				});
+				Assert.assertEquals("Unexpected number of fish visited", world.getFishCount(), counts[0]);
+				Assert.assertEquals("Unexpected number of shark visited", world.getSharkCount(), counts[1]);
+			} finally {
+				world.release();
+			}
+		}
+	}
+
+	@Test
+	public void testRegionSnapshots() {
+		for (int mode = 0; mode < 2; mode++) {
+			final Simulator simulator = new Simulator(
+					new WorldParameters()
+							.setWidth((short) 75)
+							.setHeight((short) 45)
+							.setInitialFishCount(800)
+							.setInitialSharkCount(150)
+							.setOffHeapStorage(mode == 1)
+			);
+			simulator.tick(2);
+			// Regions are requested before anyone looked at the whole world
+			simulator.getWorldToPaint(5, 5, 10, 10).release();
+			simulator.getWorldToPaint(60, 35, 30, 20).release();
+			simulator.tick(2);
+
+			// A region that wraps around both edges and one in the middle are served from the same snapshot
+			final Simulator.WorldInspector wrapping = simulator.getWorldToPaint(60, 35, 30, 20);
+			final Simulator.WorldInspector middle = simulator.getWorldToPaint(5, 5, 10, 10);
+			final Simulator.WorldInspector world = simulator.getWorldToPaint();
+			try {
+				Assert.assertEquals("Regions should come from the same tick", wrapping.getVersion(), middle.getVersion());
+				Assert.assertEquals("Regions should come from the same tick", wrapping.getVersion(), world.getVersion());
+				final int[] cells = readCells(world);
+				final boolean[] visited = new boolean[cells.length];
+				int regionCells = 0;
+				int regionFish = 0;
+				int regionShark = 0;
+				Assert.assertEquals("Region should start at its top left corner", 60 + 35 * 75, wrapping.getCurrentPosition());
+				do {
+					final int no = (int) wrapping.getCurrentPosition();
+					Assert.assertTrue("Cell " + no + " should be in the region", wrapping.isInRegion(no % 75, no / 75));
+					Assert.assertTrue("Cell " + no + " visited twice", !visited[no]);
+					visited[no] = true;
+					final int cell = wrapping.isFish() ? -wrapping.getFishAge()
+							: wrapping.isShark() ? wrapping.getSharkHunger() * 1000 + wrapping.getSharkAge() : 0;
+					Assert.assertEquals("Region differs from the world at " + no, cells[no], cell);
+					regionCells++;
+					if (cell < 0) {
+						regionFish++;
+					} else if (cell > 0) {
+						regionShark++;
+					}
+				} while (wrapping.moveToNext() != Simulator.WorldInspector.RESET);
+				Assert.assertEquals("Unexpected number of cells in the region", 30 * 20, regionCells);
+				Assert.assertEquals("Region should be reset to its top left corner", 60 + 35 * 75, wrapping.getCurrentPosition());
+
+				final int[] counts = new int[2];
+				wrapping.forEachFish(new Simulator.FishVisitor() {
+					@Override
+					public void visitFish(long no, int x, int y, short age) {
+						Assert.assertTrue("Fish outside of the region visited", wrapping.isInRegion(x, y));
+						counts[0]++;
+					}
+				});
+				wrapping.forEachShark(new Simulator.SharkVisitor() {
+					@Override
+					public void visitShark(long no, int x, int y, short age, short hunger) {
+						Assert.assertTrue("Shark outside of the region visited", wrapping.isInRegion(x, y));
+						counts[1]++;
+					}
+				});
+				Assert.assertEquals("Unexpected number of fish visited", regionFish, counts[0]);
+				Assert.assertEquals("Unexpected number of shark visited", regionShark, counts[1]);
+
+				middle.moveTo(14, 14);
+				Assert.assertEquals("Region should end after its last cell", Simulator.WorldInspector.RESET, middle.moveToNext());
+				Assert.assertEquals("Region should be reset to its top left corner", 5 + 5 * 75, middle.getCurrentPosition());
+
+				// Bulk copies may cover any part of the region that does not wrap around the edges of the world
+				final short[] ages = new short[15 * 10];
+				wrapping.copyFishAges(0, 0, 15, 10, ages, 0, 15);
+				for (int row = 0; row < 10; row++) {
+					for (int column = 0; column < 15; column++) {
+						final int cell = cells[column + row * 75];
+						Assert.assertEquals("Bulk copy differs from the world at " + column + "/" + row,
+								cell < 0 ? -cell : 0, ages[column + row * 15]);
+					}
+				}
+				final byte[] types = new byte[20 * 20];
+				try {
+					middle.copyCellTypes(0, 0, 20, 20, types, 0, 20);
+					Assert.fail("Bulk copy outside of the region should be rejected");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+				try {
+					wrapping.copyCellTypes(14, 0, 2, 2, types, 0, 2);
+					Assert.fail("Bulk copy outside of the region should be rejected");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+				try {
+					wrapping.copyCellTypes(60, 30, 2, 10, types, 0, 2);
+					Assert.fail("Bulk copy outside of the region should be rejected");
+				} catch (IllegalArgumentException e) {
+					// expected
+				}
+			} finally {
+				wrapping.release();
+				middle.release();
+				world.release();
+			}
+
+			try {
+				simulator.getWorldToPaint(70, 0, 76, 10);
+				Assert.fail("Region wider than the world should be rejected");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
 }